@@ -0,0 +1,123 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.coderazzi.filters.benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import net.coderazzi.filters.gui.AutoChoices;
+import net.coderazzi.filters.gui.TableFilterHeader;
+import net.coderazzi.filters.gui.editor.FilterEditor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Time that the event dispatch thread is blocked when the choices of the
+ * names column are extracted again, and time until the choices are set, with
+ * and without asynchronous choices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class AsyncChoicesBenchmark {
+
+    @Param({ "1000000", "10000000" })
+    int rows;
+
+    @Param({ "false", "true" })
+    boolean asyncChoices;
+
+    TableFilterHeader header;
+    FilterEditor editor;
+
+    @Setup(Level.Trial) public void attach() {
+        header = Swing.attach(Swing.createTable(new BenchmarkModel(rows)),
+                AutoChoices.ENABLED, false);
+        editor = (FilterEditor) header.getFilterEditor(BenchmarkModel.NAME);
+        Swing.run(new Runnable() {
+                @Override public void run() {
+                    header.setAsyncChoices(asyncChoices);
+                }
+            });
+    }
+
+    @TearDown(Level.Trial) public void detach() {
+        Swing.detach(header);
+    }
+
+    @Setup(Level.Invocation) public void await() {
+        awaitChoices();
+    }
+
+    /** Time on the event dispatch thread to request the choices. */
+    @Benchmark public int request() {
+        return Swing.call(new Callable<Integer>() {
+                    @Override public Integer call() {
+                        editor.setAutoChoices(AutoChoices.DISABLED);
+                        editor.setAutoChoices(AutoChoices.ENABLED);
+
+                        return editor.getChoicesSize();
+                    }
+                });
+    }
+
+    /** Time until the choices are set on the editor. */
+    @Benchmark public int extract() {
+        request();
+
+        return awaitChoices();
+    }
+
+    /** Waits until the editor has choices, other than the custom ones. */
+    private int awaitChoices() {
+        Callable<Integer> size = new Callable<Integer>() {
+                @Override public Integer call() {
+                    return editor.getChoicesSize();
+                }
+            };
+        int ret;
+        while ((ret = Swing.call(size)) <= 1) {
+            Thread.yield();
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+import javax.swing.table.AbstractTableModel;
+
+
+/**
+ * Table model with generated content, equivalent to the basic model of the
+ * TestTableModel used in the examples (5 columns), but able to hold up to
+ * tens of millions of rows.<br>
+ * Content is deterministic for a given number of rows: the names column holds
+ * up to 10.000 distinct strings, in average 12 characters long; the age column
+ * holds 26 distinct integers; the date column holds up to 16.750 distinct
+ * dates. Each row is stored as indexes on those pools, so that the memory
+ * required by the model itself does not hide the memory used by the filter.
+ */
+public class BenchmarkModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 2739419405530066286L;
+
+    public static final int NAME = 0;
+    public static final int AGE = 1;
+    public static final int MALE = 2;
+    public static final int CLUB = 3;
+    public static final int DATE = 4;
+
+    /** Enumeration used for the clubs column. */
+    public static enum Club {
+        Alpha, Geeks, Phi, Kappa, Lions
+    }
+
+    private static final String columnNames[] = {
+            "Name", "Age", "Male", "Club", "Date"
+        };
+    private static final Class<?> columnTypes[] = {
+            String.class, Integer.class, Boolean.class, Club.class, Date.class
+        };
+    private static final String syllables[] = {
+            "al", "ber", "ca", "den", "el", "fa", "gor", "ha", "in", "jo",
+            "ka", "lo", "mar", "ne", "os", "pe", "ri", "sa", "tun", "va",
+            "wen", "zo"
+        };
+
+    static final int DISTINCT_NAMES = 10000;
+    static final int DISTINCT_AGES = 26;
+    static final int DISTINCT_DATES = 16750;
+
+    private static String names[];
+    private static Date dates[];
+    private static Club clubs[] = Club.values();
+
+    private short name[];
+    private byte age[];
+    private boolean male[];
+    private byte club[];
+    private short date[];
+    private int rows;
+
+    public BenchmarkModel(int rows) {
+        Random random = new Random(rows);
+        this.rows = rows;
+        name = new short[rows];
+        age = new byte[rows];
+        male = new boolean[rows];
+        club = new byte[rows];
+        date = new short[rows];
+        int distinctNames = Math.min(DISTINCT_NAMES, Math.max(1, rows / 10));
+        int distinctDates = Math.min(DISTINCT_DATES, Math.max(1, rows / 6));
+        for (int i = 0; i < rows; i++) {
+            name[i] = (short) random.nextInt(distinctNames);
+            age[i] = (byte) random.nextInt(DISTINCT_AGES);
+            male[i] = random.nextBoolean();
+            club[i] = (byte) random.nextInt(clubs.length);
+            date[i] = (short) random.nextInt(distinctDates);
+        }
+    }
+
+    /** Changes the male and club values on a given row, firing the event. */
+    public void updateRow(int row) {
+        male[row] = !male[row];
+        club[row] = (byte) ((club[row] + 1) % clubs.length);
+        fireTableRowsUpdated(row, row);
+    }
+
+    /** Changes the club value on a given row, firing a cell update event. */
+    public void updateClub(int row) {
+        club[row] = (byte) ((club[row] + 1) % clubs.length);
+        fireTableCellUpdated(row, CLUB);
+    }
+
+    @Override public int getRowCount() {
+        return rows;
+    }
+
+    @Override public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override public Class<?> getColumnClass(int column) {
+        return columnTypes[column];
+    }
+
+    @Override public Object getValueAt(int row, int column) {
+        switch (column) {
+
+        case NAME:
+            return names[name[row]];
+
+        case AGE:
+            return Integer.valueOf(18 + age[row]);
+
+        case MALE:
+            return Boolean.valueOf(male[row]);
+
+        case CLUB:
+            return clubs[club[row]];
+
+        case DATE:
+            return dates[date[row]];
+        }
+
+        return null;
+    }
+
+    static {
+        names = new String[DISTINCT_NAMES];
+        int base = syllables.length;
+        for (int i = 0; i < DISTINCT_NAMES; i++) {
+            int n = i;
+            StringBuilder sb = new StringBuilder();
+            for (int s = 0; s < 4; s++) {
+                String syllable = syllables[n % base];
+                n /= base;
+                if ((s & 1) == 0) {
+                    if (s > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append(Character.toUpperCase(syllable.charAt(0)));
+                    sb.append(syllable.substring(1));
+                } else {
+                    sb.append(syllable);
+                }
+            }
+
+            names[i] = sb.toString();
+        }
+
+        dates = new Date[DISTINCT_DATES];
+        Calendar calendar = new GregorianCalendar(1960, Calendar.JANUARY, 1);
+        for (int i = 0; i < DISTINCT_DATES; i++) {
+            dates[i] = calendar.getTime();
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.text.ParseException;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.RowFilter;
+
+import net.coderazzi.filters.AndFilter;
+import net.coderazzi.filters.ComposedFilter;
+import net.coderazzi.filters.Filter;
+import net.coderazzi.filters.OrFilter;
+import net.coderazzi.filters.gui.ParserModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Evaluation of several editor filters composed with and / or, as the
+ * filters handler does when several editors have content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class ComposedFilterBenchmark {
+
+    /** Expressions on each editor: column and expression. */
+    static final String FILTERS[] = {
+            "0:~~.*[aeiou].*r.*", "4:*/0?/19*", "0:!~ *xyz*", "1:= 30"
+        };
+
+    @Param({ "100000", "1000000", "10000000" })
+    int rows;
+
+    @Param({ "true", "false" })
+    boolean and;
+
+    ModelEntry entry;
+    ComposedFilter filter;
+
+    @Setup(Level.Trial) public void setup() throws ParseException {
+        BenchmarkModel model = new BenchmarkModel(rows);
+        ParserModel parserModel = new ParserModel();
+        entry = new ModelEntry(model);
+        filter = and ? new AndFilter() : new OrFilter();
+        for (String each : FILTERS) {
+            int split = each.indexOf(':');
+            int column = Integer.parseInt(each.substring(0, split));
+            final RowFilter rowFilter = ParserBenchmark.createParser(
+                        parserModel, model.getColumnClass(column), column)
+                    .parseText(each.substring(split + 1));
+            filter.addFilter(new Filter() {
+                    @Override public boolean include(RowFilter.Entry rowEntry) {
+                        return rowFilter.include(rowEntry);
+                    }
+                });
+        }
+    }
+
+    @Benchmark public int evaluate() {
+        return entry.count(filter);
+    }
+}
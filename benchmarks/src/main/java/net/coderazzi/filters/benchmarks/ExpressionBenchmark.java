@@ -0,0 +1,100 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.RowFilter;
+
+import net.coderazzi.filters.gui.ParserModel;
+import net.coderazzi.filters.parser.Expression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Evaluation of arithmetic expressions on the ages column: the filter created
+ * by the parser, which compiles the expression once, against the creation
+ * and evaluation of the expression on every row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class ExpressionBenchmark {
+
+    @Param({ "100000", "1000000", "10000000" })
+    int rows;
+
+    @Param({ "$*2 > 50", "$ % 2 = 0", "$ > 20 && $ < 30", "$ / 4 > 5.5" })
+    String expression;
+
+    BenchmarkModel model;
+    ModelEntry entry;
+    RowFilter rowFilter;
+
+    @Setup(Level.Trial) public void setup() throws ParseException {
+        model = new BenchmarkModel(rows);
+        entry = new ModelEntry(model);
+        rowFilter = ParserBenchmark.createParser(new ParserModel(),
+                    model.getColumnClass(BenchmarkModel.AGE),
+                    BenchmarkModel.AGE).parseText(expression);
+    }
+
+    @Benchmark public int compiled() {
+        return entry.count(rowFilter);
+    }
+
+    @Benchmark public int perRow() throws ParseException {
+        int ret = 0;
+        for (int row = 0; row < rows; row++) {
+            Integer age = (Integer) model.getValueAt(row, BenchmarkModel.AGE);
+            Expression e = new Expression(expression).with("$",
+                    new BigDecimal(age));
+            if (e.eval().equals(BigDecimal.ONE)) {
+                ret++;
+            }
+        }
+
+        return ret;
+    }
+}
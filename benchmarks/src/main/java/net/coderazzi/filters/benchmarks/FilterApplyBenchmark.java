@@ -0,0 +1,100 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.coderazzi.filters.gui.AutoChoices;
+import net.coderazzi.filters.gui.CustomChoice;
+import net.coderazzi.filters.gui.TableFilterHeader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Time required to apply a filter expression entered on an editor, including
+ * its impact on the sorter (scenarios A7-A9 for the expression '*' on the
+ * names column).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class FilterApplyBenchmark {
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    int rows;
+
+    /** Column and expression, separated by a colon. */
+    @Param({ "0:*", "0:Ka*", "1:> 30", "3:Alpha" })
+    String filter;
+
+    @Param({ "DISABLED" })
+    AutoChoices autoChoices;
+
+    @Param({ "false" })
+    boolean adaptive;
+
+    TableFilterHeader header;
+    int column;
+    String expression;
+
+    @Setup(Level.Trial) public void attach() {
+        int split = filter.indexOf(':');
+        column = Integer.parseInt(filter.substring(0, split));
+        expression = filter.substring(split + 1);
+        header = Swing.attach(Swing.createTable(new BenchmarkModel(rows)),
+                autoChoices, adaptive);
+    }
+
+    @TearDown(Level.Trial) public void detach() {
+        Swing.detach(header);
+    }
+
+    @Setup(Level.Invocation) public void reset() {
+        Swing.setContent(header, column, CustomChoice.MATCH_ALL);
+    }
+
+    @Benchmark public int apply() {
+        Swing.setContent(header, column, expression);
+
+        return header.getTable().getRowCount();
+    }
+}
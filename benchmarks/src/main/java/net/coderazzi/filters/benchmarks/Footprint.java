@@ -0,0 +1,109 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import javax.swing.JTable;
+
+import net.coderazzi.filters.gui.AutoChoices;
+import net.coderazzi.filters.gui.TableFilterHeader;
+
+
+/**
+ * Measures the memory retained by a filter header attached to a table, and
+ * the time required to attach it, for the scenarios described in the
+ * performance document (A1-A6 with minimum settings, B1-B4 with auto choices,
+ * adaptive and non adaptive).<br>
+ * The retained memory is obtained as the difference of used heap, after
+ * repeated garbage collections, with and without the header attached; it is
+ * an approximation, but stable enough to compare implementations.<br>
+ * Usage: java -Xmx4g -cp target/benchmarks.jar
+ * net.coderazzi.filters.benchmarks.Footprint [rows...]<br>
+ * The default rows go up to 10 million, which require a heap of 4 GB; a
+ * smaller heap can be used by giving smaller rows.
+ */
+public class Footprint {
+
+    private static final int DEFAULT_ROWS[] = {
+            1000, 10000, 100000, 1000000, 10000000
+        };
+
+    public static void main(String args[]) {
+        System.setProperty("java.awt.headless", "true");
+
+        int rows[] = DEFAULT_ROWS;
+        if (args.length > 0) {
+            rows = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                rows[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(String.format("%-36s %10s %12s %12s", "scenario",
+                "rows", "attach (ms)", "memory (MB)"));
+        for (int row : rows) {
+            measure("A: minimum settings", row, AutoChoices.DISABLED, false);
+            measure("B: auto choices, non adaptive", row, AutoChoices.ENABLED,
+                false);
+            measure("B: auto choices, adaptive", row, AutoChoices.ENABLED,
+                true);
+        }
+    }
+
+    private static void measure(String      scenario,
+                                int         rows,
+                                AutoChoices autoChoices,
+                                boolean     adaptive) {
+        BenchmarkModel model = new BenchmarkModel(rows);
+        JTable table = Swing.createTable(model);
+        long base = usedMemory();
+        long start = System.nanoTime();
+        TableFilterHeader header = Swing.attach(table, autoChoices, adaptive);
+        Swing.flush();
+
+        long time = System.nanoTime() - start;
+        long retained = usedMemory() - base;
+        System.out.println(String.format("%-36s %10d %12.1f %12.2f", scenario,
+                rows, time / 1e6, retained / (1024.0 * 1024.0)));
+        Swing.detach(header);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long ret = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException iex) {
+                Thread.currentThread().interrupt();
+            }
+
+            ret = Math.min(ret, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.coderazzi.filters.gui.AutoChoices;
+import net.coderazzi.filters.gui.CustomChoice;
+import net.coderazzi.filters.gui.FilterSettings;
+import net.coderazzi.filters.gui.TableFilterHeader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Time required to apply a choice selected on the popup, with and without
+ * the inverted index of the columns. Each invocation selects a different
+ * choice, so that no outcomes of previous filters are reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 4)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class InvertedIndexBenchmark {
+
+    @Param({ "1000000", "5000000", "10000000" })
+    int rows;
+
+    @Param({ "false", "true" })
+    boolean invertedIndex;
+
+    TableFilterHeader header;
+    CustomChoice ages[] = new CustomChoice[BenchmarkModel.DISTINCT_AGES];
+    CustomChoice names[] = new CustomChoice[100];
+    int next;
+
+    @Setup(Level.Trial) public void attach() {
+        BenchmarkModel model = new BenchmarkModel(rows);
+        for (int i = 0; i < ages.length; i++) {
+            ages[i] = CustomChoice.create(Integer.valueOf(18 + i));
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            names[i] = CustomChoice.create(model.getValueAt(i,
+                        BenchmarkModel.NAME));
+        }
+
+        // set before attaching, so the choices are extracted with the index
+        FilterSettings.invertedIndex = invertedIndex;
+        header = Swing.attach(Swing.createTable(model), AutoChoices.ENABLED,
+                false);
+    }
+
+    @TearDown(Level.Trial) public void detach() {
+        Swing.detach(header);
+        FilterSettings.invertedIndex = false;
+    }
+
+    /** A single age, on a column with few distinct values. */
+    @Benchmark public int ageChoice() {
+        Swing.setContent(header, BenchmarkModel.AGE,
+            ages[next++ % ages.length]);
+
+        return header.getTable().getRowCount();
+    }
+
+    /** A single name, on a column with thousands of distinct values. */
+    @Benchmark public int nameChoice() {
+        Swing.setContent(header, BenchmarkModel.NAME,
+            names[next++ % names.length]);
+
+        return header.getTable().getRowCount();
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.coderazzi.filters.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.table.AbstractTableModel;
+
+import net.coderazzi.filters.gui.AutoChoices;
+import net.coderazzi.filters.gui.CustomChoice;
+import net.coderazzi.filters.gui.TableFilterHeader;
+import net.coderazzi.filters.gui.editor.FilterEditor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Time required to extract the choices of a column with many distinct values
+ * (a quarter of the rows, with skewed frequencies), with and without a limit
+ * on the number of choices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class MaxChoicesBenchmark {
+
+    static final int VALUE = 0;
+    static final int GROUP = 1;
+
+    @Param({ "1000000", "10000000" })
+    int rows;
+
+    @Param({ "0", "100" })
+    int maxChoices;
+
+    @Param({ "false", "true" })
+    boolean adaptive;
+
+    TableFilterHeader header;
+    FilterEditor editor;
+
+    @Setup(Level.Trial) public void attach() {
+        header = Swing.attach(Swing.createTable(new Model(rows)),
+                AutoChoices.ENABLED, adaptive);
+        editor = (FilterEditor) header.getFilterEditor(VALUE);
+        Swing.run(new Runnable() {
+                @Override public void run() {
+                    header.setMaxChoices(maxChoices);
+                }
+            });
+    }
+
+    @TearDown(Level.Trial) public void detach() {
+        Swing.detach(header);
+    }
+
+    @Setup(Level.Invocation) public void reset() {
+        Swing.setContent(header, GROUP, CustomChoice.MATCH_ALL);
+    }
+
+    /** Extracts again the choices of the values column. */
+    @Benchmark public int extract() {
+        return Swing.call(new Callable<Integer>() {
+                    @Override public Integer call() {
+                        editor.setAutoChoices(AutoChoices.DISABLED);
+                        editor.setAutoChoices(AutoChoices.ENABLED);
+
+                        return editor.getChoicesSize();
+                    }
+                });
+    }
+
+    /** Filter on the other column, the values' choices are updated. */
+    @Benchmark public int filterChange() {
+        Swing.setContent(header, GROUP, 1);
+
+        return editor.getChoicesSize();
+    }
+
+
+    /** Model with a column of strings, and a column of small integers. */
+    static class Model extends AbstractTableModel {
+
+        private static final long serialVersionUID = -2386140226711436917L;
+
+        private String values[];
+        private int value[];
+
+        Model(int rows) {
+            Random random = new Random(rows);
+            values = new String[Math.max(1, rows / 4)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = "value " + i;
+            }
+
+            value = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                double d = random.nextDouble();
+                value[i] = (int) (d * d * d * values.length);
+            }
+        }
+
+        @Override public int getRowCount() {
+            return value.length;
+        }
+
+        @Override public int getColumnCount() {
+            return 2;
+        }
+
+        @Override public String getColumnName(int column) {
+            return (column == VALUE) ? "Value" : "Group";
+        }
+
+        @Override public Class<?> getColumnClass(int column) {
+            return (column == VALUE) ? String.class : Integer.class;
+        }
+
+        @Override public Object getValueAt(int row, int column) {
+            return (column == VALUE) ? values[value[row]] : (row % 5);
+        }
+    }
+}
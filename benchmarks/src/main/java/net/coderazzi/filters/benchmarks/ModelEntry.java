@@ -0,0 +1,73 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import javax.swing.RowFilter;
+import javax.swing.table.TableModel;
+
+
+/**
+ * {@link RowFilter.Entry} over a {@link TableModel}, used to evaluate filters
+ * without any sorter involved.
+ */
+public class ModelEntry extends RowFilter.Entry<TableModel, Integer> {
+
+    private TableModel model;
+    public int row;
+
+    public ModelEntry(TableModel model) {
+        this.model = model;
+    }
+
+    @Override public TableModel getModel() {
+        return model;
+    }
+
+    @Override public int getValueCount() {
+        return model.getColumnCount();
+    }
+
+    @Override public Object getValue(int index) {
+        return model.getValueAt(row, index);
+    }
+
+    @Override public Integer getIdentifier() {
+        return row;
+    }
+
+    /** Returns the number of rows in the model that pass the given filter. */
+    public int count(RowFilter filter) {
+        int ret = 0;
+        int rows = model.getRowCount();
+        for (row = 0; row < rows; row++) {
+            if (filter.include(this)) {
+                ret++;
+            }
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.text.Format;
+import java.text.ParseException;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.RowFilter;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.gui.ParserModel;
+import net.coderazzi.filters.parser.Parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Parsing and evaluation costs of the default {@link Parser}, isolated from
+ * any Swing component: the filter is evaluated directly on every model row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class ParserBenchmark {
+
+    @Param({ "1000", "100000", "1000000", "10000000" })
+    int rows;
+
+    /** Column and expression, separated by a colon. */
+    @Param({
+            "0:*", "0:Ka*", "0:*ar*", "0:~~.*ar.*", "1:> 30", "1:= 30",
+            "1:20 to 30", "3:Alpha", "4:*6*", "4:> 6/15/90"
+        })
+    String filter;
+
+    IParser parser;
+    String expression;
+    ModelEntry entry;
+    RowFilter rowFilter;
+
+    @Setup(Level.Trial) public void setup() throws ParseException {
+        int split = filter.indexOf(':');
+        int column = Integer.parseInt(filter.substring(0, split));
+        expression = filter.substring(split + 1);
+
+        BenchmarkModel model = new BenchmarkModel(rows);
+        parser = createParser(new ParserModel(), model.getColumnClass(column),
+                column);
+        entry = new ModelEntry(model);
+        rowFilter = parser.parseText(expression);
+    }
+
+    @Benchmark public RowFilter parse() throws ParseException {
+        return parser.parseText(expression);
+    }
+
+    @Benchmark public int evaluate() {
+        return entry.count(rowFilter);
+    }
+
+    /** Creates the parser, as the ParserModel would do for an editor. */
+    static IParser createParser(ParserModel parserModel,
+                                Class<?>    cl,
+                                int         column) {
+        boolean ignoreCase = parserModel.isIgnoreCase();
+        Format fmt = (cl == String.class) ? null : parserModel.getFormat(cl);
+
+        return new Parser(fmt,
+                (fmt == null) ? null : parserModel.getComparator(cl),
+                parserModel.getStringComparator(ignoreCase), ignoreCase,
+                column);
+    }
+}
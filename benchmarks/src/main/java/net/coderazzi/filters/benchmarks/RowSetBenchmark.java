@@ -0,0 +1,130 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.coderazzi.filters.RowSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Cost of combining the rows included by two filters, kept as {@link RowSet}
+ * instances, for sparse filters (1 row in 1000), dense filters (half of the
+ * rows, at random) and filters including ranges of consecutive rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class RowSetBenchmark {
+
+    @Param({ "10000000" })
+    int rows;
+
+    @Param({ "sparse", "dense", "ranges" })
+    String content;
+
+    RowSet a;
+    RowSet b;
+
+    @Setup(Level.Trial) public void create() {
+        Random random = new Random(rows);
+        a = create(random);
+        b = create(random);
+    }
+
+    private RowSet create(Random random) {
+        RowSet ret = new RowSet();
+        if ("ranges".equals(content)) {
+            for (int row = random.nextInt(1000); row < rows;
+                    row += 1000 + random.nextInt(100000)) {
+                ret.add(row, Math.min(rows, row + random.nextInt(100000)));
+            }
+        } else {
+            int one = "sparse".equals(content) ? 1000 : 2;
+            for (int row = 0; row < rows; row++) {
+                if (random.nextInt(one) == 0) {
+                    ret.add(row);
+                }
+            }
+        }
+
+        ret.optimize();
+
+        return ret;
+    }
+
+    @Benchmark public RowSet and() {
+        RowSet ret = new RowSet(a);
+        ret.and(b);
+
+        return ret;
+    }
+
+    @Benchmark public RowSet or() {
+        RowSet ret = new RowSet(a);
+        ret.or(b);
+
+        return ret;
+    }
+
+    @Benchmark public RowSet andNot() {
+        RowSet ret = new RowSet(a);
+        ret.andNot(b);
+
+        return ret;
+    }
+
+    @Benchmark public int cardinality() {
+        return a.cardinality();
+    }
+
+    /** Iteration over all the rows in the set. */
+    @Benchmark public int iterate() {
+        int ret = 0;
+        for (int row = a.next(0); row >= 0; row = a.next(row + 1)) {
+            ret += row;
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.coderazzi.filters.benchmarks;
+
+import java.text.Format;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import net.coderazzi.filters.gui.AutoChoices;
+import net.coderazzi.filters.gui.TableFilterHeader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Time required to apply comparison and range expressions, with and without
+ * the sorted index of the columns. Each invocation uses a new expression,
+ * so that no outcomes of previous filters are reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 4)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g" })
+public class SortedIndexBenchmark {
+
+    /** Number of distinct date ranges entered in turn. */
+    static final int RANGES = 100;
+
+    @Param({ "1000000", "5000000", "10000000" })
+    int rows;
+
+    @Param({ "false", "true" })
+    boolean sortedIndex;
+
+    TableFilterHeader header;
+    String ranges[] = new String[RANGES];
+    int next;
+
+    @Setup(Level.Trial) public void attach() {
+        header = Swing.attach(Swing.createTable(new BenchmarkModel(rows)),
+                AutoChoices.DISABLED, false);
+        Swing.run(new Runnable() {
+                @Override public void run() {
+                    header.setSortedIndex(sortedIndex);
+                }
+            });
+
+        Format format = Swing.call(new Callable<Format>() {
+                    @Override public Format call() {
+                        return header.getFilterEditor(BenchmarkModel.DATE)
+                            .getFormat();
+                    }
+                });
+        Calendar calendar = new GregorianCalendar(1961, Calendar.JANUARY, 1);
+        for (int i = 0; i < RANGES; i++) {
+            String from = format.format(calendar.getTime());
+            calendar.add(Calendar.DAY_OF_YEAR, 30);
+            ranges[i] = from + " to " + format.format(calendar.getTime());
+        }
+    }
+
+    @TearDown(Level.Trial) public void detach() {
+        Swing.detach(header);
+    }
+
+    /** A month of dates, on a column with thousands of distinct values. */
+    @Benchmark public int dateRange() {
+        Swing.setContent(header, BenchmarkModel.DATE,
+            ranges[next++ % RANGES]);
+
+        return header.getTable().getRowCount();
+    }
+
+    /** A single age, on a column with few distinct values. */
+    @Benchmark public int ageEquals() {
+        Swing.setContent(header, BenchmarkModel.AGE,
+            "= " + (18 + (next++ % BenchmarkModel.DISTINCT_AGES)));
+
+        return header.getTable().getRowCount();
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+
+import java.util.concurrent.Callable;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.gui.AutoChoices;
+import net.coderazzi.filters.gui.FilterSettings;
+import net.coderazzi.filters.gui.TableFilterHeader;
+
+
+/**
+ * Helper to drive the filter header from the benchmark threads.<br>
+ * All the operations on the header happen on the event dispatch thread, as
+ * they would on a real application; no display is required, as the benchmarks
+ * run with java.awt.headless set, and the header is not shown.
+ */
+public final class Swing {
+
+    private Swing() {
+    }
+
+    /** Executes the given task on the event dispatch thread, and waits. */
+    public static void run(final Runnable task) {
+        call(new Callable<Object>() {
+                @Override public Object call() {
+                    task.run();
+
+                    return null;
+                }
+            });
+    }
+
+    /** Executes the given task on the event dispatch thread, and waits. */
+    public static <T> T call(final Callable<T> task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            try {
+                return task.call();
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        final Object ret[] = new Object[1];
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            ret[0] = task.call();
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                });
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(iex);
+        } catch (InvocationTargetException ite) {
+            throw new RuntimeException(ite.getCause());
+        }
+
+        return (T) ret[0];
+    }
+
+    /** Creates a table for the given model, on the event dispatch thread. */
+    public static JTable createTable(final TableModel model) {
+        return call(new Callable<JTable>() {
+                    @Override public JTable call() {
+                        return new JTable(model);
+                    }
+                });
+    }
+
+    /**
+     * Attaches a new filter header to the given table, on the event dispatch
+     * thread.
+     */
+    public static TableFilterHeader attach(final JTable      table,
+                                           final AutoChoices autoChoices,
+                                           final boolean     adaptive) {
+        return call(new Callable<TableFilterHeader>() {
+                    @Override public TableFilterHeader call() {
+                        FilterSettings.adaptiveChoices = adaptive;
+
+                        return new TableFilterHeader(table, autoChoices);
+                    }
+                });
+    }
+
+    /** Detaches the filter header from its table. */
+    public static void detach(final TableFilterHeader header) {
+        if (header != null) {
+            run(new Runnable() {
+                    @Override public void run() {
+                        header.setTable(null);
+                    }
+                });
+        }
+    }
+
+    /** Sets the content on the filter editor at the given model column. */
+    public static void setContent(final TableFilterHeader header,
+                                  final int               column,
+                                  final Object            content) {
+        run(new Runnable() {
+                @Override public void run() {
+                    header.getFilterEditor(column).setContent(content);
+                }
+            });
+    }
+
+    /** Flushes any pending event on the event dispatch thread. */
+    public static void flush() {
+        run(new Runnable() {
+                @Override public void run() {
+                }
+            });
+    }
+}
@@ -27,6 +27,9 @@ package net.coderazzi.filters;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.RowFilter;
 
 
 /**
@@ -34,6 +37,17 @@ import java.util.Set;
  *
  * <p>The exact composition semantics (and / or / not) are not defined.</p>
  *
+ * <p>The enabled filters are kept as well in an array, rebuilt whenever a
+ * filter is added, removed or updated, so that subclasses can evaluate them
+ * without iterators or checks on their enabled state.</p>
+ *
+ * <p>Their evaluation order is adaptive: some rows are evaluated on every
+ * filter, recording its cost and its pass rate, and the filters are
+ * periodically sorted so that those deciding the result sooner, for less
+ * cost, are evaluated first. The sampling becomes sparser while the order
+ * does not change. The order has no effect on the result, as the filters
+ * are expected to have no side effects.</p>
+ *
  * @author  Luis M Pena - lu@coderazzi.net
  */
 abstract public class ComposedFilter extends Filter implements IFilterObserver {
@@ -44,6 +58,33 @@ abstract public class ComposedFilter extends Filter implements IFilterObserver {
     /** disabled filters. */
     private Set<IFilter> disabledFilters = new HashSet<IFilter>();
 
+    /** Initial sampling: one row out of SAMPLE_RATE, a power of 2. */
+    private static final int SAMPLE_RATE = 64;
+
+    /** Lowest sampling rate, reached while the order does not change. */
+    private static final int MAX_SAMPLE_RATE = 8192;
+
+    /** The filters are reordered after this number of samples. */
+    private static final int REORDER_SAMPLES = 128;
+
+    /**
+     * The currently enabled filters, in evaluation order. It can be read from
+     * any thread, the array is never modified once published. The reordering,
+     * done on the evaluating threads, only replaces the array it has sorted,
+     * so it never overrides a rebuild done meanwhile.
+     */
+    private final AtomicReference<Child[]> enabledFilters =
+        new AtomicReference<Child[]>(new Child[0]);
+
+    /** Evaluated rows, used to decide the sampled ones. */
+    private int evaluations;
+
+    /** Current sampling rate, minus one. */
+    private int sampleMask = SAMPLE_RATE - 1;
+
+    /** Samples since the last reordering. */
+    private int samples;
+
     /** Default constructor. */
     protected ComposedFilter() {
         filters = new HashSet<IFilter>();
@@ -65,6 +106,7 @@ abstract public class ComposedFilter extends Filter implements IFilterObserver {
     public void addFilter(IFilter... filtersToAdd) {
         for (IFilter filter : filtersToAdd) {
             if (filters.add(filter)) {
+                updateEnabledFilters();
                 filter.addFilterObserver(this);
                 if (filter.isEnabled()) {
                     super.setEnabled(true);
@@ -89,6 +131,10 @@ abstract public class ComposedFilter extends Filter implements IFilterObserver {
             }
         }
 
+        if (report) {
+            updateEnabledFilters();
+        }
+
         if (report) {
             if (isEnabled() && !filters.isEmpty()
                     && (disabledFilters.size() == filters.size())) {
@@ -109,6 +155,8 @@ abstract public class ComposedFilter extends Filter implements IFilterObserver {
 
     /** @see  IFilterObserver#filterUpdated(IFilter) */
     @Override public void filterUpdated(IFilter filter) {
+        updateEnabledFilters();
+
         boolean enabled = isEnabled();
         boolean changeState = false;
         if (filter.isEnabled()) {
@@ -139,9 +187,154 @@ abstract public class ComposedFilter extends Filter implements IFilterObserver {
         }
     }
 
+    /**
+     * Evaluates the enabled filters on the given row, in their current order.
+     * If and is true, returns true if all the filters include the row; it
+     * returns false otherwise if no filter includes the row. The result is
+     * always true if there are no enabled filters.
+     */
+    protected boolean include(RowFilter.Entry rowEntry, boolean and) {
+        Child enabled[] = enabledFilters.get();
+        int length = enabled.length;
+        if (length == 0) {
+            return true;
+        }
+
+        if ((length > 1) && ((++evaluations & sampleMask) == 0)) {
+            return sample(enabled, rowEntry, and);
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (enabled[i].filter.include(rowEntry) != and) {
+                return !and;
+            }
+        }
+
+        return and;
+    }
+
+    /**
+     * Evaluates all the filters on the row, updating their statistics. The
+     * statistics are updated without synchronization: the filter can be
+     * evaluated concurrently, and some samples could be lost.
+     */
+    private boolean sample(Child enabled[], RowFilter.Entry rowEntry,
+                           boolean and) {
+        boolean ret = and;
+        for (Child child : enabled) {
+            long start = System.nanoTime();
+            boolean include = child.filter.include(rowEntry);
+            child.cost += System.nanoTime() - start;
+            child.samples++;
+            if (include == and) {
+                child.passes++;
+            } else {
+                ret = !and;
+            }
+        }
+
+        if (++samples >= REORDER_SAMPLES) {
+            samples = 0;
+            reorder(enabled);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Publishes the filters sorted by their cost per decisive evaluation,
+     * that is, per rejected row in an and composition, or per included row
+     * in an or composition.
+     */
+    private void reorder(Child enabled[]) {
+        int length = enabled.length;
+        Child sorted[] = new Child[length];
+        boolean changed = false;
+        double weights[] = new double[length];
+        for (int i = 0; i < length; i++) {
+            Child child = enabled[i];
+            double weight = (double) child.cost
+                    / (child.samples - child.passes + 1);
+            // halve the statistics, so the order can follow any change
+            child.cost >>= 1;
+            child.samples >>= 1;
+            child.passes >>= 1;
+
+            // insertion sort: there are very few filters, and the
+            // statistics could change while sorting
+            int j = i;
+            while ((j > 0) && (weights[j - 1] > weight)) {
+                weights[j] = weights[j - 1];
+                sorted[j] = sorted[j - 1];
+                j--;
+            }
+
+            weights[j] = weight;
+            sorted[j] = child;
+            changed |= j != i;
+        }
+
+        if (!changed) {
+            sampleMask = Math.min((sampleMask << 1) | 1, MAX_SAMPLE_RATE - 1);
+        } else if (enabledFilters.compareAndSet(enabled, sorted)) {
+            sampleMask = SAMPLE_RATE - 1;
+        }
+    }
+
+    /**
+     * Rebuilds the array of enabled filters, keeping the current order and
+     * statistics of the filters still enabled. The statistics of the filters
+     * with a new generation are discarded.
+     */
+    private void updateEnabledFilters() {
+        Child current[] = enabledFilters.get();
+        Child enabled[] = new Child[filters.size()];
+        Set<IFilter> included = new HashSet<IFilter>();
+        int size = 0;
+        for (Child child : current) {
+            IFilter filter = child.filter;
+            if (filter.isEnabled() && filters.contains(filter)) {
+                enabled[size++] = (child.generation == filter.getGeneration())
+                    ? child : new Child(filter);
+                included.add(filter);
+            }
+        }
+
+        for (IFilter filter : filters) {
+            if (filter.isEnabled() && !included.contains(filter)) {
+                enabled[size++] = new Child(filter);
+            }
+        }
+
+        if (size < enabled.length) {
+            Child copy[] = new Child[size];
+            System.arraycopy(enabled, 0, copy, 0, size);
+            enabled = copy;
+        }
+
+        sampleMask = SAMPLE_RATE - 1;
+        enabledFilters.set(enabled);
+    }
+
     /** Returns true if there is information of this filter as disabled. */
     protected boolean isDisabled(IFilter filter) {
         return disabledFilters.contains(filter);
     }
 
+    /** Enabled filter, with its evaluation statistics. */
+    private static final class Child {
+        final IFilter filter;
+        /** The filter's generation when the statistics started. */
+        final int generation;
+        /** Accumulated evaluation time, in nanoseconds. */
+        long cost;
+        long samples;
+        /** Samples not deciding the composition result. */
+        long passes;
+
+        Child(IFilter filter) {
+            this.filter = filter;
+            this.generation = filter.getGeneration();
+        }
+    }
 }
@@ -46,6 +46,9 @@ abstract public class Filter extends RowFilter implements IFilter {
     /** The enabled state. */
     private boolean enabled = true;
 
+    /** The generation, incremented on each reported update. */
+    private volatile int generation;
+
     /** @see  IFilter#isEnabled() */
     @Override public boolean isEnabled() {
         return enabled;
@@ -59,6 +62,11 @@ abstract public class Filter extends RowFilter implements IFilter {
         }
     }
 
+    /** @see  IFilter#getGeneration() */
+    @Override public int getGeneration() {
+        return generation;
+    }
+
     /** @see  IFilter#addFilterObserver(IFilterObserver) */
     @Override public void addFilterObserver(IFilterObserver observer) {
         observers.add(observer);
@@ -76,9 +84,10 @@ abstract public class Filter extends RowFilter implements IFilter {
 
     /**
      * Method to be called by subclasses to report to the observers that the
-     * filter has changed.
+     * filter has changed. It updates as well the filter's generation.
      */
     public void reportFilterUpdatedToObservers() {
+        ++generation;
         for (IFilterObserver obs : new ArrayList<IFilterObserver>(observers)) {
             obs.filterUpdated(this);
         }
@@ -33,7 +33,7 @@ import javax.swing.RowFilter;
  * updated dynamically.</p>
  *
  * <p>Any change on the filter is propagated to the observers, in no given
- * order.</p>
+ * order, and updates its generation.</p>
  *
  * @author  Luis M Pena - lu@coderazzi.net
  */
@@ -48,6 +48,12 @@ public interface IFilter {
     /** Enables/Disables the filter. */
     void setEnabled(boolean enable);
 
+    /**
+     * Returns the filter's generation, a number that changes whenever the
+     * filter semantics change, including its enabled state.
+     */
+    int getGeneration();
+
     /** Adds an observer to receive filter change notifications. */
     void addFilterObserver(IFilterObserver observer);
 
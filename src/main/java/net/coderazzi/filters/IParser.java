@@ -27,6 +27,8 @@ package net.coderazzi.filters;
 
 import java.text.ParseException;
 
+import java.util.Comparator;
+
 import javax.swing.RowFilter;
 
 import net.coderazzi.filters.gui.IFilterEditor;
@@ -83,6 +85,84 @@ public interface IParser {
      */
     String stripHtml(String s);
 
+    /**
+     * Interface optionally implemented by the filters created by the parser,
+     * to identify refinements: as the user types, a filter can be known to
+     * include only rows already included by the previous one (for example,
+     * 'lond*' after 'lon*', or '&gt; 40' after '&gt; 30'). In this case, the
+     * filter needs only to be evaluated on the rows that passed the previous
+     * filter.
+     */
+    public interface RefiningFilter {
+
+        /**
+         * Returns true if every row included by this filter is also included
+         * by the given filter.
+         */
+        boolean refines(RowFilter filter);
+    }
+
+    /**
+     * Interface optionally implemented by the filters created by the parser,
+     * to signal that their outcome depends only on the value of the filtered
+     * column, not on the row. These filters can then be evaluated once per
+     * distinct value, see {@link IFilterEditor#setDictionaryEncoding(boolean)}.
+     */
+    public interface ValueFilter {
+    }
+
+    /**
+     * Interface optionally implemented by the {@link ValueFilter} filters
+     * whose included values are contiguous, if sorted with some comparator
+     * (like '&gt; 30', or '20 to 30'). The included rows can then be found by
+     * binary search on a sorted index of the column, see {@link
+     * IFilterEditor#setSortedIndex(boolean)}.
+     */
+    public interface OrderedFilter extends ValueFilter {
+
+        /**
+         * Returns true if, for the non null instances of the given class
+         * sorted with the comparator, the results of {@link #locate(Object)}
+         * never decrease.
+         */
+        boolean isOrdered(Class<?> type, Comparator comparator);
+
+        /**
+         * Locates a non null value, of the class accepted on {@link
+         * #isOrdered(Class, Comparator)}, respect to the included values.
+         *
+         * @return  -1 if the value precedes the included values, 0 if it is
+         *          included, and 1 if it follows them
+         */
+        int locate(Object value);
+    }
+
+    /**
+     * Interface optionally implemented by the {@link ValueFilter} filters
+     * matching the text of the values, when the included texts must contain
+     * some fragments (like 'acme', for '*acme*'). The rows holding these
+     * fragments can then be found on a substring index of the column, see
+     * {@link IFilterEditor#setSubstringIndex(boolean)}, and the filter only
+     * checked on those rows.
+     */
+    public interface SubstringFilter extends ValueFilter {
+
+        /**
+         * Returns the fragments contained in the text of any included value,
+         * or null if the filter can include values without them.<br>
+         * The fragments can be matched ignoring case, as {@link
+         * java.util.regex.Pattern} does with the flags CASE_INSENSITIVE and
+         * UNICODE_CASE.
+         */
+        String[] getFragments();
+
+        /** Returns the text of a value, as matched by the filter. */
+        String getText(Object value);
+
+        /** Returns true if the filter includes a value with the given text. */
+        boolean matches(String text);
+    }
+
     /** Helper class used on {@link IParser#parseInstantText(String)}. */
     public class InstantFilter {
         public RowFilter filter;
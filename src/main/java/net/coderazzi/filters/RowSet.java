@@ -0,0 +1,1242 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters;
+
+import java.util.Arrays;
+
+
+/**
+ * Compressed set of model rows.<br>
+ * The rows are split in chunks of 65536 rows, each one kept in the most
+ * compact container for its content: a sorted array for sparse chunks, a
+ * bitmap for dense ones, or a list of runs for chunks made of ranges of
+ * consecutive rows. A selective filter over millions of rows requires then a
+ * few kilobytes, and a filter including most of the rows just a few bytes
+ * per chunk.<br>
+ * The set operations ({@link #and(RowSet)}, {@link #or(RowSet)} and {@link
+ * #andNot(RowSet)}) modify this instance, like those on {@link
+ * java.util.BitSet}, and work chunk by chunk, so that only the chunks
+ * present on both sets are combined.<br>
+ * Rows must be non negative. Instances are not thread safe.
+ */
+public final class RowSet {
+
+    /** Maximum number of rows on an array container. */
+    static final int ARRAY_MAX = 4096;
+
+    /** Number of rows on each chunk. */
+    static final int CHUNK = 1 << 16;
+
+    /** Number of words on a bitmap container. */
+    static final int WORDS = CHUNK >> 6;
+
+    /** The key (row >>> 16) of each container, sorted. */
+    private char keys[];
+
+    /** The containers, none of them empty. */
+    private Container containers[];
+
+    /** Number of containers. */
+    private int size;
+
+    /** Position of the last container read, as rows are read in order. */
+    private int last;
+
+    /** Creates an empty set. */
+    public RowSet() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    /** Creates a copy of the given set. */
+    public RowSet(RowSet set) {
+        int len = Math.max(4, set.size);
+        keys = Arrays.copyOf(set.keys, len);
+        containers = new Container[len];
+        size = set.size;
+        for (int i = 0; i < size; i++) {
+            containers[i] = set.containers[i].copy();
+        }
+    }
+
+    /** Creates a set with the rows [fromRow, toRow). */
+    public static RowSet range(int fromRow, int toRow) {
+        RowSet ret = new RowSet();
+        ret.add(fromRow, toRow);
+
+        return ret;
+    }
+
+    /** Returns the number of rows in the set. */
+    public int cardinality() {
+        int ret = 0;
+        for (int i = 0; i < size; i++) {
+            ret += containers[i].cardinality();
+        }
+
+        return ret;
+    }
+
+    /** Returns true if the set contains no rows. */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Returns true if the set contains the given row. */
+    public boolean contains(int row) {
+        int key = row >>> 16;
+        int i = last;
+        if ((i >= size) || (keys[i] != key)) {
+            i = find(key);
+            if (i < 0) {
+                return false;
+            }
+
+            last = i;
+        }
+
+        return containers[i].contains(row & 0xffff);
+    }
+
+    /**
+     * Adds a row to the set.
+     *
+     * @return  true if the row was not yet included
+     */
+    public boolean add(int row) {
+        int key = row >>> 16;
+        int low = row & 0xffff;
+        // rows are usually added in order: try first the last container
+        int i = ((size > 0) && (keys[size - 1] == key)) ? (size - 1)
+                                                        : find(key);
+        if (i < 0) {
+            insert(-i - 1, key, new ArrayContainer(low));
+        } else {
+            Container c = containers[i];
+            if (c.contains(low)) {
+                return false;
+            }
+
+            containers[i] = c.add(low);
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes a row from the set.
+     *
+     * @return  true if the row was included
+     */
+    public boolean remove(int row) {
+        int i = find(row >>> 16);
+        int low = row & 0xffff;
+        if ((i < 0) || !containers[i].contains(low)) {
+            return false;
+        }
+
+        set(i, containers[i].remove(low));
+
+        return true;
+    }
+
+    /** Adds the rows [fromRow, toRow). */
+    public void add(int fromRow, int toRow) {
+        if (fromRow < toRow) {
+            int last = toRow - 1;
+            int lastKey = last >>> 16;
+            int i = 0;
+            for (int key = fromRow >>> 16; key <= lastKey; key++) {
+                int from = (key == (fromRow >>> 16)) ? (fromRow & 0xffff) : 0;
+                int to = (key == lastKey) ? ((last & 0xffff) + 1) : CHUNK;
+                i = find(key, i);
+                if (i < 0) {
+                    i = -i - 1;
+                    insert(i, key, new RunContainer(from, to));
+                } else if ((from == 0) && (to == CHUNK)) {
+                    containers[i] = RunContainer.full();
+                } else {
+                    containers[i] = containers[i].add(from, to);
+                }
+            }
+        }
+    }
+
+    /** Removes the rows [fromRow, toRow). */
+    public void remove(int fromRow, int toRow) {
+        if (fromRow < toRow) {
+            int last = toRow - 1;
+            int firstKey = fromRow >>> 16;
+            int lastKey = last >>> 16;
+            int i = find(firstKey);
+            if (i < 0) {
+                i = -i - 1;
+            }
+
+            int n = i;
+            for (; (i < size) && (keys[i] <= lastKey); i++) {
+                int key = keys[i];
+                int from = (key == firstKey) ? (fromRow & 0xffff) : 0;
+                int to = (key == lastKey) ? ((last & 0xffff) + 1) : CHUNK;
+                Container c = ((from == 0) && (to == CHUNK))
+                    ? null : containers[i].remove(from, to).optimize();
+                if ((c != null) && !c.isEmpty()) {
+                    keys[n] = keys[i];
+                    containers[n++] = c;
+                }
+            }
+
+            compact(n, i);
+        }
+    }
+
+    /**
+     * Returns the first row in the set equal or greater than the given one,
+     * or -1 if there is none.<br>
+     * The rows of a set are iterated as:
+     *
+     * <pre>
+     for (int row = set.next(0); row >= 0; row = set.next(row + 1))
+     * </pre>
+     */
+    public int next(int row) {
+        row = Math.max(0, row);
+        int key = row >>> 16;
+        int i = last;
+        if ((i >= size) || (keys[i] != key)) {
+            i = find(key);
+        }
+
+        if (i >= 0) {
+            last = i;
+            int ret = containers[i].next(row & 0xffff);
+            if (ret >= 0) {
+                return (key << 16) | ret;
+            }
+
+            ++i;
+        } else {
+            i = -i - 1;
+        }
+
+        if (i < size) {
+            last = i;
+
+            return (keys[i] << 16) | containers[i].next(0);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the first row not in the set equal or greater than the given
+     * one.
+     */
+    public int nextAbsent(int row) {
+        int key = row >>> 16;
+        int i = find(key);
+        if (i < 0) {
+            return row;
+        }
+
+        int ret = containers[i].nextAbsent(row & 0xffff);
+        while (ret == CHUNK) {
+            ++key;
+            if ((++i == size) || (keys[i] != key)) {
+                return key << 16;
+            }
+
+            ret = containers[i].nextAbsent(0);
+        }
+
+        return (key << 16) | ret;
+    }
+
+    /** Returns a new set with the rows in this set within [fromRow, toRow). */
+    public RowSet get(int fromRow, int toRow) {
+        RowSet ret = new RowSet();
+        if (fromRow < toRow) {
+            int last = toRow - 1;
+            int firstKey = fromRow >>> 16;
+            int lastKey = last >>> 16;
+            int i = find(firstKey);
+            for (i = (i < 0) ? (-i - 1) : i;
+                    (i < size) && (keys[i] <= lastKey); i++) {
+                int key = keys[i];
+                Container c = containers[i].copy();
+                if ((key == firstKey) && ((fromRow & 0xffff) > 0)) {
+                    c = c.remove(0, fromRow & 0xffff);
+                }
+
+                if ((key == lastKey) && ((last & 0xffff) < 0xffff)) {
+                    c = c.remove((last & 0xffff) + 1, CHUNK);
+                }
+
+                if (!c.isEmpty()) {
+                    ret.insert(ret.size, key, c.optimize());
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /** Keeps only the rows also included in the given set. */
+    public void and(RowSet set) {
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            j = set.find(keys[i], j);
+            if (j < 0) {
+                j = -j - 1;
+            } else {
+                Container c = containers[i].and(set.containers[j]);
+                if (!c.isEmpty()) {
+                    keys[n] = keys[i];
+                    containers[n++] = c;
+                }
+            }
+        }
+
+        compact(n, size);
+    }
+
+    /** Adds the rows included in the given set. */
+    public void or(RowSet set) {
+        if (set.size > 0) {
+            int len = size + set.size;
+            char newKeys[] = new char[len];
+            Container newContainers[] = new Container[len];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while ((i < size) || (j < set.size)) {
+                int a = (i < size) ? keys[i] : Integer.MAX_VALUE;
+                int b = (j < set.size) ? set.keys[j] : Integer.MAX_VALUE;
+                if (a < b) {
+                    newKeys[n] = keys[i];
+                    newContainers[n++] = containers[i++];
+                } else if (b < a) {
+                    newKeys[n] = set.keys[j];
+                    newContainers[n++] = set.containers[j++].copy();
+                } else {
+                    newKeys[n] = keys[i];
+                    newContainers[n++] = containers[i++].or(
+                            set.containers[j++]);
+                }
+            }
+
+            keys = newKeys;
+            containers = newContainers;
+            size = n;
+        }
+    }
+
+    /** Removes the rows included in the given set. */
+    public void andNot(RowSet set) {
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            if (j < set.size) {
+                j = set.find(keys[i], j);
+                if (j < 0) {
+                    j = -j - 1;
+                } else {
+                    c = c.andNot(set.containers[j]);
+                }
+            }
+
+            if (!c.isEmpty()) {
+                keys[n] = keys[i];
+                containers[n++] = c;
+            }
+        }
+
+        compact(n, size);
+    }
+
+    /**
+     * Moves up, by the given count, the rows equal or greater than the given
+     * one, as it is required to insert new rows on a model.
+     */
+    public void insert(int row, int count) {
+        if ((count > 0) && (next(row) >= 0)) {
+            RowSet tail = get(row, Integer.MAX_VALUE);
+            remove(row, Integer.MAX_VALUE);
+            or(tail.shift(count));
+        }
+    }
+
+    /**
+     * Removes the rows [row, row + count), moving down the rows after them,
+     * as it is required to delete rows on a model.
+     */
+    public void delete(int row, int count) {
+        if ((count > 0) && (next(row) >= 0)) {
+            RowSet tail = get(row + count, Integer.MAX_VALUE);
+            remove(row, Integer.MAX_VALUE);
+            or(tail.shift(-count));
+        }
+    }
+
+    /**
+     * Converts each container to its most compact representation; it is
+     * convenient after adding many rows one by one.
+     */
+    public void optimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].optimize();
+        }
+    }
+
+    @Override public String toString() {
+        StringBuilder ret = new StringBuilder("{");
+        for (int row = next(0); row >= 0; row = next(row + 1)) {
+            if (ret.length() > 1) {
+                ret.append(", ");
+            }
+
+            ret.append(row);
+        }
+
+        return ret.append('}').toString();
+    }
+
+    /** Returns a new set with all the rows moved by the given offset. */
+    private RowSet shift(int offset) {
+        RowSet ret = new RowSet();
+        if ((offset & 0xffff) == 0) {
+            // whole chunks: the containers are just moved
+            ret.keys = keys;
+            ret.containers = containers;
+            ret.size = size;
+            for (int i = 0; i < size; i++) {
+                keys[i] += offset >> 16;
+            }
+        } else {
+            for (int row = next(0); row >= 0;) {
+                int end = nextAbsent(row);
+                ret.add(row + offset, end + offset);
+                row = next(end);
+            }
+
+            ret.optimize();
+        }
+
+        return ret;
+    }
+
+    /** Returns the position of the key, or (-(insertion point) - 1). */
+    private int find(int key) {
+        return find(key, 0);
+    }
+
+    /** Returns the position of the key, searching from the given position. */
+    private int find(int key, int from) {
+        if ((size > 0) && (keys[size - 1] < key)) {
+            return -size - 1;
+        }
+
+        return Arrays.binarySearch(keys, from, size, (char) key);
+    }
+
+    /** Inserts a new container at the given position. */
+    private void insert(int i, int key, Container container) {
+        if (size == keys.length) {
+            int len = size + (size >> 1) + 1;
+            keys = Arrays.copyOf(keys, len);
+            containers = Arrays.copyOf(containers, len);
+        }
+
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = (char) key;
+        containers[i] = container;
+        ++size;
+    }
+
+    /** Replaces a container, removing it if empty. */
+    private void set(int i, Container container) {
+        if (container.isEmpty()) {
+            compact(i, i + 1);
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    /** Removes the containers [from, to). */
+    private void compact(int from, int to) {
+        int moved = size - to;
+        System.arraycopy(keys, to, keys, from, moved);
+        System.arraycopy(containers, to, containers, from, moved);
+        Arrays.fill(containers, from + moved, size, null);
+        size = from + moved;
+    }
+
+    /**
+     * The rows of a chunk, as 16 bits values.<br>
+     * Updates can return a new container, when the current one cannot hold
+     * the outcome; the set operations return always new containers.
+     */
+    abstract static class Container {
+
+        /** Returns the number of rows. */
+        abstract int cardinality();
+
+        abstract boolean isEmpty();
+
+        abstract boolean contains(int low);
+
+        /** Adds a row, returning the container holding it. */
+        abstract Container add(int low);
+
+        abstract Container remove(int low);
+
+        /** Adds the rows [from, to), returning the container holding them. */
+        abstract Container add(int from, int to);
+
+        abstract Container remove(int from, int to);
+
+        /** Returns the first row equal or greater than low, or -1. */
+        abstract int next(int low);
+
+        /** Returns the first absent row equal or greater than low. */
+        abstract int nextAbsent(int low);
+
+        abstract Container copy();
+
+        /** Returns a bitmap with the rows, which can be this instance. */
+        abstract BitmapContainer bitmap();
+
+        /** Returns the smallest container with the same rows. */
+        abstract Container optimize();
+
+        /** Returns true if the container includes all the rows. */
+        boolean isFull() {
+            return false;
+        }
+
+        /** Returns the rows also included in the given container. */
+        final Container and(Container c) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(c, true);
+            }
+
+            if (c instanceof ArrayContainer) {
+                return ((ArrayContainer) c).filter(this, true);
+            }
+
+            if (isFull()) {
+                return c.copy();
+            }
+
+            if (c.isFull()) {
+                return copy();
+            }
+
+            if ((this instanceof RunContainer) && (c instanceof RunContainer)) {
+                return RunContainer.combine(this, c, RunContainer.AND);
+            }
+
+            return bitmapCopy().and(c.bitmap().words).optimize();
+        }
+
+        /** Returns the rows included in this or the given container. */
+        final Container or(Container c) {
+            if (isFull() || c.isFull()) {
+                return RunContainer.full();
+            }
+
+            if ((this instanceof ArrayContainer)
+                    && (c instanceof ArrayContainer)) {
+                ArrayContainer a = (ArrayContainer) this;
+                ArrayContainer b = (ArrayContainer) c;
+                if ((a.size + b.size) <= ARRAY_MAX) {
+                    return a.merge(b);
+                }
+            }
+
+            if ((this instanceof RunContainer) && (c instanceof RunContainer)) {
+                return RunContainer.combine(this, c, RunContainer.OR);
+            }
+
+            return bitmapCopy().or(c.bitmap().words).optimize();
+        }
+
+        /** Returns the rows not included in the given container. */
+        final Container andNot(Container c) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(c, false);
+            }
+
+            if (c.isFull()) {
+                return new ArrayContainer();
+            }
+
+            if ((this instanceof RunContainer) && (c instanceof RunContainer)) {
+                return RunContainer.combine(this, c, RunContainer.AND_NOT);
+            }
+
+            return bitmapCopy().andNot(c.bitmap().words).optimize();
+        }
+
+        private BitmapContainer bitmapCopy() {
+            BitmapContainer ret = bitmap();
+
+            return (ret == this) ? (BitmapContainer) ret.copy() : ret;
+        }
+    }
+
+    /** Container of up to {@link RowSet#ARRAY_MAX} rows, as sorted array. */
+    static final class ArrayContainer extends Container {
+        char content[];
+        int size;
+
+        ArrayContainer() {
+            content = new char[0];
+        }
+
+        ArrayContainer(int low) {
+            content = new char[] { (char) low };
+            size = 1;
+        }
+
+        ArrayContainer(char content[], int size) {
+            this.content = content;
+            this.size = size;
+        }
+
+        @Override int cardinality() {
+            return size;
+        }
+
+        @Override boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override boolean contains(int low) {
+            return Arrays.binarySearch(content, 0, size, (char) low) >= 0;
+        }
+
+        @Override Container add(int low) {
+            int i = ((size == 0) || (content[size - 1] < low))
+                ? (-size - 1) : Arrays.binarySearch(content, 0, size,
+                        (char) low);
+            if (i >= 0) {
+                return this;
+            }
+
+            if (size == ARRAY_MAX) {
+                return bitmap().add(low);
+            }
+
+            i = -i - 1;
+            if (size == content.length) {
+                content = Arrays.copyOf(content,
+                        Math.min(ARRAY_MAX, Math.max(4, size << 1)));
+            }
+
+            System.arraycopy(content, i, content, i + 1, size - i);
+            content[i] = (char) low;
+            ++size;
+
+            return this;
+        }
+
+        @Override Container remove(int low) {
+            int i = Arrays.binarySearch(content, 0, size, (char) low);
+            if (i >= 0) {
+                System.arraycopy(content, i + 1, content, i, size - i - 1);
+                --size;
+            }
+
+            return this;
+        }
+
+        @Override Container add(int from, int to) {
+            int start = lowerBound(from);
+            int end = lowerBound(to);
+            int newSize = size - (end - start) + (to - from);
+            if (newSize > ARRAY_MAX) {
+                return bitmap().add(from, to);
+            }
+
+            char newContent[] = (newSize <= content.length)
+                ? content : new char[newSize];
+            System.arraycopy(content, end, newContent, newSize - (size - end),
+                size - end);
+            if (newContent != content) {
+                System.arraycopy(content, 0, newContent, 0, start);
+            }
+
+            for (int low = from; low < to; low++) {
+                newContent[start++] = (char) low;
+            }
+
+            content = newContent;
+            size = newSize;
+
+            return this;
+        }
+
+        @Override Container remove(int from, int to) {
+            int start = lowerBound(from);
+            int end = lowerBound(to);
+            System.arraycopy(content, end, content, start, size - end);
+            size -= end - start;
+
+            return this;
+        }
+
+        @Override int next(int low) {
+            int i = lowerBound(low);
+
+            return (i < size) ? content[i] : -1;
+        }
+
+        @Override int nextAbsent(int low) {
+            int i = Arrays.binarySearch(content, 0, size, (char) low);
+            if (i < 0) {
+                return low;
+            }
+
+            while ((++i < size) && (content[i] == (content[i - 1] + 1))) {
+            }
+
+            return content[i - 1] + 1;
+        }
+
+        @Override Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, size), size);
+        }
+
+        @Override BitmapContainer bitmap() {
+            BitmapContainer ret = new BitmapContainer();
+            long words[] = ret.words;
+            for (int i = 0; i < size; i++) {
+                int low = content[i];
+                words[low >>> 6] |= 1L << low;
+            }
+
+            ret.cardinality = size;
+
+            return ret;
+        }
+
+        @Override Container optimize() {
+            int runs = 0;
+            for (int i = 0; i < size; i++) {
+                if ((i == 0) || (content[i] != (content[i - 1] + 1))) {
+                    ++runs;
+                }
+            }
+
+            if ((runs << 1) < size) {
+                return RunContainer.of(this, runs);
+            }
+
+            if (content.length > size) {
+                content = Arrays.copyOf(content, size);
+            }
+
+            return this;
+        }
+
+        /** Returns the rows whose inclusion on the container is as given. */
+        ArrayContainer filter(Container c, boolean included) {
+            char ret[] = new char[size];
+            int n = 0;
+            if (c instanceof ArrayContainer) {
+                // both arrays are sorted: merge them
+                ArrayContainer a = (ArrayContainer) c;
+                int j = 0;
+                for (int i = 0; i < size; i++) {
+                    char low = content[i];
+                    while ((j < a.size) && (a.content[j] < low)) {
+                        ++j;
+                    }
+
+                    if (((j < a.size) && (a.content[j] == low)) == included) {
+                        ret[n++] = low;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (c.contains(content[i]) == included) {
+                        ret[n++] = content[i];
+                    }
+                }
+            }
+
+            return new ArrayContainer(Arrays.copyOf(ret, n), n);
+        }
+
+        /** Returns the union of both arrays. */
+        ArrayContainer merge(ArrayContainer c) {
+            char ret[] = new char[size + c.size];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while ((i < size) && (j < c.size)) {
+                char a = content[i];
+                char b = c.content[j];
+                if (a <= b) {
+                    ++i;
+                    if (a == b) {
+                        ++j;
+                    }
+                    ret[n++] = a;
+                } else {
+                    ++j;
+                    ret[n++] = b;
+                }
+            }
+
+            while (i < size) {
+                ret[n++] = content[i++];
+            }
+
+            while (j < c.size) {
+                ret[n++] = c.content[j++];
+            }
+
+            return new ArrayContainer(Arrays.copyOf(ret, n), n);
+        }
+
+        /** Returns the position of the first row equal or greater than low. */
+        private int lowerBound(int low) {
+            if (low >= CHUNK) {
+                return size;
+            }
+
+            int i = Arrays.binarySearch(content, 0, size, (char) low);
+
+            return (i < 0) ? (-i - 1) : i;
+        }
+    }
+
+    /** Container as a bitmap of 65536 bits. */
+    static final class BitmapContainer extends Container {
+        long words[] = new long[WORDS];
+        int cardinality;
+
+        @Override int cardinality() {
+            return cardinality;
+        }
+
+        @Override boolean isEmpty() {
+            return cardinality == 0;
+        }
+
+        @Override boolean contains(int low) {
+            return 0 != (words[low >>> 6] & (1L << low));
+        }
+
+        @Override Container add(int low) {
+            long now = words[low >>> 6];
+            long set = now | (1L << low);
+            if (set != now) {
+                words[low >>> 6] = set;
+                ++cardinality;
+            }
+
+            return this;
+        }
+
+        @Override Container remove(int low) {
+            long now = words[low >>> 6];
+            long set = now & ~(1L << low);
+            if (set != now) {
+                words[low >>> 6] = set;
+                --cardinality;
+            }
+
+            return this;
+        }
+
+        @Override Container add(int from, int to) {
+            return setRange(from, to, true);
+        }
+
+        @Override Container remove(int from, int to) {
+            return setRange(from, to, false);
+        }
+
+        @Override int next(int low) {
+            int i = low >>> 6;
+            long word = words[i] & (-1L << low);
+            while (word == 0) {
+                if (++i == WORDS) {
+                    return -1;
+                }
+
+                word = words[i];
+            }
+
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override int nextAbsent(int low) {
+            int i = low >>> 6;
+            long word = ~words[i] & (-1L << low);
+            while (word == 0) {
+                if (++i == WORDS) {
+                    return CHUNK;
+                }
+
+                word = ~words[i];
+            }
+
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override Container copy() {
+            BitmapContainer ret = new BitmapContainer();
+            System.arraycopy(words, 0, ret.words, 0, WORDS);
+            ret.cardinality = cardinality;
+
+            return ret;
+        }
+
+        @Override BitmapContainer bitmap() {
+            return this;
+        }
+
+        @Override Container optimize() {
+            int runs = 0;
+            long carry = 0;
+            for (long word : words) {
+                runs += Long.bitCount(word & ~((word << 1) | carry));
+                carry = word >>> 63;
+            }
+
+            // sizes: 4 bytes per run, 2 bytes per array entry
+            if ((runs << 1) < Math.min(cardinality, WORDS << 2)) {
+                return RunContainer.of(this, runs);
+            }
+
+            if (cardinality <= ARRAY_MAX) {
+                char content[] = new char[cardinality];
+                int n = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    long word = words[i];
+                    while (word != 0) {
+                        content[n++] = (char) ((i << 6)
+                                    + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+
+                return new ArrayContainer(content, n);
+            }
+
+            return this;
+        }
+
+        BitmapContainer and(long other[]) {
+            int card = 0;
+            for (int i = 0; i < WORDS; i++) {
+                card += Long.bitCount(words[i] &= other[i]);
+            }
+
+            cardinality = card;
+
+            return this;
+        }
+
+        BitmapContainer or(long other[]) {
+            int card = 0;
+            for (int i = 0; i < WORDS; i++) {
+                card += Long.bitCount(words[i] |= other[i]);
+            }
+
+            cardinality = card;
+
+            return this;
+        }
+
+        BitmapContainer andNot(long other[]) {
+            int card = 0;
+            for (int i = 0; i < WORDS; i++) {
+                card += Long.bitCount(words[i] &= ~other[i]);
+            }
+
+            cardinality = card;
+
+            return this;
+        }
+
+        private BitmapContainer setRange(int from, int to, boolean set) {
+            if (from < to) {
+                int first = from >>> 6;
+                int last = (to - 1) >>> 6;
+                for (int i = first; i <= last; i++) {
+                    long mask = -1L;
+                    if (i == first) {
+                        mask &= -1L << from;
+                    }
+
+                    if (i == last) {
+                        mask &= -1L >>> (-to & 63);
+                    }
+
+                    long now = words[i];
+                    long word = set ? (now | mask) : (now & ~mask);
+                    cardinality += Long.bitCount(word) - Long.bitCount(now);
+                    words[i] = word;
+                }
+            }
+
+            return this;
+        }
+    }
+
+    /** Container as a list of ranges of consecutive rows. */
+    static final class RunContainer extends Container {
+
+        /** Operations for {@link #combine(Container, Container, int)}. */
+        static final int AND = 0;
+        static final int OR = 1;
+        static final int AND_NOT = 2;
+
+        /** Pairs start / length - 1 of each range, sorted, not adjacent. */
+        char runs[];
+        int count;
+
+        RunContainer(int from, int to) {
+            runs = new char[] { (char) from, (char) (to - from - 1) };
+            count = 1;
+        }
+
+        private RunContainer(char runs[], int count) {
+            this.runs = runs;
+            this.count = count;
+        }
+
+        /** Returns a container including all the rows of the chunk. */
+        static RunContainer full() {
+            return new RunContainer(0, CHUNK);
+        }
+
+        /** Returns the runs on the given container, whose number is known. */
+        static RunContainer of(Container c, int count) {
+            char runs[] = new char[count << 1];
+            int n = 0;
+            for (int low = c.next(0); low >= 0;) {
+                int end = c.nextAbsent(low);
+                runs[n++] = (char) low;
+                runs[n++] = (char) (end - low - 1);
+                low = (end == CHUNK) ? -1 : c.next(end);
+            }
+
+            return new RunContainer(runs, count);
+        }
+
+        /**
+         * Returns the outcome of the given operation on both run containers,
+         * walking over the starts and ends of their runs.
+         */
+        static Container combine(Container a, Container b, int operation) {
+            RunContainer x = (RunContainer) a;
+            RunContainer y = (RunContainer) b;
+            char runs[] = new char[(x.count + y.count) << 1];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            int low = 0;
+            while (low < CHUNK) {
+                while ((i < x.count) && (x.end(i) < low)) {
+                    ++i;
+                }
+
+                while ((j < y.count) && (y.end(j) < low)) {
+                    ++j;
+                }
+
+                boolean inX = (i < x.count) && (x.runs[i << 1] <= low);
+                boolean inY = (j < y.count) && (y.runs[j << 1] <= low);
+                int next = CHUNK;
+                if (i < x.count) {
+                    next = inX ? (x.end(i) + 1) : x.runs[i << 1];
+                }
+
+                if (j < y.count) {
+                    next = Math.min(next,
+                            inY ? (y.end(j) + 1) : y.runs[j << 1]);
+                }
+
+                boolean in = (operation == AND) ? (inX && inY)
+                                                : ((operation == OR)
+                                                    ? (inX || inY)
+                                                    : (inX && !inY));
+                if (in) {
+                    if ((n > 0) && ((runs[n - 2] + runs[n - 1] + 1) == low)) {
+                        runs[n - 1] += next - low;
+                    } else {
+                        runs[n++] = (char) low;
+                        runs[n++] = (char) (next - low - 1);
+                    }
+                }
+
+                low = next;
+            }
+
+            return new RunContainer(runs, n >> 1).optimize();
+        }
+
+        @Override int cardinality() {
+            int ret = count;
+            for (int i = 1; i < (count << 1); i += 2) {
+                ret += runs[i];
+            }
+
+            return ret;
+        }
+
+        @Override boolean isEmpty() {
+            return count == 0;
+        }
+
+        @Override boolean isFull() {
+            return (count == 1) && (runs[0] == 0) && (runs[1] == 0xffff);
+        }
+
+        @Override boolean contains(int low) {
+            int i = find(low);
+
+            return (i >= 0) && (low <= (runs[i] + runs[i + 1]));
+        }
+
+        @Override Container add(int low) {
+            return add(low, low + 1);
+        }
+
+        @Override Container remove(int low) {
+            return remove(low, low + 1);
+        }
+
+        @Override Container add(int from, int to) {
+            int last = (count << 1) - 2;
+            int end = (count == 0) ? -1 : (runs[last] + runs[last + 1] + 1);
+            if (from > end) {
+                // appended range
+                if (runs.length == (count << 1)) {
+                    runs = Arrays.copyOf(runs, (count + 1) << 2);
+                }
+
+                runs[count << 1] = (char) from;
+                runs[(count << 1) + 1] = (char) (to - from - 1);
+                ++count;
+
+                return this;
+            }
+
+            if ((from >= runs[last]) && (from <= end)) {
+                // range extending the last run
+                runs[last + 1] = (char) (Math.max(end, to) - runs[last] - 1);
+
+                return this;
+            }
+
+            return bitmap().add(from, to);
+        }
+
+        @Override Container remove(int from, int to) {
+            return bitmap().remove(from, to);
+        }
+
+        @Override int next(int low) {
+            int i = find(low);
+            if ((i >= 0) && (low <= (runs[i] + runs[i + 1]))) {
+                return low;
+            }
+
+            i += 2;
+
+            return (i < (count << 1)) ? runs[i] : -1;
+        }
+
+        @Override int nextAbsent(int low) {
+            int i = find(low);
+            if ((i >= 0) && (low <= (runs[i] + runs[i + 1]))) {
+                return runs[i] + runs[i + 1] + 1;
+            }
+
+            return low;
+        }
+
+        @Override Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, count << 1), count);
+        }
+
+        @Override BitmapContainer bitmap() {
+            BitmapContainer ret = new BitmapContainer();
+            for (int i = 0; i < (count << 1); i += 2) {
+                ret.setRange(runs[i], runs[i] + runs[i + 1] + 1, true);
+            }
+
+            return ret;
+        }
+
+        @Override Container optimize() {
+            int card = cardinality();
+            if ((count << 1) >= Math.min(card, WORDS << 2)) {
+                return bitmap().optimize();
+            }
+
+            if (runs.length > (count << 1)) {
+                runs = Arrays.copyOf(runs, count << 1);
+            }
+
+            return this;
+        }
+
+        /** Returns the last row on the given run. */
+        private int end(int run) {
+            return runs[run << 1] + runs[(run << 1) + 1];
+        }
+
+        /**
+         * Returns the position on runs of the last run starting on or before
+         * low, or -2.
+         */
+        private int find(int low) {
+            int lo = 0;
+            int hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[mid << 1] <= low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+
+            return (lo - 1) << 1;
+        }
+    }
+}
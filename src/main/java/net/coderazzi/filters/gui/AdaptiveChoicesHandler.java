@@ -27,12 +27,10 @@ package net.coderazzi.filters.gui;
 
 import java.text.Format;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -41,6 +39,7 @@ import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableModel;
 
 import net.coderazzi.filters.IFilter;
+import net.coderazzi.filters.RowSet;
 import net.coderazzi.filters.gui.editor.FilterEditor;
 
 
@@ -138,6 +137,12 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
         }
     }
 
+    @Override public void consolidateTableUpdates() {
+        if (adaptiveSupport != null) {
+            adaptiveSupport.consolidateTableUpdates();
+        }
+    }
+
     /** Creates the associated {@link AdaptiveChoicesSupport} instance. */
     private void createAdaptiveChoicesSupport() {
         Collection<FilterEditor> eds = handler.getEditors();
@@ -162,20 +167,19 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
     /**
      * Helper class, holding, for each row and filter (editor or user defined),
      * a bit defining whether it is filtered in or out.<br>
+     * For each editor, it keeps as well the number of rows that pass all the
+     * other filters, for each choice, so that filter changes only require
+     * handling the rows whose visibility changes.
      */
     static class AdaptiveChoicesSupport extends RowFilter {
 
-        /** A RowInfo for each row on the table model. */
-        private ArrayList<RowInfo> rows;
+        /** The filters' information of the rows on the table model. */
+        private RowsInfo rows;
 
         /** A single instance to check the filters of every row/column. */
         private RowEntry rowEntry;
 
-        /**
-         * An EditorHandle per editor (table model's column)<br>
-         * The order is not important -it changes continuously while performing
-         * updates.
-         */
+        /** An EditorHandle per editor (table model's column). */
         private EditorHandle editorHandles[];
 
         /**
@@ -187,7 +191,7 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
          * Note that any of the first N filters could be null, if there is no
          * column on that position (column removed from model)
          */
-        private RowInfo.Filter filters[];
+        private RowsInfo.Filter filters[];
 
         /**
          * Only constructor; note: the parameter allFilters set is modified on
@@ -199,12 +203,12 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
             // note that the allFilters set will be modified
             int columns = model.getColumnCount();
             int edLen = editors.length;
-            rows = new ArrayList<RowInfo>(model.getRowCount() + 1);
+            rows = new RowsInfo(model.getRowCount() + 1);
             editorHandles = new EditorHandle[edLen];
 
             // note: columns could be different from editors.length if some
             // column has been removed from the model
-            filters = new RowInfo.Filter[allFilters.size() + columns - edLen];
+            filters = new RowsInfo.Filter[allFilters.size() + columns - edLen];
             for (int i = 0; i < columns; i++) {
                 filters[i] = null;
             }
@@ -215,19 +219,25 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
 
                 IFilter filter = editor.getFilter();
                 allFilters.remove(filter);
-                filters[column] = new RowInfo.Filter(filter, column);
+                filters[column] = rows.createFilter(filter, column);
             }
 
             for (IFilter filter : allFilters) {
-                filters[columns] = new RowInfo.Filter(filter, columns);
+                filters[columns] = rows.createFilter(filter, columns);
                 columns++;
             }
 
             rowEntry = new RowEntry(model, editors);
             rowsAdded(0, model.getRowCount() - 1);
+            consolidateTableUpdates();
         }
 
-        /** Handles an table model event. */
+        /**
+         * Handles an table model event.<br>
+         * The filters' information is updated immediately, but the editors
+         * requiring a full recount are just marked as stale, and recounted
+         * once on {@link #consolidateTableUpdates()}.
+         */
         public void tableChanged(int event,
                                  int firstRow,
                                  int lastRow,
@@ -241,7 +251,8 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
                     rows.clear();
                     rowsAdded(0, rowEntry.getModel().getRowCount() - 1);
                 } else {
-                    rowsUpdated(firstRow, lastRow, TableModelEvent.ALL_COLUMNS);
+                    evaluateRows(firstRow, lastRow);
+                    setStale(editorHandles);
                 }
             } else if (event == TableModelEvent.INSERT) {
                 rowsAdded(firstRow, lastRow);
@@ -252,51 +263,69 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
 
         /** Handles a table model event after some rows are added. */
         private void rowsAdded(int firstRow, int lastRow) {
-            rows.ensureCapacity(rows.size() + lastRow - firstRow + 1);
-            for (int r = firstRow; r <= lastRow; r++) {
-                RowInfo row = new RowInfo(filters.length);
-                rows.add(r, row);
-                rowEntry.row = r;
-
-                for (RowInfo.Filter filter : filters) {
-                    if ((filter != null) && !filter.include(rowEntry)) {
-                        filter.set(row, false);
+            rows.insert(firstRow, lastRow);
+            evaluateRows(firstRow, lastRow);
+            if (firstRow == 0 && lastRow == rows.size() - 1) {
+                setStale(editorHandles);
+            } else {
+                for (int row = firstRow; row <= lastRow; row++) {
+                    rowEntry.row = row;
+                    for (EditorHandle handle : editorHandles) {
+                        if (!handle.stale && filters[handle.column].is(row)) {
+                            handle.add(rowEntry);
+                        }
                     }
                 }
             }
-
-            extractChoices(editorHandles.length, firstRow, lastRow);
         }
 
         /**
          * Handles a table model event after some rows are updated on 1 column.
          */
         private void rowsUpdated(int firstRow, int lastRow, int column) {
-
-            RowInfo.Filter filter = (column == TableModelEvent.ALL_COLUMNS)
-                ? null : filters[column];
-            while (firstRow <= lastRow) {
-                RowInfo row = rows.get(firstRow);
-                rowEntry.row = firstRow++;
-                if (filter == null) {
-                    for (RowInfo.Filter f : filters) {
-                        if (f != null) {
-                            f.set(row, f.include(rowEntry));
-                        }
-                    }
-                } else {
-                    filter.set(row, filter.include(rowEntry));
-                }
+            RowsInfo.Filter filter = filters[column];
+            if (filter != null) {
+                // the editors on other columns are only affected by the
+                // rows changing visibility
+                updateRowInfo(filter, firstRow, lastRow);
             }
 
-            // reread all the model
-            extractChoices(editorHandles.length, 0, -1);
+            // the values on this column are not known anymore, but
+            // only this editor needs a recount
+            int handle = getEditorHandle(column);
+            if (handle >= 0) {
+                setStale(editorHandles[handle]);
+            }
         }
 
         /** Handles a table model event after some rows are deleted. */
         private void rowsDeleted(int firstRow, int lastRow) {
-            rows.subList(firstRow, lastRow + 1).clear();
-            extractChoices(editorHandles.length, 0, -1);
+            rows.delete(firstRow, lastRow);
+            // the deleted values are not known anymore
+            setStale(editorHandles);
+        }
+
+        /** Marks the handles to be recounted on the next consolidation. */
+        private void setStale(EditorHandle... handles) {
+            for (EditorHandle handle : handles) {
+                handle.stale = true;
+            }
+        }
+
+        /**
+         * Recounts, in a single pass over the rows, the handles made stale by
+         * the table updates, and publishes the pending choices.
+         */
+        public void consolidateTableUpdates() {
+            int count = 0;
+            EditorHandle stale[] = new EditorHandle[editorHandles.length];
+            for (EditorHandle handle : editorHandles) {
+                if (handle.stale || handle.requiresRecount()) {
+                    stale[count++] = handle;
+                }
+            }
+
+            recount(Arrays.copyOf(stale, count));
         }
 
         /**
@@ -305,8 +334,8 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
          * @return  true if the update leaves any row in the filter
          */
         public boolean update(IFilter iFilter) {
-            RowInfo.Filter filter = getFilter(iFilter);
-            int update = updateRowInfo(filter, iFilter);
+            RowsInfo.Filter filter = getFilter(iFilter);
+            int update = updateRowInfo(filter, 0, rows.size() - 1);
             boolean changed = 1 == (update & 1);
 
             if (changed) {
@@ -323,83 +352,160 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
             return (update & 2) == 2;
         }
 
-        /** Extract the choices due to a filter update on the given position. */
+        /**
+         * Sets on the editors the choices pending due to a filter update on
+         * the given position.
+         */
         public void propagateChanges(int modelPosition) {
-            int width = editorHandles.length;
-            int handle = getEditorHandle(modelPosition);
-            if (handle >= 0) {
-                switchHandle(handle, --width);
-            }
-
-            extractChoices(width, 0, -1);
+            publish();
         }
 
         /** Reports an update on the properties of an editor. */
         public void editorUpdated(FilterEditor fe) {
             int column = fe.getModelIndex();
-            int editorHandle = getEditorHandle(column);
+            EditorHandle handle = editorHandles[getEditorHandle(column)];
 
             // invoke the editor update call
-            editorHandles[editorHandle].updateFormatter(rowEntry.getModel(),
+            handle.updateFormatter(rowEntry.getModel(),
                 rowEntry.getFormatters());
 
-            int width;
-
-            // and update the filter for this editor
-            int updateRowInfo = updateRowInfo(filters[fe.getModelIndex()],
-                    fe.getFilter());
-            if (1 == (1 & updateRowInfo)) {
-                // if changed, update all editor choices
-                width = editorHandles.length;
-            } else {
-                // update only the associated editor, move it at the beginning
-                switchHandle(editorHandle, 0);
-                width = 1;
-            }
-
-            extractChoices(width, 0, -1);
+            // and update the filter for this editor, and the choices
+            updateRowInfo(filters[column], 0, rows.size() - 1);
+            recount(handle);
         }
 
         /**
-         * Handles a change on a filter, updating the RowInfo array.
+         * Handles a change on a filter, on the given rows, updating the
+         * RowsInfo instance, and the choices' counters of the editors whose
+         * visible rows change.
          *
          * @return  an integer where the lower bit is 0 if the update implies no
          *          changes, and the next bit is 0 is the filter clears the
          *          whole table (i.e: no row passes the filter)
          */
-        private int updateRowInfo(RowInfo.Filter filter, IFilter iFilter) {
-            int changedBit = 0;
-            int anyBitSet = 1;
-            rowEntry.row = 0;
-            for (RowInfo ri : rows) {
-                boolean set = !iFilter.isEnabled() || iFilter.include(rowEntry);
-                if (filter.set(ri, set)) {
-                    changedBit = 1;
-                }
+        private int updateRowInfo(final RowsInfo.Filter filter,
+                                  int                   firstRow,
+                                  int                   lastRow) {
+            final RowSet included = new RowSet();
+            RowsExecutor.execute(rowEntry, firstRow, lastRow,
+                new RowsExecutor.Task() {
+                    @Override public int run(RowEntry entry,
+                                             int      first,
+                                             int      last) {
+                        RowSet chunk = new RowSet();
+                        for (; first <= last; first++) {
+                            entry.row = first;
+                            if (filter.include(entry)) {
+                                chunk.add(first);
+                            }
+                        }
+
+                        chunk.optimize();
+                        synchronized (included) {
+                            included.or(chunk);
+                        }
+
+                        return 0;
+                    }
+                });
 
-                if (set) {
-                    anyBitSet = 2;
+            RowSet changed = filter.update(included, firstRow, lastRow);
+            for (int row = changed.next(0); row >= 0;
+                    row = changed.next(row + 1)) {
+                rowChanged(filter, row);
+            }
+
+            return (changed.isEmpty() ? 0 : 1) | (included.isEmpty() ? 0 : 2);
+        }
+
+        /**
+         * Updates the choices' counters after a change on the given row for
+         * the given filter.
+         */
+        private void rowChanged(RowsInfo.Filter filter, int row) {
+            boolean set = filter.isSet(row);
+            int exclusions = rows.exclusions(row);
+            rowEntry.row = row;
+            for (EditorHandle handle : editorHandles) {
+                if ((handle.column != filter.column) && !handle.stale) {
+                    // exclusions from filters other than the handle's one
+                    int others = exclusions
+                            - (filters[handle.column].isSet(row) ? 0 : 1);
+                    if (set) {
+                        if (others == 0) {
+                            handle.add(rowEntry);
+                        }
+                    } else if (others == 1) {
+                        // it was visible before the change
+                        handle.remove(rowEntry);
+                    }
                 }
+            }
+        }
 
-                rowEntry.row++;
+        /** Evaluates all the filters on the given rows. */
+        private void evaluateRows(int firstRow, int lastRow) {
+            final int len = filters.length;
+            final RowSet included[] = new RowSet[len];
+            for (int i = 0; i < len; i++) {
+                included[i] = new RowSet();
             }
 
-            return changedBit | anyBitSet;
+            RowsExecutor.execute(rowEntry, firstRow, lastRow,
+                new RowsExecutor.Task() {
+                    @Override public int run(RowEntry entry,
+                                             int      first,
+                                             int      last) {
+                        RowSet chunk[] = new RowSet[len];
+                        for (int i = 0; i < len; i++) {
+                            chunk[i] = new RowSet();
+                        }
+
+                        for (; first <= last; first++) {
+                            entry.row = first;
+                            for (int i = 0; i < len; i++) {
+                                RowsInfo.Filter f = filters[i];
+                                if ((f != null) && f.include(entry)) {
+                                    chunk[i].add(first);
+                                }
+                            }
+                        }
+
+                        for (int i = 0; i < len; i++) {
+                            chunk[i].optimize();
+                        }
+
+                        synchronized (included) {
+                            for (int i = 0; i < len; i++) {
+                                included[i].or(chunk[i]);
+                            }
+                        }
+
+                        return 0;
+                    }
+                });
+
+            for (int i = 0; i < len; i++) {
+                if (filters[i] != null) {
+                    filters[i].update(included[i], firstRow, lastRow);
+                }
+            }
         }
 
         /** Forces the initialisation of the choices of a editor filter. */
         public void initChoices(IFilter iFilter) {
-            RowInfo.Filter filter = getFilter(iFilter);
+            RowsInfo.Filter filter = getFilter(iFilter);
             if (filter.column < editorHandles.length) {
-                // update only the associated editor, move it at the beginning
-                switchHandle(getEditorHandle(filter.column), 0);
-                extractChoices(1, 0, -1);
+                int handle = getEditorHandle(filter.column);
+                if (handle >= 0) {
+                    recount(editorHandles[handle]);
+                }
             }
         }
 
         /** Returns the filter with the given {@link IFilter}. */
-        private RowInfo.Filter getFilter(IFilter filter) {
-            for (RowInfo.Filter f : filters) {
+        private RowsInfo.Filter getFilter(IFilter filter) {
+            for (RowsInfo.Filter f : filters) {
                 if ((f != null) && (f.filter == filter)) {
                     return f;
                 }
@@ -409,69 +515,52 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
         }
 
         /**
-         * Handles all the rows between firstRow and lastRow, updating the
-         * choices of the first handles in the editorHandles instance' variable.
-         * <br>
-         * That is, the order of the variables in the editorHandlers variable is
-         * modified, so that only the first handles are updated
-         *
-         * @param  lastRow  can be -1 to represent the whole model
+         * Counts again, for the given handles, the choices on all the rows,
+         * and sets all the pending choices on the editors.
          */
-        private void extractChoices(int handles, int firstRow, int lastRow) {
-            int rows = rowEntry.getModelRowCount() - 1;
-            if (lastRow == -1) {
-                lastRow = rows;
-            }
-
-            boolean fullMode = (firstRow == 0) && (lastRow == rows);
-            int check = handles;
-            for (int i = 0; i < check;) {
-                if (editorHandles[i].startIteration(fullMode)) {
-                    // if startIteration returns true, this editor will require
-                    // no additional iteration (move it to the end)
-                    switchHandle(i, --check);
-                } else {
-                    ++i;
+        private void recount(EditorHandle... handles) {
+            int count = 0;
+            EditorHandle iterate[] = new EditorHandle[handles.length];
+            for (EditorHandle handle : handles) {
+                if (handle.startCount()) {
+                    iterate[count++] = handle;
                 }
             }
 
-            if (check > 0) {
-                iterateRows(check, firstRow, lastRow);
-            }
-            while (handles-- > 0) {
-                editorHandles[handles].iterationCompleted(fullMode);
-            }
-        }
-
-        /** handle all the rows in [firstRow, lastRow). */
-        private void iterateRows(int handles, int firstRow, int lastRow) {
-            for (; firstRow <= lastRow; firstRow++) {
-                rowEntry.row = firstRow;
-
-                RowInfo row = rows.get(firstRow);
-                for (int i = 0; i < handles;) {
-                    EditorHandle handle = editorHandles[i++];
-                    if (filters[handle.column].is(row)) {
-                        if (handle.handleRow(rowEntry)) {
-                            // if handleRow returns true, this editor will
-                            // require no additional iteration (move it to the
-                            // end) if no handles remain, just return
-                            switchHandle(--i, --handles);
-                            if (handles == 0) {
-                                return;
-                            }
+            if (count > 0) {
+                int size = rows.size();
+                for (int row = 0; row < size; row++) {
+                    rowEntry.row = row;
+                    for (int i = 0; i < count; i++) {
+                        EditorHandle handle = iterate[i];
+                        if (filters[handle.column].is(row)) {
+                            handle.add(rowEntry);
                         }
                     }
                 }
             }
+
+            publish();
         }
 
-        /** Moves the handle at the given position to the target. */
-        private void switchHandle(int source, int target) {
-            if (target != source) {
-                EditorHandle move = editorHandles[target];
-                editorHandles[target] = editorHandles[source];
-                editorHandles[source] = move;
+        /** Sets the pending choices on the editors. */
+        private void publish() {
+            // the handles limiting their choices cannot discount rows, they
+            // are counted again (and recount publishes then all the handles)
+            int count = 0;
+            EditorHandle recount[] = new EditorHandle[editorHandles.length];
+            for (EditorHandle handle : editorHandles) {
+                if (handle.requiresRecount()) {
+                    recount[count++] = handle;
+                }
+            }
+
+            if (count > 0) {
+                recount(Arrays.copyOf(recount, count));
+            } else {
+                for (EditorHandle handle : editorHandles) {
+                    handle.publish();
+                }
             }
         }
 
@@ -488,19 +577,19 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
         }
 
         @Override public boolean include(RowFilter.Entry entry) {
-        	RowInfo ri = rows.get((Integer) entry.getIdentifier()); 
-            return ri == null? true : ri.is(); //see issue 24 for this change
+            int row = (Integer) entry.getIdentifier();
+            // see issue 24: the row could be not yet known
+            return (row >= rows.size()) || rows.is(row);
         }
 
         public boolean include(int row) {
-            return rows.get(row).is();
+            return rows.is(row);
         }
 
 
         /**
-         * Helper class to handle an editor. It is very associated to the
-         * algorithm used in {@link AdaptiveChoicesSupport#extractChoices(int,
-         * int, int)}
+         * Helper class to handle an editor, keeping the number of rows, passing
+         * all the other filters, for each choice.
          */
         static class EditorHandle {
 
@@ -509,24 +598,39 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
 
             /** The associated FilterEditor. */
             FilterEditor editor;
-            
+
             /** True if autoOptions is enabled on this editor. */
             private boolean autoOptions;
 
-            /** The maximum number of choices the editor can have (enums). */
-            private int maxChoices;
+            /** The custom choices defined for the editor. */
+            private CustomChoice customChoices[];
+
+            /** The filters associated to each custom choice. */
+            private RowFilter customFilters[];
+
+            /** The number of rows matching each custom choice. */
+            private int customCounts[];
+
+            /** The number of rows with each value on the column. */
+            private Map<Object, int[]> counts = new HashMap<Object, int[]>();
+
+            /** The most frequent values, if the editor limits its choices. */
+            private TopChoices top;
 
-            /** Temporal variable for maxChoices, inside an iteration. */
-            private int maxIterationChoices;
+            /** The choices added since the last publication. */
+            private Set added = new HashSet();
 
-            /** The choices defined for the editor, with its filter. */
-            private Map<CustomChoice, RowFilter> customChoices;
+            /** True if any choice is removed since the last publication. */
+            private boolean removed;
 
-            /** On an iteration, the custom choices not yet added. */
-            private Map<CustomChoice, RowFilter> missingChoices;
+            /** True if any row is counted since the last publication. */
+            private boolean changed;
 
-            /** The choices that will be set on the editor. */
-            private Set choices = new HashSet();
+            /** True if the choices must be fully set on the next publication. */
+            private boolean full;
+
+            /** True if the counters are invalid, pending a full recount. */
+            boolean stale;
 
             /** Single constructor. */
             public EditorHandle(FilterEditor editor, TableModel model) {
@@ -546,154 +650,247 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
             private void init(TableModel model) {
                 Set<CustomChoice> choices = editor.getCustomChoices();
                 if (AutoChoices.DISABLED == editor.getAutoChoices()) {
-                    maxChoices = 0; 
+                    autoOptions = false;
                 } else {
                     Class<?> c = model.getColumnClass(column);
-                    if (c.equals(Boolean.class)) {
-                    	// consider true and false (plus null!)
-                        maxChoices = 3;
-                    } else {
-                    	// consider enum constants, plus null
-                        Object o[] = c.getEnumConstants();
-                        if (o == null){
-                        	// no enum, only handle ENABLED
-                            if (AutoChoices.ENUMS == editor.getAutoChoices()) {
-                                maxChoices = 0;
-                            } else {                            	
-                                maxChoices = Integer.MAX_VALUE;
-                            }
-                        } else {
-                        	maxChoices = o.length + 1;
-                        }
-                    }
+                    // no enum, only handle ENABLED
+                    autoOptions = c.equals(Boolean.class)
+                            || (c.getEnumConstants() != null)
+                            || (AutoChoices.ENUMS != editor.getAutoChoices());
                 }
 
-            	autoOptions = maxChoices > 0;
-                if (choices.isEmpty()) {
-                    customChoices = null;
-                } else {
-                    customChoices = new HashMap<CustomChoice, RowFilter>();
-                    for (CustomChoice cc : choices) {
-                        customChoices.put(cc, cc.getFilter(editor));
-                    }
+                int max = editor.getMaxChoices();
+                top = (autoOptions && (max > 0)) ? new TopChoices(max) : null;
 
-                    if (maxChoices != Integer.MAX_VALUE) {
-                        maxChoices += customChoices.size();
-                    }
+                int len = choices.size();
+                customChoices = choices.toArray(new CustomChoice[len]);
+                customFilters = new RowFilter[len];
+                customCounts = new int[len];
+                while (len-- > 0) {
+                    customFilters[len] = customChoices[len].getFilter(editor);
                 }
             }
 
             /**
-             * Starts an iteration in {@link
-             * AdaptiveChoicesSupport#extractChoices(int, int, int)}.
+             * Starts counting again the choices.
              *
-             * @param   fullMode  set to true if the outcome of the iteration is
-             *                    to set choices to the editor, or false if the
-             *                    outcome is to add choices.
-             *
-             * @return  true if the handle requires no further iteration steps
+             * @return  true if the handle requires iterating the rows
              */
-            public boolean startIteration(boolean fullMode) {
-                if (!editor.isEnabled()) { // do nothing if not enabled
-                    return true;
+            public boolean startCount() {
+                if (top != null) {
+                    top.clear();
                 }
 
-                choices.clear();
-                maxIterationChoices = maxChoices;
-                if (fullMode) {
-                    missingChoices = (customChoices == null)
-                        ? Collections.EMPTY_MAP
-                        : new HashMap<CustomChoice, RowFilter>(customChoices);
-                } else {
-                    maxIterationChoices -= editor.getChoicesSize();
-                }
+                counts.clear();
+                added.clear();
+                Arrays.fill(customCounts, 0);
+                full = true;
+                removed = changed = stale = false;
 
-                return maxIterationChoices <= 0;
+                return autoOptions || (customChoices.length > 0);
             }
 
-            /**
-             * Handles a given row during the iteration.
-             *
-             * @param   entry
-             *
-             * @return  true if the handle requires no further iteration steps
-             */
-            public boolean handleRow(RowEntry entry) {
-                if (!missingChoices.isEmpty()) {
-                    Iterator<Map.Entry<CustomChoice, RowFilter>> it =
-                        missingChoices.entrySet().iterator();
-                    while (it.hasNext()) {
-                        Map.Entry<CustomChoice, RowFilter> o = it.next();
-                        if (o.getValue().include(entry)) {
-                            choices.add(o.getKey());
-                            it.remove();
+            /** Adds a row to the choices' counters. */
+            public void add(RowEntry entry) {
+                for (int i = customFilters.length; i-- > 0;) {
+                    if (customFilters[i].include(entry)
+                            && (1 == ++customCounts[i]) && !full) {
+                        added.add(customChoices[i]);
+                    }
+                }
+
+                if (top != null) {
+                    top.add(entry.getValue(column));
+                    changed = true;
+                } else if (autoOptions) { // no care for column's value if not
+                    Object value = entry.getValue(column);
+                    int count[] = counts.get(value);
+                    if (count == null) {
+                        counts.put(value, new int[] { 1 });
+                        if (!full) {
+                            added.add(value);
                         }
+                    } else {
+                        ++count[0];
                     }
                 }
+            }
 
-                if (autoOptions) { // otherwise, no care for column's value
-                    choices.add(entry.getValue(column));
-                } 
+            /** Removes a row from the choices' counters. */
+            public void remove(RowEntry entry) {
+                for (int i = customFilters.length; i-- > 0;) {
+                    if (customFilters[i].include(entry)
+                            && (0 == --customCounts[i])) {
+                        removed = true;
+                    }
+                }
 
-                return maxIterationChoices == choices.size();
+                if (top != null) {
+                    removed = true;
+                } else if (autoOptions) {
+                    Object value = entry.getValue(column);
+                    int count[] = counts.get(value);
+                    if ((count != null) && (0 == --count[0])) {
+                        counts.remove(value);
+                        removed = true;
+                    }
+                }
             }
 
             /**
-             * Final step on the iteration process, updating the editor'
-             * choices.
+             * Returns true if the handle limits its choices and has removed
+             * rows, pending a full recount.
              */
-            public void iterationCompleted(boolean fullMode) {
-                if (editor.isEnabled()) {
-                    if (fullMode) {
+            public boolean requiresRecount() {
+                return (top != null) && removed && !stale
+                        && editor.isEnabled();
+            }
+
+            /** Updates the editor' choices, if there are changes. */
+            public void publish() {
+                if (editor.isEnabled() && !stale) {
+                    if (top != null) {
+                        if (full || removed || changed) {
+                            Set choices = new HashSet();
+                            for (int i = customChoices.length; i-- > 0;) {
+                                if (customCounts[i] > 0) {
+                                    choices.add(customChoices[i]);
+                                }
+                            }
+
+                            editor.setChoices(top.addTo(choices));
+                        }
+                    } else if (full || removed) {
+                        Set choices = new HashSet(counts.keySet());
+                        for (int i = customChoices.length; i-- > 0;) {
+                            if (customCounts[i] > 0) {
+                                choices.add(customChoices[i]);
+                            }
+                        }
+
                         editor.setChoices(choices);
-                    } else {
-                        editor.addChoices(choices);
+                    } else if (!added.isEmpty()) {
+                        editor.addChoices(added);
                     }
+
+                    added.clear();
+                    full = removed = changed = false;
                 }
             }
         }
 
         /**
-         * Class to hold the filter information on a single row.<br>
-         * This information is a bit per column, defining whether the column is
-         * filtered out or not
+         * Class to hold the filter information on all the rows.<br>
+         * This information is kept per filter (column), as a {@link RowSet}
+         * with the rows included by the filter. Additionally, it is kept,
+         * for each row, the number of filters that filter it out, so that
+         * checking whether a row is visible -or visible but for a given
+         * filter- requires no iteration on the filters.
          */
-        static class RowInfo {
-            static final byte SET = (byte) 255;
-            byte info[];
-
-            RowInfo(int columns) {
-                int length = 1 + (columns >> 3);
-                this.info = new byte[length];
-                while (length-- > 0) {
-                    this.info[length] = SET;
+        static class RowsInfo {
+
+            /** The number of rows. */
+            private int size;
+
+            /** The number of filters excluding each row. */
+            private short excluded[];
+
+            /** All the filters, including any null entry. */
+            private Filter filters[];
+
+            RowsInfo(int capacity) {
+                excluded = new short[Math.max(64, capacity)];
+                filters = new Filter[0];
+            }
+
+            /** Creates the {@link Filter} for the given column. */
+            public Filter createFilter(IFilter filter, int column) {
+                Filter ret = new Filter(filter, column);
+                Filter all[] = new Filter[filters.length + 1];
+                System.arraycopy(filters, 0, all, 0, filters.length);
+                all[filters.length] = ret;
+                filters = all;
+
+                return ret;
+            }
+
+            /** Returns the number of rows. */
+            public int size() {
+                return size;
+            }
+
+            /** Removes all the rows. */
+            public void clear() {
+                delete(0, size - 1);
+            }
+
+            /**
+             * Inserts the rows [firstRow, lastRow], that are included by all
+             * the filters.
+             */
+            public void insert(int firstRow, int lastRow) {
+                int count = lastRow - firstRow + 1;
+                if (count > 0) {
+                    ensureCapacity(size + count);
+                    System.arraycopy(excluded, firstRow, excluded, lastRow + 1,
+                        size - firstRow);
+                    Arrays.fill(excluded, firstRow, lastRow + 1, (short) 0);
+                    for (Filter f : filters) {
+                        f.included.insert(firstRow, count);
+                        f.included.add(firstRow, lastRow + 1);
+                    }
+
+                    size += count;
                 }
             }
 
-            /** returns true if all the bits are set to 1. */
-            public boolean is() {
-                int length = info.length;
-                while (length-- > 0) {
-                    if (info[length] != SET) {
-                        return false;
+            /** Deletes the rows [firstRow, lastRow]. */
+            public void delete(int firstRow, int lastRow) {
+                int count = lastRow - firstRow + 1;
+                if (count > 0) {
+                    System.arraycopy(excluded, lastRow + 1, excluded, firstRow,
+                        size - lastRow - 1);
+                    for (Filter f : filters) {
+                        f.included.delete(firstRow, count);
                     }
+
+                    size -= count;
+                    Arrays.fill(excluded, size, size + count, (short) 0);
                 }
+            }
 
-                return true;
+            /** Returns true if the row is included by all the filters. */
+            public boolean is(int row) {
+                return excluded[row] == 0;
             }
 
-            /** Defines a column in the RowInfo, associated to a filter. */
-            static class Filter {
-                private int col;
-                private int bit;
+            /** Returns the number of filters excluding the given row. */
+            public int exclusions(int row) {
+                return excluded[row];
+            }
+
+            private void ensureCapacity(int rows) {
+                int capacity = excluded.length;
+                if (rows > capacity) {
+                    capacity = Math.max(rows, capacity + (capacity >> 1));
+
+                    short newExcluded[] = new short[capacity];
+                    System.arraycopy(excluded, 0, newExcluded, 0, size);
+                    excluded = newExcluded;
+                }
+            }
+
+            /** Defines a column in the RowsInfo, associated to a filter. */
+            class Filter {
+                /** The rows included by the filter. */
+                RowSet included;
                 int column;
                 IFilter filter;
 
                 Filter(IFilter filter, int column) {
                     this.column = column;
                     this.filter = filter;
-                    col = column >> 3;
-                    bit = 1 << (column & 7);
+                    this.included = RowSet.range(0, size);
                 }
 
                 public boolean include(RowFilter.Entry rowEntry) {
@@ -701,35 +898,47 @@ class AdaptiveChoicesHandler extends ChoicesHandler {
                 }
 
                 /**
-                 * Sets or unsets the given row.
+                 * Sets the rows included by the filter on the range [firstRow,
+                 * lastRow], updating the exclusions of the changed rows.
                  *
-                 * @return  true if it implies a change
+                 * @return  the rows whose inclusion changes
                  */
-                public boolean set(RowInfo row, boolean set) {
-                    byte info[] = row.info;
-                    byte now = info[col];
-                    if (set) {
-                        info[col] |= bit;
-                    } else {
-                        info[col] &= (SET ^ bit);
+                public RowSet update(RowSet rows, int firstRow, int lastRow) {
+                    RowSet lost = included.get(firstRow, lastRow + 1);
+                    RowSet gained = new RowSet(rows);
+                    gained.andNot(lost);
+                    lost.andNot(rows);
+                    for (int row = lost.next(0); row >= 0;
+                            row = lost.next(row + 1)) {
+                        ++excluded[row];
+                    }
+
+                    for (int row = gained.next(0); row >= 0;
+                            row = gained.next(row + 1)) {
+                        --excluded[row];
                     }
 
-                    return now != info[col];
+                    included.andNot(lost);
+                    included.or(gained);
+                    lost.or(gained);
+
+                    return lost;
+                }
+
+                /** Returns true if the row is included by this filter. */
+                public boolean isSet(int row) {
+                    return included.contains(row);
                 }
 
                 /**
-                 * returns true if all the bits in the row, with the possible
-                 * exception of THIS column, are set to 1.
+                 * returns true if the row is included by all the filters,
+                 * with the possible exception of THIS filter.
                  */
-                public boolean is(RowInfo row) {
-                    byte info[] = row.info;
-                    boolean now = 0 != (info[col] & bit);
-                    set(row, true);
-
-                    boolean ret = row.is();
-                    set(row, now);
+                public boolean is(int row) {
+                    int exclusions = excluded[row];
 
-                    return ret;
+                    return (exclusions == 0)
+                            || ((exclusions == 1) && !included.contains(row));
                 }
             }
         }
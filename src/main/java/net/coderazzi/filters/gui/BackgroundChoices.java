@@ -0,0 +1,166 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import net.coderazzi.filters.gui.editor.FilterEditor;
+
+
+/**
+ * Internal class to extract the choices of the editors on a background
+ * thread.<br>
+ * Each extraction reads the model, and formats and sorts the choices into a
+ * new list, on a worker thread, while the editor keeps its current choices.
+ * Once completed, the list is swapped into the editor on the event dispatch
+ * thread. Starting a new extraction on the same editor, or cancelling it,
+ * discards the previous one: its outcome is not published.<br>
+ * As with the {@link BackgroundFilter}, the model must support being read
+ * while it is updated; table updates must cancel the extractions.
+ */
+class BackgroundChoices {
+
+    /** Executor shared by all the filter headers. */
+    private static ExecutorService executor;
+
+    /** The in-flight extraction of each editor. */
+    private Map<FilterEditor, Extraction> running =
+        new HashMap<FilterEditor, Extraction>();
+
+    /**
+     * Starts the extraction of the choices of the given editor, cancelling
+     * any in-flight extraction for the same editor.
+     */
+    public void start(final FilterEditor editor, final Extraction extraction) {
+        cancel(editor);
+        extraction.loader = editor.createChoicesLoader();
+        running.put(editor, extraction);
+        extraction.future = getExecutor().submit(new Runnable() {
+                    @Override public void run() {
+                        extract(editor, extraction);
+                    }
+                });
+    }
+
+    /** Cancels the in-flight extraction of the given editor, if any. */
+    public void cancel(FilterEditor editor) {
+        Extraction extraction = running.remove(editor);
+        if (extraction != null) {
+            extraction.future.cancel(false);
+        }
+    }
+
+    /** Cancels all the in-flight extractions. */
+    public void cancel() {
+        for (Extraction extraction : running.values()) {
+            extraction.future.cancel(false);
+        }
+
+        running.clear();
+    }
+
+    /** Extraction on the worker thread. */
+    void extract(final FilterEditor editor, final Extraction extraction) {
+        boolean done;
+        try {
+            extraction.loader.load(extraction.extract());
+            done = true;
+        } catch (RuntimeException rex) {
+            // the model has been probably modified while being read; on a
+            // cancelled extraction, this is expected. Otherwise, the
+            // choices are extracted again on the event dispatch thread
+            done = false;
+        }
+
+        final boolean completed = done;
+        SwingUtilities.invokeLater(new Runnable() {
+                @Override public void run() {
+                    publish(editor, extraction, completed);
+                }
+            });
+    }
+
+    /** Publication of the choices, on the event dispatch thread. */
+    void publish(FilterEditor editor, Extraction extraction, boolean done) {
+        if (running.get(editor) == extraction) {
+            running.remove(editor);
+            if (!editor.isEnabled()) {
+                // the choices are extracted again once enabled
+                return;
+            }
+
+            if (done && editor.setChoices(extraction.loader)) {
+                extraction.completed();
+            } else {
+                extraction.failed();
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override public Thread newThread(Runnable r) {
+                            Thread ret = new Thread(r, "TableFilter-choices");
+                            ret.setDaemon(true);
+
+                            return ret;
+                        }
+                    });
+        }
+
+        return executor;
+    }
+
+    /** The extraction of the choices of one editor. */
+    abstract static class Extraction {
+        FilterEditor.ChoicesLoader loader;
+        Future<?> future;
+
+        /** Returns the choices, invoked on the worker thread. */
+        abstract Collection<?> extract();
+
+        /**
+         * Invoked on the event dispatch thread, once the choices are set on
+         * the editor.
+         */
+        abstract void completed();
+
+        /**
+         * Invoked on the event dispatch thread if the extraction fails, or
+         * the editor settings have changed meanwhile.
+         */
+        abstract void failed();
+    }
+}
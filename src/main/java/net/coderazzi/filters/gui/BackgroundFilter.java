@@ -0,0 +1,272 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.RowFilter;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.RowSet;
+import net.coderazzi.filters.gui.editor.FilterEditor;
+
+
+/**
+ * Internal class to evaluate the filters on a background thread.<br>
+ * Each filter update starts a new generation, that evaluates the filter on
+ * every model's row, by ranges, on a worker thread; any previous generation is
+ * cancelled. Once the generation completes, the {@link FiltersHandler} is
+ * notified on the event dispatch thread, with a {@link RowFilter} that just
+ * reproduces the computed outcome, and can be therefore applied without delay
+ * on the sorter.<br>
+ * The model is read from the worker thread, while the event dispatch thread
+ * is free: table model updates cancel the current generation, but the model
+ * must support being read while it is updated.
+ */
+class BackgroundFilter {
+
+    /** Number of rows evaluated before checking for cancellations. */
+    private static final int RANGE = 4096;
+
+    /**
+     * Delay (milliseconds) before setting the editors in busy state, to avoid
+     * flickering on fast filters.
+     */
+    private static final int BUSY_DELAY = 200;
+
+    /** Executor shared by all the filter headers. */
+    private static ExecutorService executor;
+
+    private FiltersHandler handler;
+
+    /** The current generation, incremented on each new evaluation. */
+    private volatile int generation;
+
+    /** The last published outcome. */
+    private Snapshot published;
+
+    /** The in-flight evaluation. */
+    private Future<?> running;
+
+    /** Timer to set the editors in busy state. */
+    private Timer busyTimer;
+
+    /** Set to true when the editors are in busy state. */
+    private boolean busy;
+
+    /** Set to true after model changes, if the filter must be reevaluated. */
+    private boolean outdated;
+
+    BackgroundFilter(FiltersHandler handler) {
+        this.handler = handler;
+        busyTimer = new Timer(BUSY_DELAY, new ActionListener() {
+                    @Override public void actionPerformed(ActionEvent e) {
+                        setBusy(running != null);
+                    }
+                });
+        busyTimer.setRepeats(false);
+    }
+
+    /**
+     * Starts the evaluation of the given filter, cancelling any in-flight
+     * evaluation.
+     */
+    public void start(final RowFilter filter, TableModel model) {
+        stop();
+
+        final int gen = generation;
+        outdated = false;
+        final TableModel evaluatedModel = model;
+        Collection<FilterEditor> eds = handler.getEditors();
+        final ChoicesHandler.RowEntry entry = new ChoicesHandler.RowEntry(
+                model, eds.toArray(new FilterEditor[eds.size()]));
+        running = getExecutor().submit(new Runnable() {
+                    @Override public void run() {
+                        evaluate(gen, filter, evaluatedModel, entry);
+                    }
+                });
+        if (!busy) {
+            busyTimer.restart();
+        }
+    }
+
+    /** Cancels any in-flight evaluation. */
+    public void cancel() {
+        stop();
+        published = null;
+        outdated = false;
+        busyTimer.stop();
+        setBusy(false);
+    }
+
+    /** Returns true if there is any in-flight evaluation. */
+    public boolean isRunning() {
+        return running != null;
+    }
+
+    /**
+     * Reports a table model change.<br>
+     * The last published outcome is not valid anymore, and the filter is
+     * evaluated directly until a new outcome is available. Any in-flight
+     * evaluation is stopped.
+     */
+    public void tableChanged() {
+        if (published != null) {
+            published.stale = true;
+            outdated = true;
+        }
+
+        if (running != null) {
+            stop();
+            outdated = true;
+        }
+    }
+
+    /** Returns true if the filter must be evaluated again. */
+    public boolean isOutdated() {
+        return outdated;
+    }
+
+    /** Evaluation on the worker thread. */
+    void evaluate(int                     gen,
+                  RowFilter               filter,
+                  TableModel              model,
+                  ChoicesHandler.RowEntry entry) {
+        int rows = model.getRowCount();
+        RowSet included = new RowSet();
+        try {
+            for (int start = 0; start < rows; start += RANGE) {
+                if (gen != generation) {
+                    return;
+                }
+
+                int end = Math.min(rows, start + RANGE);
+                for (entry.row = start; entry.row < end; entry.row++) {
+                    if (filter.include(entry)) {
+                        included.add(entry.row);
+                    }
+                }
+            }
+
+            included.optimize();
+        } catch (RuntimeException rex) {
+            // the filter or the model have been probably modified while
+            // being evaluated; on a stale generation, this is expected. 
+            // Otherwise, the filter is applied directly on the sorter
+            included = null;
+        }
+
+        final Snapshot snapshot = (included == null)
+            ? null : new Snapshot(filter, included, rows);
+        final int check = gen;
+        SwingUtilities.invokeLater(new Runnable() {
+                @Override public void run() {
+                    publish(check, snapshot);
+                }
+            });
+    }
+
+    /** Publication of the outcome, on the event dispatch thread. */
+    void publish(int gen, Snapshot snapshot) {
+        if (gen == generation) {
+            running = null;
+            busyTimer.stop();
+            published = snapshot;
+            handler.backgroundFilterCompleted(snapshot);
+            setBusy(false);
+        }
+    }
+
+    /** Stops the in-flight evaluation, keeping the busy state. */
+    private void stop() {
+        ++generation;
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    private void setBusy(boolean set) {
+        if (busy != set) {
+            busy = set;
+            for (FilterEditor editor : handler.getEditors()) {
+                editor.setFiltering(set);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override public Thread newThread(Runnable r) {
+                            Thread ret = new Thread(r, "TableFilter");
+                            ret.setDaemon(true);
+
+                            return ret;
+                        }
+                    });
+        }
+
+        return executor;
+    }
+
+    /**
+     * {@link RowFilter} reproducing the outcome of an evaluation.<br>
+     * Once stale, or for rows not included in the evaluation, it delegates
+     * on the evaluated filter.
+     */
+    static class Snapshot extends RowFilter {
+        private RowFilter filter;
+        private RowSet included;
+        private int rows;
+        boolean stale;
+
+        Snapshot(RowFilter filter, RowSet included, int rows) {
+            this.filter = filter;
+            this.included = included;
+            this.rows = rows;
+        }
+
+        @Override public boolean include(RowFilter.Entry entry) {
+            int row = (Integer) entry.getIdentifier();
+            if (stale || (row >= rows)
+                    || (((TableModel) entry.getModel()).getRowCount() != rows)) {
+                return filter.include(entry);
+            }
+
+            return included.contains(row);
+        }
+    }
+}
@@ -36,6 +36,7 @@ import javax.swing.table.TableModel;
 
 import net.coderazzi.filters.IFilter;
 import net.coderazzi.filters.gui.editor.FilterEditor;
+import net.coderazzi.filters.parser.StringCache;
 
 
 /**
@@ -100,11 +101,22 @@ abstract class ChoicesHandler implements TableModelListener, Runnable {
                                          int        lastRow,
                                          int        column);
 
+    /**
+     * Updates the choices after the table updates reported since the last
+     * call.<br>
+     * The table updates are only consolidated once per event cycle, or at
+     * the end of a batch of model updates, so that bursts of events do not
+     * require extracting the choices once for each event.
+     */
+    public abstract void consolidateTableUpdates();
+
     @Override public void tableChanged(TableModelEvent e) {
         int firstRow = e.getFirstRow();
         if (firstRow != TableModelEvent.HEADER_ROW) {
             int type = e.getType();
             TableModel model = (TableModel) e.getSource();
+            handler.tableUpdating(type, firstRow, e.getLastRow(),
+                e.getColumn());
             tableUpdated(model, type, firstRow, e.getLastRow(), e.getColumn());
             if (!runScheduled) {
                 runScheduled = true;
@@ -112,12 +124,18 @@ abstract class ChoicesHandler implements TableModelListener, Runnable {
                 // row sorter hasn't been updated its status
                 SwingUtilities.invokeLater(this);
             }
+        } else {
+            handler.resetModelInfo();
         }
     }
 
     /** {@link Runnable} interface. */
     @Override public void run() {
         runScheduled = false;
+        if (!handler.isUpdatingModel()) {
+            consolidateTableUpdates();
+        }
+
         handler.tableUpdated();
     }
 
@@ -142,9 +160,16 @@ abstract class ChoicesHandler implements TableModelListener, Runnable {
         } else if (listenedModel != null) {
             listenedModel.removeTableModelListener(this);
             listenedModel = null;
+            // the model updates are not followed anymore
+            handler.resetModelInfo();
         }
     }
 
+    /** Returns true if the table model events are being received. */
+    public boolean isTrackingModel() {
+        return listenedModel != null;
+    }
+
     /**
      * Basic RowFilter.Entry instance, used internally to handle the RowFilter
      * default filtering.
@@ -153,6 +178,7 @@ abstract class ChoicesHandler implements TableModelListener, Runnable {
         private TableModel model;
         private int count;
         private Format formatters[];
+        private StringCache caches[];
         public int row;
 
         public RowEntry(TableModel model, FilterEditor editors[]) {
@@ -164,6 +190,19 @@ abstract class ChoicesHandler implements TableModelListener, Runnable {
             while (len-- > 0) {
                 formatters[len] = editors[len].getFormat();
             }
+
+            caches = new StringCache[formatters.length];
+        }
+
+        /**
+         * Creates a new entry on the same model, sharing the formatters; the
+         * entries can be used on different threads.
+         */
+        public RowEntry(RowEntry entry) {
+            this.model = entry.model;
+            this.count = entry.count;
+            this.formatters = entry.formatters;
+            this.caches = entry.caches;
         }
 
         public int getModelRowCount() {
@@ -192,7 +231,30 @@ abstract class ChoicesHandler implements TableModelListener, Runnable {
 
         @Override public String getStringValue(int index) {
         	Format f = formatters[index];
-            return f == null ? "" : f.format(getValue(index));
+            if (f == null) {
+                return "";
+            }
+
+            // the cache is created again if the formatter is updated; it
+            // also provides the copy of the formatter for this thread
+            StringCache cache = caches[index];
+            if ((cache == null) || (cache.getFormat() != f)) {
+                cache = new StringCache(f);
+                caches[index] = cache;
+            }
+
+            Object value = getValue(index);
+            if ((value == null) || (value instanceof String)) {
+                return cache.getLocalFormat().format(value);
+            }
+
+            String ret = cache.get(value);
+            if (ret == null) {
+                ret = cache.getLocalFormat().format(value);
+                cache.put(value, ret);
+            }
+
+            return ret;
         }
     }
 
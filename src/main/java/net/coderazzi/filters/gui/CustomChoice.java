@@ -41,6 +41,8 @@ import javax.swing.JComponent;
 import javax.swing.RowFilter;
 import javax.swing.UIManager;
 
+import net.coderazzi.filters.IParser;
+
 
 /**
  * Class to specify a custom filter in the choices list.<br>
@@ -66,6 +68,7 @@ public abstract class CustomChoice implements Serializable {
     
 	public final static int DEFAULT_PRECEDENCE = 0;
     public final static int MATCH_ALL_PRECEDENCE = -255;
+    public final static int MORE_CHOICES_PRECEDENCE = 255;
 
     static final RowFilter passAllRawFilter = new RowFilter() {
         @Override
@@ -85,6 +88,22 @@ public abstract class CustomChoice implements Serializable {
         }
     };
 
+    /**
+     * Marker displayed after the custom choices when the editor limits its
+     * choices and some values are left out; it returns all entries.
+     *
+     * @see  IFilterEditor#setMaxChoices(int)
+     */
+    public final static CustomChoice MORE_CHOICES = new CustomChoice(
+            FilterSettings.moreChoicesString, null, MORE_CHOICES_PRECEDENCE) {
+
+        private static final long serialVersionUID = 3140276522381245187L;
+
+        @Override public RowFilter getFilter(IFilterEditor editor) {
+            return passAllRawFilter;
+        }
+    };
+
     /** Special empty filter, returns all entries with null or empty values. */
     public final static CustomChoice MATCH_EMPTY = new CustomChoice(
             FilterSettings.matchEmptyFilterString,
@@ -184,20 +203,7 @@ public abstract class CustomChoice implements Serializable {
             private static final long serialVersionUID = -3573642873044716998L;
 
 			@Override public RowFilter getFilter(final IFilterEditor editor) {
-                final int index = editor.getModelIndex();
-                final String string = (choice instanceof String)
-                    ? (String) choice : null;
-                return new RowFilter() {
-                    @Override public boolean include(Entry entry) {
-                        Object o = entry.getValue(index);
-                        if ((string != null) && (o instanceof String)
-                                && editor.isIgnoreCase()) {
-                            return string.equalsIgnoreCase((String) o);
-                        }
-
-                        return choice.equals(o);
-                    }
-                };
+                return new ChoiceFilter(editor, choice);
             }
         };
     }
@@ -332,4 +338,35 @@ public abstract class CustomChoice implements Serializable {
     @Override final public String toString() {
         return str;
     }
+
+    /**
+     * Filter created by {@link CustomChoice#create(Object, String)}, matching
+     * the given choice; as it depends only on the column's value, it can be
+     * resolved with the inverted index of the column.
+     */
+    private static final class ChoiceFilter extends RowFilter
+        implements IParser.ValueFilter {
+
+        private IFilterEditor editor;
+        private int index;
+        private Object choice;
+        private String string;
+
+        ChoiceFilter(IFilterEditor editor, Object choice) {
+            this.editor = editor;
+            this.index = editor.getModelIndex();
+            this.choice = choice;
+            this.string = (choice instanceof String) ? (String) choice : null;
+        }
+
+        @Override public boolean include(Entry entry) {
+            Object o = entry.getValue(index);
+            if ((string != null) && (o instanceof String)
+                    && editor.isIgnoreCase()) {
+                return string.equalsIgnoreCase((String) o);
+            }
+
+            return choice.equals(o);
+        }
+    }
 }
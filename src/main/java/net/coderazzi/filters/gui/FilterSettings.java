@@ -49,6 +49,21 @@ public class FilterSettings {
     public static boolean adaptiveChoices = Boolean.parseBoolean(getString(
                 "AdaptiveChoices", "true"));
 
+    /**
+     * Whether to evaluate the filters on a background thread, false by
+     * default. Any custom filter, parser, format or comparator must then
+     * support being used outside the event dispatch thread.
+     */
+    public static boolean asyncFiltering = Boolean.parseBoolean(getString(
+                "AsyncFiltering", "false"));
+
+    /**
+     * Whether to extract the choices on a background thread, false by
+     * default.
+     */
+    public static boolean asyncChoices = Boolean.parseBoolean(getString(
+                "AsyncChoices", "false"));
+
     /** If and how to provide content to the editor field's choices. */
     public static AutoChoices autoChoices;
 
@@ -118,6 +133,47 @@ public class FilterSettings {
     public static boolean instantFiltering = Boolean.parseBoolean(getString(
                 "InstantFiltering", "true"));
 
+    /**
+     * Delay, in milliseconds, to apply the instant filtering after the user
+     * stops typing. 0 by default (the filter is applied on each change).
+     */
+    public static int instantFilteringDelay = getInteger(
+            "InstantFiltering.Delay", 0);
+
+    /**
+     * Whether to encode the values of the columns, evaluating the filters
+     * once per distinct value, false by default.
+     */
+    public static boolean dictionaryEncoding = Boolean.parseBoolean(getString(
+                "DictionaryEncoding", "false"));
+
+    /**
+     * Whether to keep a sorted index of the columns, to resolve the
+     * comparison filters by binary search, false by default.
+     */
+    public static boolean sortedIndex = Boolean.parseBoolean(getString(
+                "SortedIndex", "false"));
+
+    /**
+     * Whether to keep an inverted index of the columns, to find the rows of
+     * the selected values, false by default.
+     */
+    public static boolean invertedIndex = Boolean.parseBoolean(getString(
+                "InvertedIndex", "false"));
+
+    /**
+     * Whether to keep a substring index of the columns, to resolve wildcard
+     * expressions, false by default.
+     */
+    public static boolean substringIndex = Boolean.parseBoolean(getString(
+                "SubstringIndex", "false"));
+
+    /**
+     * The maximum number of choices extracted from each column, keeping the
+     * most frequent values; 0 (no limit) by default.
+     */
+    public static int maxChoices = getInteger("MaxChoices", 0);
+
     /** The default icon used to represent null/empty values. */
     public static Icon matchEmptyFilterIcon = new ImageIcon(IParser.class
                 .getResource("resources/matchEmptyIcon.png"));
@@ -131,6 +187,9 @@ public class FilterSettings {
      */
     public static String matchEmptyFilterString = "=";
 
+    /** The string signaling that some choices are not displayed. */
+    public static String moreChoicesString = "more\u2026";
+
     /** The maximum size of the history when no choices are present. */
     public static int maxPopupHistory = getInteger("Popup.MaxHistory", 2);
 
@@ -138,6 +197,23 @@ public class FilterSettings {
     public static int maxVisiblePopupRows = getInteger("Popup.MaxVisibleRows",
             8);
 
+    /**
+     * Whether the adaptive choices evaluate the filters in parallel, using
+     * all the available processors. False by default; the filters must then
+     * support concurrent evaluation, as those created by the default parser
+     * do: any custom filter, parser, format or comparator must be thread
+     * safe.
+     */
+    public static boolean parallelFiltering = Boolean.parseBoolean(getString(
+                "ParallelFiltering", "false"));
+
+    /**
+     * Minimum number of rows to evaluate the filters in parallel, if
+     * parallelFiltering is enabled.
+     */
+    public static int parallelFilteringThreshold = getInteger(
+            "ParallelFiltering.Threshold", 50000);
+
     /**
      * The class defining the generic {@link IParserModel}<br>
      * It must have a default constructor.<br>
@@ -122,6 +122,18 @@ public class FiltersHandler extends AndFilter
     /** If true, the current filter hides all the rows. */
     private boolean onWarning;
 
+    /** If true, the filter is evaluated on a background thread. */
+    private boolean asyncFiltering = FilterSettings.asyncFiltering;
+
+    /** If true, the choices are extracted on a background thread. */
+    private boolean asyncChoices = FilterSettings.asyncChoices;
+
+    /** Instance to evaluate the filter on a background thread. */
+    private BackgroundFilter backgroundFilter = new BackgroundFilter(this);
+
+    /** Number of batches of model updates currently open. */
+    private int modelUpdates;
+
     /** Only constructor. */
     FiltersHandler(AutoChoices mode, IParserModel parserModel) {
     	
@@ -143,6 +155,8 @@ public class FiltersHandler extends AndFilter
      */
     public void setTable(JTable table) {
         choicesHandler.setInterrupted(true);
+        backgroundFilter.cancel();
+        resetModelInfo();
 
         JTable oldTable = this.table;
         this.table = table;
@@ -263,6 +277,37 @@ public class FiltersHandler extends AndFilter
         return filterOnUpdates;
     }
 
+    /**
+     * Sets the asynchronous filtering mode: filters are then evaluated on a
+     * background thread. It has only effect on non adaptive choices mode.
+     */
+    public void setAsyncFiltering(boolean enable) {
+        if (enable != asyncFiltering) {
+            asyncFiltering = enable;
+            if (!enable && backgroundFilter.isRunning()) {
+                updateTableFilter();
+            }
+        }
+    }
+
+    /** Returns the asynchronous filtering mode. */
+    public boolean isAsyncFiltering() {
+        return asyncFiltering;
+    }
+
+    /**
+     * Sets the asynchronous choices mode: choices are then extracted on a
+     * background thread. It has only effect on non adaptive choices mode.
+     */
+    public void setAsyncChoices(boolean enable) {
+        asyncChoices = enable;
+    }
+
+    /** Returns the asynchronous choices mode. */
+    public boolean isAsyncChoices() {
+        return asyncChoices;
+    }
+
     /** Sets the adaptive choices mode. */
     public void setAdaptiveChoices(boolean enableAdaptiveChoices) {
         boolean reenable = false;
@@ -403,14 +448,41 @@ public class FiltersHandler extends AndFilter
             // To reapply the filtering, it is enough to invoke again
             // setRowFilter.
             RowFilter rf = isEnabled() ? choicesHandler.getRowFilter() : null;
-            if ((rf != null) || (autoSelector.sorter.getRowFilter() != null)) {
-                autoSelector.sorter.setRowFilter(rf);
+            if (asyncFiltering && (rf == this)) {
+                // the sorter is updated once the evaluation completes. Note
+                // that the adaptive support evaluates the filters already
+                // when the choices are extracted, so it is not needed there
+                backgroundFilter.start(rf, table.getModel());
+            } else {
+                backgroundFilter.cancel();
+                setRowFilter(rf);
             }
+        }
+    }
 
-            checkWarningState();
+    /**
+     * Method called by the {@link BackgroundFilter} when the evaluation
+     * completes; the snapshot can be null if the evaluation failed.
+     */
+    void backgroundFilterCompleted(RowFilter snapshot) {
+        if (autoSelector.sorter != null) {
+            if (snapshot == null) {
+                snapshot = isEnabled() ? choicesHandler.getRowFilter() : null;
+            }
+
+            setRowFilter(snapshot);
         }
     }
 
+    /** Sets the filter on the sorter, verifying afterwards the warnings. */
+    private void setRowFilter(RowFilter rf) {
+        if ((rf != null) || (autoSelector.sorter.getRowFilter() != null)) {
+            autoSelector.sorter.setRowFilter(rf);
+        }
+
+        checkWarningState();
+    }
+
     /** Returns all registered {@link FilterEditor}s. */
     public Collection<FilterEditor> getEditors() {
         return editors.values();
@@ -466,9 +538,65 @@ public class FiltersHandler extends AndFilter
         }
     }
 
+    /**
+     * Report that the table is being updated, before the sorter receives the
+     * update.
+     */
+    void tableUpdating(int eventType, int firstRow, int lastRow, int column) {
+        backgroundFilter.tableChanged();
+        for (FilterEditor editor : editors.values()) {
+            editor.modelUpdated(eventType, firstRow, lastRow, column);
+        }
+    }
+
+    /**
+     * Discards any information kept by the editors on the model's rows, as
+     * the model is replaced, or its updates are not followed anymore.
+     */
+    void resetModelInfo() {
+        for (FilterEditor editor : editors.values()) {
+            editor.modelUpdated();
+        }
+    }
+
+    /**
+     * Returns true if the table model updates are being followed, so the
+     * editors can keep information on the model's rows.
+     */
+    public boolean isTrackingModel() {
+        return choicesHandler.isTrackingModel();
+    }
+
+    /**
+     * Starts a batch of model updates: the choices are not updated until the
+     * batch is closed with {@link #endModelUpdates()}.<br>
+     * Batches can be nested; the choices are updated when the outer batch
+     * finishes.
+     */
+    public void beginModelUpdates() {
+        ++modelUpdates;
+    }
+
+    /** Ends a batch of model updates, updating then the choices. */
+    public void endModelUpdates() {
+        if ((modelUpdates > 0) && (--modelUpdates == 0)) {
+            choicesHandler.consolidateTableUpdates();
+        }
+    }
+
+    /** Returns true if there is an open batch of model updates. */
+    boolean isUpdatingModel() {
+        return modelUpdates > 0;
+    }
+
     /** Report that the table is updated. */
     public void tableUpdated() {
-        checkWarningState();
+        if (asyncFiltering && backgroundFilter.isOutdated()) {
+            // the outcome of the last evaluation is not valid anymore
+            updateTableFilter();
+        } else {
+            checkWarningState();
+        }
     }
 
     /** Verifies if the current filter is hiding all table' rows. */
@@ -153,6 +153,82 @@ public interface IFilterEditor {
     /** Returns the instant filtering flag. */
     boolean isInstantFiltering();
 
+    /**
+     * Sets the delay, in milliseconds, to apply the instant filtering.<br>
+     * If positive, the filter is only updated once the user stops typing
+     * for the given time, parsing then only the last text.
+     */
+    void setInstantFilteringDelay(int delay);
+
+    /** Returns the delay, in milliseconds, to apply the instant filtering. */
+    int getInstantFilteringDelay();
+
+    /**
+     * Enables the dictionary encoding of the column's values.<br>
+     * Each distinct value is then stored once, and filters created by the
+     * parser are evaluated once per distinct value, instead of once per row.
+     * It is only worth on columns with a reduced number of distinct values;
+     * the encoding is automatically discarded for columns with too many
+     * values.
+     */
+    void setDictionaryEncoding(boolean enable);
+
+    /** Returns true if the dictionary encoding is enabled. */
+    boolean isDictionaryEncoding();
+
+    /**
+     * Enables a sorted index of the column's values.<br>
+     * Filters created by the parser that include a contiguous run of values
+     * (like '&gt; 30' or '20 to 30' on a numeric column) find then the
+     * included rows by binary search, instead of being evaluated on each
+     * row. The index is built the first time that such a filter is used.
+     */
+    void setSortedIndex(boolean enable);
+
+    /** Returns true if the sorted index is enabled. */
+    boolean isSortedIndex();
+
+    /**
+     * Enables a substring index of the column's values, keeping the rows
+     * whose text contains each sequence of three characters.<br>
+     * Wildcard expressions (like '*acme*') find then the rows containing
+     * their literal fragments, and are only checked on those rows. The index
+     * is built on the background the first time that such an expression is
+     * used; until then, expressions are evaluated on each row.
+     */
+    void setSubstringIndex(boolean enable);
+
+    /** Returns true if the substring index is enabled. */
+    boolean isSubstringIndex();
+
+    /**
+     * Enables an inverted index of the column's values, keeping the rows
+     * that hold each distinct value.<br>
+     * Filters that depend only on the column's value, like the choices
+     * selected on the popup, or '= 30' expressions, find then the included
+     * rows from the rows of the included values. The index provides also
+     * the choices of the editor, without reading again the model. As the
+     * dictionary encoding, it is only kept for columns with not too many
+     * distinct values.
+     */
+    void setInvertedIndex(boolean enable);
+
+    /** Returns true if the inverted index is enabled. */
+    boolean isInvertedIndex();
+
+    /**
+     * Limits the number of choices extracted from the table model, when the
+     * auto choices are enabled; 0 sets no limit.<br>
+     * Only the most frequent values are then kept, counted in the same pass
+     * over the rows with a bounded number of counters -so the frequencies are
+     * approximated on columns with many more distinct values-. If any value
+     * is left out, the choices include {@link CustomChoice#MORE_CHOICES}.
+     */
+    void setMaxChoices(int max);
+
+    /** Returns the maximum number of choices, 0 if there is no limit. */
+    int getMaxChoices();
+
     /**
      * Limits the history size.<br>
      * This limit is only used when the popup contains also choices. Otherwise,
@@ -25,9 +25,11 @@
 
 package net.coderazzi.filters.gui;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -41,7 +43,13 @@ import net.coderazzi.filters.gui.editor.FilterEditor;
 
 /**
  * Internal class to handle choices without adaptive behaviour<br>
- * Choices are automatically updated as the table model changes.
+ * Choices are automatically updated as the table model changes: for each
+ * editor with enabled auto choices, the number of rows holding each value is
+ * kept, so that model updates only imply handling the updated rows. Editors
+ * with an inverted index keep already these values, which are then shared.
+ * Editors limiting their choices keep instead just the counters of the most
+ * frequent values; any update other than an insertion requires then counting
+ * again all the rows.
  */
 class NonAdaptiveChoicesHandler extends ChoicesHandler {
 
@@ -51,6 +59,20 @@ class NonAdaptiveChoicesHandler extends ChoicesHandler {
         new HashMap<IFilter, FilterEditor>();
     // entry used to filter rows
     private RowEntry rowEntry;
+    // editors whose choices must be extracted again from the whole model
+    private Set<FilterEditor> staleEditors = new HashSet<FilterEditor>();
+    // the values on each editor with enabled auto choices
+    private Map<FilterEditor, ColumnValues> columnValues =
+        new HashMap<FilterEditor, ColumnValues>();
+    // the editors with enabled auto choices, sharing their inverted index
+    private Set<FilterEditor> indexedEditors = new HashSet<FilterEditor>();
+    // the most frequent values on each editor limiting its choices
+    private Map<FilterEditor, TopChoices> topChoices =
+        new HashMap<FilterEditor, TopChoices>();
+    // the editors limiting their choices, with rows counted since published
+    private Set<FilterEditor> updatedTopChoices = new HashSet<FilterEditor>();
+    // the extractions in the background, on asynchronous choices mode
+    private BackgroundChoices backgroundChoices = new BackgroundChoices();
 
     public NonAdaptiveChoicesHandler(FiltersHandler handler) {
         super(handler);
@@ -64,6 +86,7 @@ class NonAdaptiveChoicesHandler extends ChoicesHandler {
         if (this.interrupted != interrupted) {
             this.interrupted = interrupted;
             setEnableTableModelEvents(!interrupted);
+            clearTableUpdates();
             if (!interrupted) {
                 for (FilterEditor editor : handler.getEditors()) {
                     editorUpdated(editor);
@@ -140,39 +163,153 @@ class NonAdaptiveChoicesHandler extends ChoicesHandler {
                                        int        firstRow,
                                        int        lastRow,
                                        int        column) {
+        // the choices are not updated here, but on consolidateTableUpdates,
+        // once for all the updates received in the same event cycle
         if (column != TableModelEvent.ALL_COLUMNS) {
-            // a change in ONE column is always handled as an update
-            // (every update is handled by re-extracting the choices
             FilterEditor editor = handler.getEditor(column);
-            if ((editor != null) && editor.isEnabled()) {
-                setChoicesFromModel(editor, model);
+            if (editor != null) {
+                if (!editor.isEnabled()) {
+                    discardValues(editor);
+                } else if (!indexedEditors.contains(editor)) {
+                    updateValues(editor, model, TableModelEvent.UPDATE,
+                        firstRow, lastRow);
+                }
             }
         } else {
-            lastRow = Math.min(model.getRowCount() - 1, lastRow);
             for (FilterEditor editor : handler.getEditors()) {
-                if (editor.isEnabled()
-                        && (AutoChoices.ENABLED == editor.getAutoChoices())) {
-                    // insert events can be handled by adding the
-                    // new model's values.
-                    // updates/deletes require reparsing the whole
-                    // table to obtain again the available choices
-                    if (eventType == TableModelEvent.INSERT) {
-                        editor.addChoices(modelExtract(editor, model, firstRow,
-                                lastRow, new HashSet<Object>()));
-                    } else {
+                if (!editor.isEnabled()
+                        || (AutoChoices.ENABLED != editor.getAutoChoices())) {
+                    // the values are extracted again once enabled
+                    discardValues(editor);
+                } else if (!indexedEditors.contains(editor)) {
+                    updateValues(editor, model, eventType, firstRow, lastRow);
+                }
+            }
+        }
+    }
+
+    @Override public void consolidateTableUpdates() {
+        if (!interrupted && (handler.getTable() != null)) {
+            // the inverted indexes have been already updated by the editors
+            Iterator<FilterEditor> it = indexedEditors.iterator();
+            while (it.hasNext()) {
+                FilterEditor editor = it.next();
+                if (editor.isEnabled() && !editor.publishIndexedValues()) {
+                    it.remove();
+                    staleEditors.add(editor);
+                }
+            }
+
+            if (!staleEditors.isEmpty()) {
+                TableModel model = handler.getTable().getModel();
+                for (FilterEditor editor : staleEditors) {
+                    if (editor.isEnabled()) {
                         setChoicesFromModel(editor, model);
                     }
                 }
+
+                staleEditors.clear();
+            }
+
+            for (Map.Entry<FilterEditor, ColumnValues> entry :
+                    columnValues.entrySet()) {
+                FilterEditor editor = entry.getKey();
+                if (editor.isEnabled()) {
+                    entry.getValue().publish(editor);
+                }
+            }
+
+            for (FilterEditor editor : updatedTopChoices) {
+                TopChoices top = topChoices.get(editor);
+                if ((top != null) && editor.isEnabled()) {
+                    editor.setChoices(top.addTo(editor.getCustomChoices()));
+                }
+            }
+
+            updatedTopChoices.clear();
+        }
+    }
+
+    /**
+     * Updates the values kept for the given editor, marking the editor as
+     * stale if the update cannot be handled incrementally.
+     */
+    private void updateValues(FilterEditor editor,
+                              TableModel   model,
+                              int          eventType,
+                              int          firstRow,
+                              int          lastRow) {
+        TopChoices top = topChoices.get(editor);
+        if (top != null) {
+            // the counters can only handle new rows
+            if ((eventType == TableModelEvent.INSERT)
+                    && (firstRow <= top.getRows())) {
+                countValues(top, model, editor.getModelIndex(), firstRow,
+                    Math.min(lastRow, model.getRowCount() - 1));
+            } else {
+                top = null;
+            }
+
+            if ((top != null) && (top.getRows() == model.getRowCount())) {
+                updatedTopChoices.add(editor);
+            } else {
+                discardValues(editor);
+                staleEditors.add(editor);
+            }
+        } else if (!staleEditors.contains(editor)) {
+            ColumnValues values = columnValues.get(editor);
+            if ((values != null) && (firstRow <= values.size())) {
+                if (eventType == TableModelEvent.INSERT) {
+                    values.insert(model, firstRow, lastRow);
+                } else if (eventType == TableModelEvent.DELETE) {
+                    values.delete(firstRow, lastRow);
+                } else if (lastRow < values.size()) {
+                    values.update(model, firstRow, lastRow);
+                } else {
+                    // an update can signal that all cells have changed
+                    values = null;
+                }
+            } else {
+                values = null;
+            }
+
+            if ((values == null) || (values.size() != model.getRowCount())) {
+                // this cancels as well any extraction in the background
+                discardValues(editor);
+                staleEditors.add(editor);
             }
         }
     }
 
+    /** Discards the values kept for the editors, and any pending update. */
+    private void clearTableUpdates() {
+        staleEditors.clear();
+        columnValues.clear();
+        indexedEditors.clear();
+        topChoices.clear();
+        updatedTopChoices.clear();
+        backgroundChoices.cancel();
+    }
+
+    /** Discards the values kept for the given editor. */
+    private void discardValues(FilterEditor editor) {
+        columnValues.remove(editor);
+        indexedEditors.remove(editor);
+        topChoices.remove(editor);
+        updatedTopChoices.remove(editor);
+        backgroundChoices.cancel(editor);
+    }
+
     /**
      * Initializes the choices in the given editor.<br>
      * It can update the mode of the editor, from ENABLED to ENUMS (in case of
      * enumerations), and from ENUMS to DISABLED (for no enumerations)
      */
     private void initEditorChoices(FilterEditor editor) {
+        // any pending table update is covered by this initialization
+        staleEditors.remove(editor);
+        discardValues(editor);
+
         AutoChoices autoChoices = editor.getAutoChoices();
         if (autoChoices == AutoChoices.DISABLED) {
             editor.setChoices(editor.getCustomChoices());
@@ -202,22 +339,103 @@ class NonAdaptiveChoicesHandler extends ChoicesHandler {
         }
     }
 
-    /** Sets the content for the given editor from the model's values. */
+    /**
+     * Sets the content for the given editor from the model's values.<br>
+     * On asynchronous mode, the values are extracted in the background; the
+     * structures to handle the model updates are only set once the choices
+     * are published, and the extraction is cancelled by any model update.
+     */
     private void setChoicesFromModel(FilterEditor editor, TableModel model) {
-        editor.setChoices(modelExtract(editor, model, 0,
-                model.getRowCount() - 1, editor.getCustomChoices()));
+        setChoicesFromModel(editor, model, handler.isAsyncChoices());
+    }
+
+    /** Sets the content for the given editor, in the background if async. */
+    private void setChoicesFromModel(final FilterEditor editor,
+                                     final TableModel   model,
+                                     boolean            async) {
+        final Set choices = editor.getCustomChoices();
+        final int column = editor.getModelIndex();
+        final int max = editor.getMaxChoices();
+        boolean enabled = AutoChoices.ENABLED == editor.getAutoChoices();
+        Set<Object> indexed = null;
+        if (enabled && (max == 0)) {
+            indexed = editor.getIndexedValues();
+        }
+
+        discardValues(editor);
+
+        Extraction extraction;
+        if (indexed != null) {
+            // the values must be read here, the index is not thread safe
+            choices.addAll(indexed);
+            extraction = new Extraction(editor, model) {
+                    @Override Collection<?> extract() {
+                        return choices;
+                    }
+
+                    @Override void completed() {
+                        indexedEditors.add(editor);
+                    }
+                };
+        } else if (enabled && (max > 0)) {
+            extraction = new Extraction(editor, model) {
+                    TopChoices top = new TopChoices(max);
+
+                    @Override Collection<?> extract() {
+                        countValues(top, model, column, 0,
+                            model.getRowCount() - 1);
+
+                        return top.addTo(choices);
+                    }
+
+                    @Override void completed() {
+                        topChoices.put(editor, top);
+                    }
+                };
+        } else if (enabled) {
+            extraction = new Extraction(editor, model) {
+                    ColumnValues values;
+
+                    @Override Collection<?> extract() {
+                        values = new ColumnValues(model, column);
+                        choices.addAll(values.getValues());
+
+                        return choices;
+                    }
+
+                    @Override void completed() {
+                        columnValues.put(editor, values);
+                    }
+                };
+        } else {
+            extraction = new Extraction(editor, model) {
+                    @Override Collection<?> extract() {
+                        return modelExtract(column, model, 0,
+                                model.getRowCount() - 1, choices);
+                    }
+
+                    @Override void completed() {
+                        // nothing to do
+                    }
+                };
+        }
+
+        if (async) {
+            backgroundChoices.start(editor, extraction);
+        } else {
+            extraction.run();
+        }
     }
 
     /**
      * Extract content from the given range of rows in the model, adding the
      * results to the provided Set, which is then returned.
      */
-    private Set modelExtract(FilterEditor editor,
-                             TableModel   model,
-                             int          firstRow,
-                             int          lastRow,
-                             Set          fill) {
-        int column = editor.getModelIndex();
+    private Set modelExtract(int        column,
+                             TableModel model,
+                             int        firstRow,
+                             int        lastRow,
+                             Set        fill) {
         for (; lastRow >= firstRow; firstRow++) {
             fill.add(model.getValueAt(firstRow, column));
         }
@@ -225,6 +443,17 @@ class NonAdaptiveChoicesHandler extends ChoicesHandler {
         return fill;
     }
 
+    /** Counts the values on the given range of rows in the model. */
+    private void countValues(TopChoices top,
+                             TableModel model,
+                             int        column,
+                             int        firstRow,
+                             int        lastRow) {
+        for (; lastRow >= firstRow; firstRow++) {
+            top.add(model.getValueAt(firstRow, column));
+        }
+    }
+
     /** Initialise structures related to the filters and editors. */
     private void initialiseFiltersInfo() {
         // recreate the filtersMap
@@ -242,4 +471,167 @@ class NonAdaptiveChoicesHandler extends ChoicesHandler {
         }
     }
 
+
+    /**
+     * Extraction of the choices of one editor, which can run in the
+     * background. If it fails there, the choices are extracted again
+     * directly.
+     */
+    abstract class Extraction extends BackgroundChoices.Extraction {
+        private FilterEditor editor;
+        private TableModel model;
+
+        Extraction(FilterEditor editor, TableModel model) {
+            this.editor = editor;
+            this.model = model;
+        }
+
+        /** Extracts and sets the choices on the event dispatch thread. */
+        public void run() {
+            editor.setChoices(extract());
+            completed();
+        }
+
+        @Override void failed() {
+            if (!interrupted && editor.isEnabled()
+                    && (handler.getTable() != null)
+                    && (handler.getTable().getModel() == model)) {
+                setChoicesFromModel(editor, model, false);
+            }
+        }
+    }
+
+
+    /**
+     * Copy of the values on one column, with the number of rows holding each
+     * value.<br>
+     * The copy is required as the model events do not provide the values
+     * before the update; a choice is only removed when the last row holding
+     * that value is deleted or updated.
+     */
+    static class ColumnValues {
+
+        /** The model position of the column. */
+        private int column;
+
+        /** The values on the column, for each row. */
+        private Object values[];
+
+        /** The number of rows. */
+        private int size;
+
+        /** The number of rows with each value on the column. */
+        private Map<Object, int[]> counts = new HashMap<Object, int[]>();
+
+        /** The values added since the last publication. */
+        private Set added = new HashSet();
+
+        /** The values removed since the last publication. */
+        private Set removed = new HashSet();
+
+        /** Single constructor, copies the current values of the column. */
+        public ColumnValues(TableModel model, int column) {
+            this.column = column;
+            this.size = model.getRowCount();
+            this.values = new Object[size + 16];
+            for (int row = 0; row < size; row++) {
+                Object value = model.getValueAt(row, column);
+                values[row] = value;
+                increment(value);
+            }
+
+            added.clear();
+        }
+
+        /** Returns the number of rows. */
+        public int size() {
+            return size;
+        }
+
+        /** Returns the current distinct values. */
+        public Set<Object> getValues() {
+            return counts.keySet();
+        }
+
+        /** Handles a table model event after some rows are added. */
+        public void insert(TableModel model, int firstRow, int lastRow) {
+            int inserted = lastRow - firstRow + 1;
+            if (size + inserted > values.length) {
+                values = Arrays.copyOf(values,
+                        Math.max(size + inserted, size + (size >> 1)));
+            }
+
+            System.arraycopy(values, firstRow, values, lastRow + 1,
+                size - firstRow);
+            size += inserted;
+            lastRow = Math.min(lastRow, model.getRowCount() - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                Object value = model.getValueAt(row, column);
+                values[row] = value;
+                increment(value);
+            }
+        }
+
+        /** Handles a table model event after some rows are deleted. */
+        public void delete(int firstRow, int lastRow) {
+            lastRow = Math.min(lastRow, size - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                decrement(values[row]);
+            }
+
+            System.arraycopy(values, lastRow + 1, values, firstRow,
+                size - lastRow - 1);
+            size -= lastRow - firstRow + 1;
+            Arrays.fill(values, size, size + lastRow - firstRow + 1, null);
+        }
+
+        /** Handles a table model event after some rows are updated. */
+        public void update(TableModel model, int firstRow, int lastRow) {
+            lastRow = Math.min(lastRow, model.getRowCount() - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                Object value = model.getValueAt(row, column);
+                Object old = values[row];
+                if ((value == null) ? (old != null) : !value.equals(old)) {
+                    values[row] = value;
+                    decrement(old);
+                    increment(value);
+                }
+            }
+        }
+
+        /** Updates the editor' choices, if there are changes. */
+        public void publish(FilterEditor editor) {
+            if (!removed.isEmpty()) {
+                editor.removeChoices(removed);
+                removed.clear();
+            }
+
+            if (!added.isEmpty()) {
+                editor.addChoices(added);
+                added.clear();
+            }
+        }
+
+        private void increment(Object value) {
+            int count[] = counts.get(value);
+            if (count == null) {
+                counts.put(value, new int[] { 1 });
+                if (!removed.remove(value)) {
+                    added.add(value);
+                }
+            } else {
+                ++count[0];
+            }
+        }
+
+        private void decrement(Object value) {
+            int count[] = counts.get(value);
+            if ((count != null) && (0 == --count[0])) {
+                counts.remove(value);
+                if (!added.remove(value)) {
+                    removed.add(value);
+                }
+            }
+        }
+    }
 }
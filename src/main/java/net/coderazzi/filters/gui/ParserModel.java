@@ -422,12 +422,7 @@ public class ParserModel implements IParserModel {
     }
 
     /** Default comparator for Comparable instances. */
-    private static Comparator COMPARABLE_COMPARATOR =
-        new Comparator<Comparable>() {
-            @Override public int compare(Comparable o1, Comparable o2) {
-                return o1.compareTo(o2);
-            }
-        };
+    private static Comparator COMPARABLE_COMPARATOR = Parser.NATURAL_ORDER;
 
     private static Comparator DEFAULT_COMPARATOR = new Comparator() {
         @Override public int compare(Object o1, Object o2) {
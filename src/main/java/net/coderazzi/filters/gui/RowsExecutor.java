@@ -0,0 +1,180 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.coderazzi.filters.gui.ChoicesHandler.RowEntry;
+
+
+/**
+ * Internal class to evaluate ranges of model rows in parallel.<br>
+ * The range is split in chunks, each evaluated with its own {@link RowEntry};
+ * the calling thread evaluates one of the chunks, and waits for the others,
+ * so that the model is only read while the caller (the event dispatch thread)
+ * is blocked.<br>
+ * Chunks are aligned to 64 rows, so tasks updating bits in word-packed
+ * structures never share a word.
+ */
+final class RowsExecutor {
+
+    /** Task on a range of rows. */
+    interface Task {
+
+        /**
+         * Handles the rows between firstRow and lastRow, both inclusive.
+         *
+         * @return  any value, the outcomes of each chunk are or'ed
+         */
+        int run(RowEntry entry, int firstRow, int lastRow);
+    }
+
+    /** The number of processors, and maximum number of chunks. */
+    static int processors = Runtime.getRuntime().availableProcessors();
+
+    /** Executor shared by all the filter headers. */
+    private static ExecutorService executor;
+
+    private RowsExecutor() {
+    }
+
+    /**
+     * Executes the task on the rows [firstRow, lastRow], in parallel if
+     * enabled and the number of rows exceeds the threshold.
+     *
+     * @return  the or'ed outcome of the task on each chunk
+     */
+    public static int execute(RowEntry entry,
+                              int      firstRow,
+                              int      lastRow,
+                              Task     task) {
+        int size = lastRow - firstRow + 1;
+        if (!FilterSettings.parallelFiltering || (processors < 2)
+                || (size < Math.max(128,
+                        FilterSettings.parallelFilteringThreshold))) {
+            return task.run(entry, firstRow, lastRow);
+        }
+
+        // ranges with less rows than processors still get 64 rows chunks
+        int chunk = Math.max(64, ((size / processors) + 63) & ~63);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        ExecutorService service = getExecutor();
+        int start = firstRow;
+        while (lastRow - start >= chunk) {
+            // chunks end on 64 rows boundaries, in absolute terms
+            int end = ((start + chunk) & ~63) - 1;
+            futures.add(service.submit(new Chunk(new RowEntry(entry), task,
+                        start, end)));
+            start = end + 1;
+        }
+
+        // the last chunk is executed on this thread
+        RuntimeException error = null;
+        int ret = 0;
+        try {
+            ret = task.run(entry, start, lastRow);
+        } catch (RuntimeException rex) {
+            error = rex;
+        }
+
+        // the model and the filters cannot be modified until the chunks are
+        // all completed: wait for all of them, even if interrupted
+        boolean interrupted = false;
+        for (Future<Integer> future : futures) {
+            while (true) {
+                try {
+                    ret |= future.get();
+
+                    break;
+                } catch (InterruptedException iex) {
+                    interrupted = true;
+                } catch (ExecutionException eex) {
+                    if (error == null) {
+                        Throwable cause = eex.getCause();
+                        error = (cause instanceof RuntimeException)
+                            ? (RuntimeException) cause
+                            : new RuntimeException(cause);
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (error != null) {
+            throw error;
+        }
+
+        return ret;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1,
+                        Runtime.getRuntime().availableProcessors() - 1),
+                    new ThreadFactory() {
+                        @Override public Thread newThread(Runnable r) {
+                            Thread ret = new Thread(r, "TableFilter-rows");
+                            ret.setDaemon(true);
+
+                            return ret;
+                        }
+                    });
+        }
+
+        return executor;
+    }
+
+    /** A chunk of rows, executed on the executor. */
+    private static class Chunk implements Callable<Integer> {
+        private RowEntry entry;
+        private Task task;
+        private int firstRow;
+        private int lastRow;
+
+        Chunk(RowEntry entry, Task task, int firstRow, int lastRow) {
+            this.entry = entry;
+            this.task = task;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+        }
+
+        @Override public Integer call() {
+            return task.run(entry, firstRow, lastRow);
+        }
+    }
+}
@@ -135,6 +135,24 @@ public class TableFilterHeader extends JPanel implements PropertyChangeListener
     /** Flag to handle instant filtering support. */
     boolean instantFilteringEnabled = FilterSettings.instantFiltering;
 
+    /** Delay to apply the instant filtering. */
+    int instantFilteringDelay = FilterSettings.instantFilteringDelay;
+
+    /** Flag to handle the dictionary encoding of the columns. */
+    boolean dictionaryEncoding = FilterSettings.dictionaryEncoding;
+
+    /** Flag to handle the sorted index of the columns. */
+    boolean sortedIndex = FilterSettings.sortedIndex;
+
+    /** Flag to handle the inverted index of the columns. */
+    boolean invertedIndex = FilterSettings.invertedIndex;
+
+    /** Flag to handle the substring index of the columns. */
+    boolean substringIndex = FilterSettings.substringIndex;
+
+    /** The maximum number of choices extracted on each column. */
+    int maxChoices = FilterSettings.maxChoices;
+
     /** Flag to handle auto completion support. */
     boolean autoCompletionEnabled = FilterSettings.autoCompletion;
 
@@ -302,6 +320,62 @@ public class TableFilterHeader extends JPanel implements PropertyChangeListener
         return filtersHandler.isAdaptiveChoices();
     }
 
+    /**
+     * Sets the asynchronous filtering mode.<br>
+     * On this mode, the filters are evaluated on a background thread, and the
+     * table is updated once the evaluation completes, keeping the GUI
+     * responsive on big tables. The model is then read outside the event
+     * dispatch thread.<br>
+     * The filters are also evaluated outside the event dispatch thread,
+     * while new expressions are parsed on it: the filters created by the
+     * default {@link net.coderazzi.filters.parser.Parser} support this, but
+     * any custom filter, parser, format or comparator must be thread safe.<br>
+     * It has only effect if the adaptive choices are disabled.
+     */
+    public void setAsyncFiltering(boolean enable) {
+        filtersHandler.setAsyncFiltering(enable);
+    }
+
+    /** Returns the asynchronous filtering mode. */
+    public boolean isAsyncFiltering() {
+        return filtersHandler.isAsyncFiltering();
+    }
+
+    /**
+     * Sets the asynchronous choices mode.<br>
+     * On this mode, the choices are extracted from the model, formatted and
+     * sorted on a background thread, and set on the editors once ready; the
+     * editors keep meanwhile their previous choices. The model is then read
+     * outside the event dispatch thread.<br>
+     * It has only effect if the adaptive choices are disabled.
+     */
+    public void setAsyncChoices(boolean enable) {
+        filtersHandler.setAsyncChoices(enable);
+    }
+
+    /** Returns the asynchronous choices mode. */
+    public boolean isAsyncChoices() {
+        return filtersHandler.isAsyncChoices();
+    }
+
+    /**
+     * Starts a batch of table model updates.<br>
+     * The model events are always coalesced within each event cycle, but the
+     * choices are only updated once the batch is closed by calling
+     * {@link #endModelUpdates()}, which allows the application to spread big
+     * updates over several event cycles. Each call to this method must be
+     * balanced with a call to {@link #endModelUpdates()}, on the event
+     * dispatch thread.
+     */
+    public void beginModelUpdates() {
+        filtersHandler.beginModelUpdates();
+    }
+
+    /** Ends a batch of table model updates, updating then the choices. */
+    public void endModelUpdates() {
+        filtersHandler.endModelUpdates();
+    }
+
     /**
      * Enables instant filtering, as the user edits the filter's text<br>
      * The exact way the instant filtering works depends on the associated.
@@ -324,6 +398,145 @@ public class TableFilterHeader extends JPanel implements PropertyChangeListener
         return this.instantFilteringEnabled;
     }
 
+    /**
+     * Sets the delay, in milliseconds, to apply the instant filtering.<br>
+     * If positive, the filter is only updated once the user stops typing for
+     * the given time: intermediate texts are not parsed, nor applied, so the
+     * typing is not slowed down on big tables.
+     */
+    public void setInstantFilteringDelay(int delay) {
+        if (this.instantFilteringDelay != delay) {
+            this.instantFilteringDelay = delay;
+            if (columnsController != null) {
+                for (FilterEditor fe : columnsController) {
+                    fe.setInstantFilteringDelay(delay);
+                }
+            }
+        }
+    }
+
+    /** Returns the delay, in milliseconds, to apply the instant filtering. */
+    public int getInstantFilteringDelay() {
+        return this.instantFilteringDelay;
+    }
+
+    /**
+     * Enables the dictionary encoding of the columns' values.<br>
+     * Filters are then evaluated once per distinct value, instead of once
+     * per row, which is much faster on columns with few distinct values.
+     * Columns with too many distinct values are automatically excluded.
+     *
+     * @see  IFilterEditor#setDictionaryEncoding(boolean)
+     */
+    public void setDictionaryEncoding(boolean enable) {
+        if (this.dictionaryEncoding != enable) {
+            this.dictionaryEncoding = enable;
+            if (columnsController != null) {
+                for (FilterEditor fe : columnsController) {
+                    fe.setDictionaryEncoding(enable);
+                }
+            }
+        }
+    }
+
+    /** Returns true if the dictionary encoding is enabled. */
+    public boolean isDictionaryEncoding() {
+        return this.dictionaryEncoding;
+    }
+
+    /**
+     * Enables a sorted index on the columns' values.<br>
+     * Comparison filters, like '&gt; 30' or '20 to 30', find then the
+     * included rows by binary search, instead of being evaluated on each
+     * row.
+     *
+     * @see  IFilterEditor#setSortedIndex(boolean)
+     */
+    public void setSortedIndex(boolean enable) {
+        if (this.sortedIndex != enable) {
+            this.sortedIndex = enable;
+            if (columnsController != null) {
+                for (FilterEditor fe : columnsController) {
+                    fe.setSortedIndex(enable);
+                }
+            }
+        }
+    }
+
+    /** Returns true if the sorted index is enabled. */
+    public boolean isSortedIndex() {
+        return this.sortedIndex;
+    }
+
+    /**
+     * Enables an inverted index on the columns' values.<br>
+     * Filters on specific values, like the choices selected on the popup,
+     * find then the included rows from the rows holding those values,
+     * instead of being evaluated on each row.
+     *
+     * @see  IFilterEditor#setInvertedIndex(boolean)
+     */
+    public void setInvertedIndex(boolean enable) {
+        if (this.invertedIndex != enable) {
+            this.invertedIndex = enable;
+            if (columnsController != null) {
+                for (FilterEditor fe : columnsController) {
+                    fe.setInvertedIndex(enable);
+                }
+            }
+        }
+    }
+
+    /** Returns true if the inverted index is enabled. */
+    public boolean isInvertedIndex() {
+        return this.invertedIndex;
+    }
+
+    /**
+     * Enables a substring index on the columns' values.<br>
+     * Wildcard expressions like '*acme*' find then the rows containing their
+     * fragments, and are only evaluated on those rows.
+     *
+     * @see  IFilterEditor#setSubstringIndex(boolean)
+     */
+    public void setSubstringIndex(boolean enable) {
+        if (this.substringIndex != enable) {
+            this.substringIndex = enable;
+            if (columnsController != null) {
+                for (FilterEditor fe : columnsController) {
+                    fe.setSubstringIndex(enable);
+                }
+            }
+        }
+    }
+
+    /** Returns true if the substring index is enabled. */
+    public boolean isSubstringIndex() {
+        return this.substringIndex;
+    }
+
+    /**
+     * Limits the number of choices extracted on each column, keeping the most
+     * frequent values; 0 sets no limit.
+     *
+     * @see  IFilterEditor#setMaxChoices(int)
+     */
+    public void setMaxChoices(int max) {
+        if (this.maxChoices != max) {
+            this.maxChoices = max;
+            if (columnsController != null) {
+                for (FilterEditor fe : columnsController) {
+                    fe.setMaxChoices(max);
+                }
+            }
+        }
+    }
+
+    /** Returns the maximum number of choices, 0 if there is no limit. */
+    public int getMaxChoices() {
+        return this.maxChoices;
+    }
+
     /** Enables auto completion, as the user edits the filter's text. */
     public void setAutoCompletion(boolean enable) {
         if (this.autoCompletionEnabled != enable) {
@@ -967,6 +1180,12 @@ public class TableFilterHeader extends JPanel implements PropertyChangeListener
                     getTable().getModel().getColumnClass(modelColumn), look);
             ret.setMaxHistory(maxHistory);
             ret.setInstantFiltering(instantFilteringEnabled);
+            ret.setInstantFilteringDelay(instantFilteringDelay);
+            ret.setDictionaryEncoding(dictionaryEncoding);
+            ret.setSortedIndex(sortedIndex);
+            ret.setInvertedIndex(invertedIndex);
+            ret.setSubstringIndex(substringIndex);
+            ret.setMaxChoices(maxChoices);
             ret.setAutoCompletion(autoCompletionEnabled);
             ret.getFilter().setEnabled(enableIt);
             filtersHandler.addFilterEditor(ret);
@@ -0,0 +1,218 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Bounded count of the most frequent values on a column, used to limit the
+ * choices extracted for an editor.<br>
+ * It implements the Space-Saving algorithm: a fixed number of counters is
+ * kept -four per reported choice-, and a value without counter takes the
+ * counter of the least frequent value, inheriting its count. Any value more
+ * frequent than that lowest count is therefore always counted, although the
+ * counts themselves can be overestimated. Rows can only be added; the counts
+ * must be started again if any row is removed.
+ */
+final class TopChoices {
+
+    /** Counters required per reported choice. */
+    private static final int COUNTERS_PER_CHOICE = 4;
+
+    /** Sorts the counters, the most frequent first. */
+    private static final Comparator<Counter> FREQUENT_FIRST =
+        new Comparator<Counter>() {
+            @Override public int compare(Counter c1, Counter c2) {
+                return (c1.count < c2.count) ? 1
+                                             : ((c1.count == c2.count) ? 0
+                                                                       : -1);
+            }
+        };
+
+    /** The maximum number of reported choices. */
+    private int max;
+
+    /** The maximum number of counters. */
+    private int capacity;
+
+    /** The counters, as a binary min-heap on their count. */
+    private Counter heap[];
+
+    /** The number of counters in use. */
+    private int size;
+
+    /** The counter of each counted value. */
+    private Map<Object, Counter> counters = new HashMap<Object, Counter>();
+
+    /** True if any counter has been taken over by another value. */
+    private boolean replaced;
+
+    /** The number of counted rows. */
+    private int rows;
+
+    /** Single constructor, for a positive number of choices. */
+    public TopChoices(int max) {
+        this.max = max;
+        this.capacity = (int) Math.min((long) max * COUNTERS_PER_CHOICE,
+                Integer.MAX_VALUE - 8);
+        this.heap = new Counter[Math.min(capacity, 64)];
+    }
+
+    /** Returns the maximum number of reported choices. */
+    public int getMax() {
+        return max;
+    }
+
+    /** Returns the number of counted rows. */
+    public int getRows() {
+        return rows;
+    }
+
+    /** Discards all the counts. */
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        counters.clear();
+        size = rows = 0;
+        replaced = false;
+    }
+
+    /** Counts one more row with the given value. */
+    public void add(Object value) {
+        ++rows;
+        Counter counter = counters.get(value);
+        if (counter != null) {
+            ++counter.count;
+            siftDown(counter);
+        } else if (size < capacity) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap,
+                        (int) Math.min(capacity, (long) size << 1));
+            }
+
+            counter = new Counter(value);
+            counter.pos = size;
+            heap[size++] = counter;
+            counters.put(value, counter);
+            siftUp(counter);
+        } else {
+            counter = heap[0];
+            counters.remove(counter.value);
+            counter.value = value;
+            ++counter.count;
+            counters.put(value, counter);
+            replaced = true;
+            siftDown(counter);
+        }
+    }
+
+    /** Returns true if some values are not reported. */
+    public boolean isTruncated() {
+        return replaced || (size > max);
+    }
+
+    /**
+     * Adds the most frequent values to the given set, and the marker {@link
+     * CustomChoice#MORE_CHOICES} if any value is left out.
+     */
+    public Set addTo(Set fill) {
+        if (size <= max) {
+            for (int i = 0; i < size; i++) {
+                fill.add(heap[i].value);
+            }
+        } else {
+            Counter sorted[] = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted, FREQUENT_FIRST);
+            for (int i = 0; i < max; i++) {
+                fill.add(sorted[i].value);
+            }
+        }
+
+        if (isTruncated()) {
+            fill.add(CustomChoice.MORE_CHOICES);
+        }
+
+        return fill;
+    }
+
+    private void siftUp(Counter counter) {
+        int pos = counter.pos;
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            Counter p = heap[parent];
+            if (p.count <= counter.count) {
+                break;
+            }
+
+            p.pos = pos;
+            heap[pos] = p;
+            pos = parent;
+        }
+
+        counter.pos = pos;
+        heap[pos] = counter;
+    }
+
+    private void siftDown(Counter counter) {
+        int pos = counter.pos;
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = (pos << 1) + 1;
+            Counter c = heap[child];
+            int right = child + 1;
+            if ((right < size) && (heap[right].count < c.count)) {
+                c = heap[child = right];
+            }
+
+            if (counter.count <= c.count) {
+                break;
+            }
+
+            c.pos = pos;
+            heap[pos] = c;
+            pos = child;
+        }
+
+        counter.pos = pos;
+        heap[pos] = counter;
+    }
+
+
+    /** The count of a value, and its position on the heap. */
+    static final class Counter {
+        Object value;
+        int count = 1;
+        int pos;
+
+        Counter(Object value) {
+            this.value = value;
+        }
+    }
+}
@@ -27,11 +27,11 @@ package net.coderazzi.filters.gui.editor;
 
 import java.text.Format;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.TreeSet;
 
 import javax.swing.AbstractListModel;
 
@@ -51,19 +51,39 @@ import net.coderazzi.filters.gui.CustomChoice;
  *
  * <p>It provides, in special, functionality to keep the content sorted, and to
  * perform text search on the content.</p>
+ *
+ * <p>The choices are kept on a sorted array, which is directly the content of
+ * the list, and searched by binary search. The alphabetical order, used for
+ * the text search, is only built when required, and shares the same array if
+ * the choices are already sorted alphabetically.</p>
  */
 public class ChoicesListModel extends AbstractListModel
     implements Comparator<ChoicesListModel.Choice> {
 
     private static final long serialVersionUID = -8795357002432721893L;
+
+    /**
+     * Number of added choices above which they are sorted and merged at
+     * once, instead of being inserted one by one.
+     */
+    private static final int MERGE_THRESHOLD = 64;
+
     private Format format;
     private Comparator contentComparator;
     private Comparator<String> strComparator;
     private boolean renderedContent;
-    private TreeSet<Choice> content;
-    private TreeSet<Choice> alphaSortedContent;
-    private Object flatContent[];
+    // the choices, sorted, on the first size positions
+    private Choice content[];
     private int size;
+    // the choices sorted alphabetically, null if not yet sorted. It is the
+    // content itself if both orders agree, starting after the custom
+    // choices, which are then sorted on alphaCustoms
+    private Choice alphaContent[];
+    private int alphaStart;
+    private int alphaEnd;
+    private Choice alphaCustoms[];
+    // incremented each time that the format or the comparators change
+    private int settings;
 
     public ChoicesListModel(Format     format,
                             Comparator choicesComparator,
@@ -71,7 +91,6 @@ public class ChoicesListModel extends AbstractListModel
         this.format = format;
         this.strComparator = stringComparator;
         this.contentComparator = choicesComparator;
-        this.content = new TreeSet<Choice>(this);
         clearContent();
     }
 
@@ -86,6 +105,7 @@ public class ChoicesListModel extends AbstractListModel
                 || !renderedContent) {
             renderedContent = true;
             this.strComparator = stringComparator;
+            ++settings;
             clearContent();
             return true;
         }
@@ -119,6 +139,7 @@ public class ChoicesListModel extends AbstractListModel
             this.format = format;
             this.strComparator = stringComparator;
             renderedContent = false;
+            ++settings;
             clearContent();
         }
 
@@ -130,54 +151,266 @@ public class ChoicesListModel extends AbstractListModel
     }
 
     @Override public Object getElementAt(int index) {
-        return flatContent()[index];
+        return content[index].get(renderedContent);
     }
 
     /** Clears all content (but ALL matcher). */
     public void clearContent() {
         int currentSize = size;
-        content.clear();
-        content.add(new Choice(CustomChoice.MATCH_ALL, null));
+        content = new Choice[] { new Choice(CustomChoice.MATCH_ALL, null) };
+        alphaContent = null;
         fireIntervalRemoved(this, size = 1, currentSize);
     }
 
+    /**
+     * Replaces all the content (but ALL matcher), as if the content were
+     * cleared and the choices then added, but sorting them at once.
+     */
+    public void setContent(Collection newContent, IChoicesParser parser) {
+        int currentSize = size;
+        Choice added[] = sort(newContent, parser);
+        content = new Choice[] { new Choice(CustomChoice.MATCH_ALL, null) };
+        size = 1;
+        merge(added);
+        alphaContent = null;
+        fireContentsChanged(this, 0, Math.max(currentSize, size));
+    }
+
+    /**
+     * Returns an empty model with the same settings, where the content can be
+     * loaded on a background thread -using {@link #setContent(Collection,
+     * IChoicesParser)}-, to be then taken with {@link
+     * #swapContent(ChoicesListModel)}. The format, which is not thread safe,
+     * is cloned.
+     */
+    public ChoicesListModel createLoader() {
+        ChoicesListModel ret = new ChoicesListModel((format == null)
+                    ? null : (Format) format.clone(), contentComparator,
+                strComparator);
+        ret.renderedContent = renderedContent;
+        ret.settings = settings;
+
+        return ret;
+    }
+
+    /**
+     * Replaces all the content with the content of the given loader, created
+     * with {@link #createLoader()}.
+     *
+     * @return  false if the settings have changed since the loader was
+     *          created, and the content is not replaced
+     */
+    public boolean swapContent(ChoicesListModel loader) {
+        if (loader.settings != settings) {
+            return false;
+        }
+
+        int currentSize = size;
+        content = loader.content;
+        size = loader.size;
+        alphaContent = null;
+        fireContentsChanged(this, 0, Math.max(currentSize, size));
+
+        return true;
+    }
+
     /**
      * Adds additional choices.<br>
      * If the content is text-based, the choices are converted into Strings, and
      * sorted; additionally, choices are also escaped.<br>
      * Otherwise, no sorting is performed, although duplicates are still
-     * discarded
+     * discarded.<br>
+     * Each choice keeps the number of times it has been added, as different
+     * objects can have the same representation.
      *
      * @return  true if there are any changes after the operation
      */
     public boolean addContent(Collection addedContent, IChoicesParser parser) {
-        boolean changed = false;
-        for (Object o : addedContent) {
-            String s = null;
-            if (o == null) {
-                o = CustomChoice.MATCH_EMPTY;
-            } else if (!renderedContent && !(o instanceof CustomChoice)) {
-                // if null, content is rendered, no need to handle strings
-                s = (format == null) ? o.toString() : format.format(o);
-                if (s.length() == 0) {
-                    o = CustomChoice.MATCH_EMPTY;
+        int currentSize = size;
+        if (addedContent.size() > MERGE_THRESHOLD) {
+            merge(sort(addedContent, parser));
+        } else {
+            for (Object o : addedContent) {
+                Choice choice = createChoice(o, parser);
+                int pos = find(choice);
+                if (pos >= 0) {
+                    content[pos].refs++;
                 } else {
-                    s = parser.escapeChoice(s);
+                    insert(choice, -pos - 1);
                 }
             }
+        }
+
+        if (size == currentSize) {
+            return false;
+        }
+
+        alphaContent = null;
+        fireContentsChanged(this, 0, size);
+
+        return true;
+    }
 
-            changed = content.add(new Choice(o, s)) || changed;
+    /**
+     * Removes choices previously added.<br>
+     * A choice is only removed when it has been removed as many times as it
+     * was added.
+     *
+     * @return  true if there are any changes after the operation
+     */
+    public boolean removeContent(Collection removedContent,
+                                 IChoicesParser parser) {
+        boolean changed = false;
+        for (Object o : removedContent) {
+            int pos = find(createChoice(o, parser));
+            if ((pos >= 0) && (--content[pos].refs == 0)) {
+                changed = true;
+            }
         }
 
         if (changed) {
-            flatContent = null;
-            alphaSortedContent = null;
-            fireContentsChanged(this, 0, size = content.size());
+            // the choices are only removed now, removing all at once
+            int currentSize = size;
+            int last = 0;
+            for (int i = 0; i < currentSize; i++) {
+                if (content[i].refs > 0) {
+                    content[last++] = content[i];
+                }
+            }
+
+            Arrays.fill(content, last, currentSize, null);
+            size = last;
+            alphaContent = null;
+            fireContentsChanged(this, 0, currentSize);
         }
 
         return changed;
     }
 
+    /** Wraps a choice, converting it to string if content is not rendered. */
+    private Choice createChoice(Object o, IChoicesParser parser) {
+        String s = null;
+        if (o == null) {
+            o = CustomChoice.MATCH_EMPTY;
+        } else if (!renderedContent && !(o instanceof CustomChoice)) {
+            // if null, content is rendered, no need to handle strings
+            s = (format == null) ? o.toString() : format.format(o);
+            if (s.length() == 0) {
+                o = CustomChoice.MATCH_EMPTY;
+            } else {
+                s = parser.escapeChoice(s);
+            }
+        }
+
+        return new Choice(o, s);
+    }
+
+    /**
+     * Wraps the given choices, sorting them, and merging those with the same
+     * representation.
+     */
+    private Choice[] sort(Collection choices, IChoicesParser parser) {
+        Choice ret[] = new Choice[choices.size()];
+        int n = 0;
+        for (Object o : choices) {
+            ret[n++] = createChoice(o, parser);
+        }
+
+        Arrays.sort(ret, 0, n, new Comparator<Choice>() {
+                @Override public int compare(Choice w1, Choice w2) {
+                    return order(w1, w2);
+                }
+            });
+
+        int last = 0;
+        for (int i = 1; i < n; i++) {
+            if (compare(ret[last], ret[i]) == 0) {
+                ret[last].refs++;
+            } else {
+                ret[++last] = ret[i];
+            }
+        }
+
+        return Arrays.copyOf(ret, (n == 0) ? 0 : (last + 1));
+    }
+
+    /**
+     * Merges the given sorted choices into the content. A choice with the
+     * same representation as an existing one only increases its references.
+     */
+    private void merge(Choice added[]) {
+        Choice current[] = content;
+        int n = size;
+        Choice ret[] = new Choice[n + added.length];
+        int last = -1;
+        boolean lastAdded = false;
+        for (int i = 0, j = 0; (i < n) || (j < added.length);) {
+            boolean next = (i == n)
+                    || ((j < added.length) && (order(current[i], added[j]) > 0));
+            Choice choice = next ? added[j++] : current[i++];
+            // both arrays have already distinct representations
+            if ((last < 0) || (lastAdded == next)
+                    || (compare(ret[last], choice) != 0)) {
+                ret[++last] = choice;
+                lastAdded = next;
+            } else if (lastAdded && !next) {
+                // the existing choice is kept
+                choice.refs += ret[last].refs;
+                ret[last] = choice;
+                lastAdded = false;
+            } else {
+                ret[last].refs += choice.refs;
+            }
+        }
+
+        // the content is replaced even if no choice is added
+        content = ret;
+        size = last + 1;
+        alphaContent = null;
+    }
+
+    /** Inserts the choice on the given position of the content. */
+    private void insert(Choice choice, int pos) {
+        if (size == content.length) {
+            content = Arrays.copyOf(content, size + (size >> 1) + 1);
+        }
+
+        System.arraycopy(content, pos, content, pos + 1, size - pos);
+        content[pos] = choice;
+        size++;
+    }
+
+    /**
+     * Returns the position of the choice with the same representation, or
+     * (-(insertion point) - 1) if there is none.
+     */
+    private int find(Choice choice) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = order(content[mid], choice);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        // choices with the same representation are expected to be adjacent
+        if ((low < size) && (compare(content[low], choice) == 0)) {
+            return low;
+        }
+
+        if ((low > 0) && (compare(content[low - 1], choice) == 0)) {
+            return low - 1;
+        }
+
+        return -low - 1;
+    }
+
     /** @see  PopupComponent#selectBestMatch(Object) */
     public ChoiceMatch getBestMatch(Object hint) {
         String str = null;
@@ -194,16 +427,15 @@ public class ChoicesListModel extends AbstractListModel
         }
         Choice choice = new Choice(hint, str);
         ChoiceMatch ret = new ChoiceMatch();
-        Choice match = (hint == null) ? null : content.floor(choice);
-        if ((match != null) && match.equals(choice)) {
-            flatContent(); // ensure that the positions are calculated
-            ret.content = match.get(renderedContent);
-            ret.index = match.idx;
+        int pos = (hint == null) ? -1 : find(choice);
+        if ((pos >= 0) && content[pos].equals(choice)) {
+            ret.content = content[pos].get(renderedContent);
+            ret.index = pos;
             ret.exact = true;
         } else if (!renderedContent) {
-            TreeSet<Choice> alphaContent = getAlphabeticallySortedContent();
-            Choice top = alphaContent.ceiling(choice);
-            Choice low = alphaContent.floor(choice);
+            sortAlphabetically();
+            Choice top = ceiling(choice.str);
+            Choice low = floor(choice.str);
             int clen = (top == null)
                 ? -1
                 : ChoiceMatch.getMatchingLength(top.str, choice.str,
@@ -212,7 +444,7 @@ public class ChoicesListModel extends AbstractListModel
                 ? -1
                 : ChoiceMatch.getMatchingLength(low.str, choice.str,
                     strComparator);
-            match = (clen > flen) ? top : low;
+            Choice match = (clen > flen) ? top : low;
             ret.index = match.idx;
             ret.content = match.get(renderedContent);
             ret.len = Math.max(clen, flen);
@@ -233,12 +465,29 @@ public class ChoicesListModel extends AbstractListModel
         int minLen = base.length();
         int maxLen = Integer.MAX_VALUE;
         String ret = null;
-        Iterator<Choice> it = getAlphabeticallySortedContent().tailSet(
-                new Choice(base, base), true)
-                .iterator();
+        sortAlphabetically();
+        // the choices starting with the base are consecutive, on both
+        // alphabetically sorted arrays
+        int i = lowerBound(alphaContent, alphaStart, alphaEnd, base);
+        int j = lowerBound(alphaCustoms, 0, alphaCustoms.length, base);
+        boolean sorted = true;
         Iterator its = unsortedList.iterator();
-        while ((maxLen > minLen) && (it.hasNext() || its.hasNext())) {
-            String s = it.hasNext() ? it.next().str : its.next().toString();
+        while (maxLen > minLen) {
+            String s;
+            if (sorted && (i < alphaEnd)
+                    && ((j == alphaCustoms.length)
+                        || (strComparator.compare(alphaContent[i].str,
+                                alphaCustoms[j].str) <= 0))) {
+                s = alphaContent[i++].str;
+            } else if (sorted && (j < alphaCustoms.length)) {
+                s = alphaCustoms[j++].str;
+            } else if (its.hasNext()) {
+                sorted = false;
+                s = its.next().toString();
+            } else {
+                break;
+            }
+
             int match = ChoiceMatch.getMatchingLength(base, s, strComparator);
             if (match == minLen) {
                 if (ret == null) {
@@ -249,35 +498,127 @@ public class ChoicesListModel extends AbstractListModel
                             ChoiceMatch.getMatchingLength(ret, s,
                                 strComparator));
                 }
+            } else {
+                sorted = false;
             }
         }
 
         return (ret == null) ? "" : ret.substring(minLen, maxLen);
     }
 
-    private TreeSet<Choice> getAlphabeticallySortedContent() {
-        if (alphaSortedContent == null) {
-            flatContent(); // ensure we have the positions on the Choices
-            alphaSortedContent = new TreeSet<Choice>(new ChoiceTextComparator(
-                        strComparator));
-            alphaSortedContent.addAll(content);
+    /**
+     * Returns the first choice, alphabetically, not lower than the given
+     * text, or null if there is none.
+     */
+    private Choice ceiling(String text) {
+        int i = lowerBound(alphaContent, alphaStart, alphaEnd, text);
+        int j = lowerBound(alphaCustoms, 0, alphaCustoms.length, text);
+        Choice ret = (i < alphaEnd) ? getAlphabetically(i) : null;
+        if ((j < alphaCustoms.length)
+                && ((ret == null)
+                    || (strComparator.compare(alphaCustoms[j].str, ret.str)
+                        <= 0))) {
+            ret = alphaCustoms[j];
         }
 
-        return alphaSortedContent;
+        return ret;
     }
 
-    private Object[] flatContent() {
-        if (flatContent == null) {
-            int i = size;
-            flatContent = new Object[size];
+    /**
+     * Returns the last choice, alphabetically, not greater than the given
+     * text, or null if there is none.
+     */
+    private Choice floor(String text) {
+        int pos = floor(alphaContent, alphaStart, alphaEnd, text);
+        Choice ret = (pos < 0) ? null : getAlphabetically(pos);
+        pos = floor(alphaCustoms, 0, alphaCustoms.length, text);
+        Choice custom = (pos < 0) ? null : alphaCustoms[pos];
+        if ((custom != null)
+                && ((ret == null)
+                    || (strComparator.compare(custom.str, ret.str) >= 0))) {
+            ret = custom;
+        }
+
+        return ret;
+    }
 
-            Iterator<Choice> it = content.descendingIterator();
-            while (i-- > 0) {
-                flatContent[i] = it.next().index(i).get(renderedContent);
+    /**
+     * Returns the position of the last choice on the alphabetically sorted
+     * range not greater than the given text -if several have that text, the
+     * first one-, or -1 if none.
+     */
+    private int floor(Choice sorted[], int from, int to, String text) {
+        int pos = lowerBound(sorted, from, to, text);
+        if ((pos < to) && (strComparator.compare(sorted[pos].str, text) == 0)) {
+            return pos;
+        }
+
+        return (pos > from) ? (pos - 1) : -1;
+    }
+
+    /**
+     * Returns the choice at the given alphabetical position, ensuring that
+     * its position on the content is known.
+     */
+    private Choice getAlphabetically(int pos) {
+        Choice ret = alphaContent[pos];
+        if (alphaContent == content) {
+            ret.idx = pos;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the position of the first choice on the alphabetically sorted
+     * range not lower than the given text, or the range end if none.
+     */
+    private int lowerBound(Choice sorted[], int from, int to, String text) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (strComparator.compare(sorted[mid].str, text) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
 
-        return flatContent;
+        return low;
+    }
+
+    /** Ensures that the alphabetical order of the choices is available. */
+    private void sortAlphabetically() {
+        if (alphaContent == null) {
+            Comparator<Choice> alphabetical = new ChoiceTextComparator(
+                    strComparator);
+            if (contentComparator == null) {
+                // the content is already sorted, but for the custom choices
+                int customs = 0;
+                while ((customs < size)
+                        && (content[customs].o instanceof CustomChoice)) {
+                    content[customs].idx = customs;
+                    customs++;
+                }
+
+                alphaCustoms = Arrays.copyOf(content, customs);
+                Arrays.sort(alphaCustoms, alphabetical);
+                alphaContent = content;
+                alphaStart = customs;
+            } else {
+                for (int i = 0; i < size; i++) {
+                    content[i].idx = i;
+                }
+
+                alphaCustoms = new Choice[0];
+                alphaContent = Arrays.copyOf(content, size);
+                Arrays.sort(alphaContent, alphabetical);
+                alphaStart = 0;
+            }
+
+            alphaEnd = size;
+        }
     }
 
     private boolean updateComparators(Comparator choicesComparator,
@@ -330,6 +671,22 @@ public class ChoicesListModel extends AbstractListModel
         return sdiff==0 || diff==0? sdiff : diff;
     }
 
+    /**
+     * Order of the choices on the content: the order of {@link
+     * #compare(Choice, Choice)}, but sorting on the choices comparator those
+     * sharing the representation.
+     */
+    private int order(Choice w1, Choice w2) {
+        int ret = compare(w1, w2);
+        if ((ret == 0) && (contentComparator != null) && !renderedContent
+                && !(w1.o instanceof CustomChoice)
+                && !(w2.o instanceof CustomChoice)) {
+            ret = contentComparator.compare(w1.o, w2.o);
+        }
+
+        return ret;
+    }
+
     /**
      * Instances in the model are wrapped as Choice objects, with added
      * information on the stringfied representation of the object -null if the
@@ -340,6 +697,8 @@ public class ChoicesListModel extends AbstractListModel
         public Object o;
         public String str;
         public int idx;
+        /** Number of times this choice has been added. */
+        int refs = 1;
 
         public Choice(Object content, String repr) {
             this.o = content;
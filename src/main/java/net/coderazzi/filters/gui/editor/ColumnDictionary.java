@@ -0,0 +1,629 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.RowFilter;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.IParser;
+
+
+/**
+ * Dictionary encoding of the values on a column: each distinct value is
+ * stored once, and each row keeps just the code of its value.<br>
+ * Filters depending only on the column's value (see {@link
+ * IParser.ValueFilter}) are then evaluated once per distinct value, and the
+ * outcome is shared by all the rows with the same code.<br>
+ * The dictionary can also keep an inverted index, with the rows holding each
+ * code: the rows included by a filter are then found from the rows of the
+ * included values, and the distinct values on the column are known without
+ * reading the model, providing the choices of the editor.<br>
+ * The dictionary is updated on the event dispatch thread, following the
+ * table model events, while filters can be evaluated on other threads: these
+ * evaluations read always consistent arrays, although a row could be checked
+ * against its previous value if the model is updated concurrently, as it
+ * would happen if the model were read directly. The rows found with the
+ * inverted index are invalidated by each update, and any search overlapping
+ * an update is discarded.
+ */
+final class ColumnDictionary {
+
+    /** Minimum number of distinct values allowed on any dictionary. */
+    private static final int MIN_VALUES = 256;
+
+    /**
+     * Number of rows inserted or updated above which the inverted index is
+     * built again, instead of moving each row.
+     */
+    private static final int MAX_MOVES = 64;
+
+    /** The encoded model. */
+    private TableModel model;
+
+    /** The model position of the encoded column. */
+    private int column;
+
+    /** Set if the inverted index is kept. */
+    private boolean inverted;
+
+    /** The code of the value on each row. */
+    private volatile int codes[];
+
+    /** The number of rows. */
+    private volatile int rows;
+
+    /** The distinct values, indexed by code. */
+    private volatile Object values[];
+
+    /** The number of distinct values. */
+    private int size;
+
+    /** The code associated to each value. */
+    private Map<Object, Integer> index = new HashMap<Object, Integer>();
+
+    /** The filter outcomes for each code, for the last evaluated filter. */
+    private volatile Outcome outcome;
+
+    /** The rows holding each code, ascending, if inverted. */
+    private int postings[][];
+
+    /** The number of rows holding each code, if inverted. */
+    private int counts[];
+
+    /** Incremented before and after each update: odd while updating. */
+    private volatile int updates;
+
+    /** The rows included by the last selected filter, if inverted. */
+    private volatile Selection selection;
+
+    /** The values found on the model since the last publication. */
+    private Set<Object> added = new HashSet<Object>();
+
+    /** The values no longer on the model since the last publication. */
+    private Set<Object> removed = new HashSet<Object>();
+
+    private ColumnDictionary(TableModel model, int column, boolean inverted) {
+        this.model = model;
+        this.column = column;
+        this.inverted = inverted;
+    }
+
+    /**
+     * Creates the dictionary for the given column, returning null if the
+     * column has too many distinct values to benefit from the encoding.
+     *
+     * @param  inverted  set to keep the inverted index
+     */
+    static ColumnDictionary create(TableModel model,
+                                   int        column,
+                                   boolean    inverted) {
+        ColumnDictionary ret = new ColumnDictionary(model, column, inverted);
+
+        return ret.build() ? ret : null;
+    }
+
+    /** Returns true if the inverted index is kept. */
+    boolean isInverted() {
+        return inverted;
+    }
+
+    /**
+     * Evaluates the filter on the entry, using the outcome for its value if
+     * already known.
+     *
+     * @return  1 if the filter includes the entry, 0 if not, and -1 if the
+     *          entry is not covered by this dictionary
+     */
+    int include(RowFilter filter, RowFilter.Entry entry) {
+        Object id = entry.getIdentifier();
+        if (!(id instanceof Integer) || (entry.getModel() != model)) {
+            return -1;
+        }
+
+        int row = (Integer) id;
+        if (inverted && (row >= 0)) {
+            Selection s = selection;
+            if ((s == null) || (s.filter != filter)
+                    || (s.updates != updates)) {
+                s = select(filter, entry);
+            }
+
+            long included[] = s.included;
+            if ((included != null) && (row < s.rows)) {
+                return ((included[row >> 6] & (1L << row)) != 0) ? 1 : 0;
+            }
+        }
+
+        int c[] = codes;
+        if ((row < 0) || (row >= rows) || (row >= c.length)) {
+            return -1;
+        }
+
+        int code = c[row];
+        Object v[] = values;
+        if (code >= v.length) {
+            return -1;
+        }
+
+        Outcome o = outcome;
+        if ((o == null) || (o.filter != filter)) {
+            o = new Outcome(filter, v.length);
+            outcome = o;
+        }
+
+        byte results[] = o.results;
+        if (code >= results.length) {
+            results = Arrays.copyOf(results, v.length);
+            o.results = results;
+        }
+
+        byte result = results[code];
+        if (result == 0) {
+            result = filter.include(new ValueEntry(entry, column, v[code]))
+                ? Outcome.INCLUDED : Outcome.EXCLUDED;
+            results[code] = result;
+        }
+
+        return (result == Outcome.INCLUDED) ? 1 : 0;
+    }
+
+    /**
+     * Returns the distinct values on the column, if inverted; from this
+     * moment, the changes on these values are tracked, to be published with
+     * {@link #publish(FilterEditor)}.
+     */
+    Set<Object> getValues() {
+        added.clear();
+        removed.clear();
+
+        return getCurrentValues();
+    }
+
+    /** Updates the editor' choices, if the distinct values have changed. */
+    void publish(FilterEditor editor) {
+        if (!removed.isEmpty()) {
+            editor.removeChoices(removed);
+            removed.clear();
+        }
+
+        if (!added.isEmpty()) {
+            editor.addChoices(added);
+            added.clear();
+        }
+    }
+
+    /**
+     * Updates the dictionary after a table model event.
+     *
+     * @return  false if the dictionary could not be updated, and must be
+     *          discarded
+     */
+    boolean update(int eventType, int firstRow, int lastRow) {
+        int count = model.getRowCount();
+        if (firstRow > rows) {
+            return false;
+        }
+
+        updates++;
+        try {
+            if (eventType == TableModelEvent.INSERT) {
+                lastRow = Math.min(lastRow, count - 1);
+                if (lastRow < firstRow) {
+                    return false;
+                }
+
+                insert(firstRow, lastRow);
+            } else if (eventType == TableModelEvent.DELETE) {
+                delete(firstRow, Math.min(lastRow, rows - 1));
+            } else if (lastRow < rows) {
+                encode(firstRow, lastRow, true);
+            } else {
+                // an update can signal that all cells have changed
+                return build();
+            }
+        } catch (IllegalStateException ise) {
+            // too many distinct values, perhaps due to values no longer in
+            // the model: the dictionary is then created again
+            return build();
+        } finally {
+            updates++;
+        }
+
+        return rows == count;
+    }
+
+    /** Encodes again the whole column. */
+    private boolean build() {
+        Set<Object> before = (postings == null) ? null : getCurrentValues();
+        index.clear();
+        size = 0;
+        values = new Object[16];
+        outcome = null;
+        postings = null;
+        counts = null;
+        rows = model.getRowCount();
+        codes = new int[rows + 16];
+        try {
+            encode(0, rows - 1, false);
+        } catch (IllegalStateException ise) {
+            return false;
+        }
+
+        if (inverted) {
+            invert();
+            if (before != null) {
+                for (int code = 0; code < size; code++) {
+                    if ((counts[code] > 0) && !before.remove(values[code])) {
+                        found(values[code]);
+                    }
+                }
+
+                for (Object value : before) {
+                    lost(value);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /** Builds the inverted index from the codes. */
+    private void invert() {
+        int n = values.length;
+        int k[] = new int[n];
+        int c[] = codes;
+        for (int row = 0; row < rows; row++) {
+            k[c[row]]++;
+        }
+
+        int p[][] = new int[n][];
+        for (int code = 0; code < size; code++) {
+            p[code] = new int[k[code]];
+            k[code] = 0;
+        }
+
+        for (int row = 0; row < rows; row++) {
+            int code = c[row];
+            p[code][k[code]++] = row;
+        }
+
+        postings = p;
+        counts = k;
+    }
+
+    /** Handles a table model event after some rows are added. */
+    private void insert(int firstRow, int lastRow) {
+        int inserted = lastRow - firstRow + 1;
+        int c[] = codes;
+        if (rows + inserted > c.length) {
+            c = Arrays.copyOf(c, Math.max(rows + inserted, rows + (rows >> 1)));
+        }
+
+        System.arraycopy(c, firstRow, c, lastRow + 1, rows - firstRow);
+        codes = c;
+        if ((postings != null) && (firstRow < rows)) {
+            for (int code = 0; code < size; code++) {
+                int p[] = postings[code];
+                int n = counts[code];
+                for (int i = search(p, n, firstRow); i < n; i++) {
+                    p[i] += inserted;
+                }
+            }
+        }
+
+        rows += inserted;
+        encode(firstRow, lastRow, false);
+    }
+
+    /** Handles a table model event after some rows are deleted. */
+    private void delete(int firstRow, int lastRow) {
+        int c[] = codes;
+        int deleted = lastRow - firstRow + 1;
+        System.arraycopy(c, lastRow + 1, c, firstRow, rows - lastRow - 1);
+        rows -= deleted;
+        if (postings != null) {
+            for (int code = 0; code < size; code++) {
+                int p[] = postings[code];
+                int n = counts[code];
+                int from = search(p, n, firstRow);
+                int to = search(p, n, lastRow + 1);
+                System.arraycopy(p, to, p, from, n - to);
+                n -= to - from;
+                for (int i = from; i < n; i++) {
+                    p[i] -= deleted;
+                }
+
+                counts[code] = n;
+                if ((n == 0) && (to > from)) {
+                    lost(values[code]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the codes for the given rows.
+     *
+     * @param   replace  set if the rows had already a code
+     *
+     * @throws  IllegalStateException  if the dictionary grows too big
+     */
+    private void encode(int firstRow, int lastRow, boolean replace) {
+        int c[] = codes;
+        int max = getMaxValues();
+        boolean move = (postings != null)
+            && (lastRow - firstRow < MAX_MOVES);
+        int before[] = ((postings == null) || move) ? null : counts.clone();
+        for (int row = firstRow; row <= lastRow; row++) {
+            Object value = model.getValueAt(row, column);
+            Integer code = index.get(value);
+            if (code == null) {
+                if (size == max) {
+                    throw new IllegalStateException();
+                }
+
+                Object v[] = values;
+                if (size == v.length) {
+                    v = Arrays.copyOf(v, size << 1);
+                    if (postings != null) {
+                        postings = Arrays.copyOf(postings, v.length);
+                        counts = Arrays.copyOf(counts, v.length);
+                    }
+                }
+
+                v[size] = value;
+                values = v;
+                code = size++;
+                index.put(value, code);
+                if (postings != null) {
+                    postings[code] = new int[4];
+                }
+            }
+
+            if (move) {
+                if (!replace) {
+                    add(code, row);
+                } else if (c[row] != code) {
+                    remove(c[row], row);
+                    add(code, row);
+                }
+            }
+
+            c[row] = code;
+        }
+
+        if (before != null) {
+            invert();
+            for (int code = 0; code < size; code++) {
+                boolean was = (code < before.length) && (before[code] > 0);
+                if (was != (counts[code] > 0)) {
+                    if (was) {
+                        lost(values[code]);
+                    } else {
+                        found(values[code]);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Adds a row to the inverted index. */
+    private void add(int code, int row) {
+        int p[] = postings[code];
+        int n = counts[code];
+        int at = ((n == 0) || (p[n - 1] < row)) ? n : search(p, n, row);
+        if (n == p.length) {
+            p = Arrays.copyOf(p, n + (n >> 1) + 4);
+            postings[code] = p;
+        }
+
+        System.arraycopy(p, at, p, at + 1, n - at);
+        p[at] = row;
+        counts[code] = n + 1;
+        if (n == 0) {
+            found(values[code]);
+        }
+    }
+
+    /** Removes a row from the inverted index. */
+    private void remove(int code, int row) {
+        int p[] = postings[code];
+        int n = counts[code] - 1;
+        int at = search(p, n + 1, row);
+        System.arraycopy(p, at + 1, p, at, n - at);
+        counts[code] = n;
+        if (n == 0) {
+            lost(values[code]);
+        }
+    }
+
+    /** Finds the rows included by the filter, on the current values. */
+    private synchronized Selection select(RowFilter       filter,
+                                          RowFilter.Entry entry) {
+        int u = updates;
+        Selection s = selection;
+        if ((s != null) && (s.filter == filter) && (s.updates == u)) {
+            return s;
+        }
+
+        int r = rows;
+        long included[] = null;
+        if ((u & 1) == 0) {
+            try {
+                Object v[] = values;
+                int p[][] = postings;
+                int k[] = counts;
+                int n = Math.min(size, v.length);
+                included = new long[(r + 63) >> 6];
+                for (int code = 0; code < n; code++) {
+                    int count = k[code];
+                    if ((count > 0)
+                            && filter.include(
+                                new ValueEntry(entry, column, v[code]))) {
+                        int rs[] = p[code];
+                        for (int i = 0; i < count; i++) {
+                            int row = rs[i];
+                            included[row >> 6] |= 1L << row;
+                        }
+                    }
+                }
+            } catch (RuntimeException rex) {
+                // the dictionary was updated meanwhile, or the filter fails,
+                // and will fail again if evaluated per value
+                included = null;
+            }
+
+            if (updates != u) {
+                included = null;
+            }
+        }
+
+        s = new Selection(filter, u, r, included);
+        selection = s;
+
+        return s;
+    }
+
+    /** Returns the values currently on the column, if inverted. */
+    private Set<Object> getCurrentValues() {
+        Set<Object> ret = new HashSet<Object>();
+        for (int code = 0; code < size; code++) {
+            if (counts[code] > 0) {
+                ret.add(values[code]);
+            }
+        }
+
+        return ret;
+    }
+
+    /** Reports a value found again on the model. */
+    private void found(Object value) {
+        if (!removed.remove(value)) {
+            added.add(value);
+        }
+    }
+
+    /** Reports a value no longer on the model. */
+    private void lost(Object value) {
+        if (!added.remove(value)) {
+            removed.add(value);
+        }
+    }
+
+    /** Returns the maximum number of distinct values for the encoding. */
+    private int getMaxValues() {
+        return Math.max(MIN_VALUES, rows >> 3);
+    }
+
+    /**
+     * Returns the position of the first row, on the given ascending rows,
+     * that is not below the given one.
+     */
+    private static int search(int rows[], int size, int row) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows[mid] < row) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+
+    /** The outcome of a filter for each distinct value. */
+    private static final class Outcome {
+        static final byte INCLUDED = 1;
+        static final byte EXCLUDED = 2;
+
+        final RowFilter filter;
+        volatile byte results[];
+
+        Outcome(RowFilter filter, int size) {
+            this.filter = filter;
+            this.results = new byte[size];
+        }
+    }
+
+
+    /** The rows included by a filter, found with the inverted index. */
+    private static final class Selection {
+        final RowFilter filter;
+        final int updates;
+        final int rows;
+        // null if the rows could not be found
+        final long included[];
+
+        Selection(RowFilter filter, int updates, int rows, long included[]) {
+            this.filter = filter;
+            this.updates = updates;
+            this.rows = rows;
+            this.included = included;
+        }
+    }
+
+
+
+    /** Entry exposing a dictionary value for the encoded column. */
+    private static final class ValueEntry extends RowFilter.Entry {
+        private RowFilter.Entry entry;
+        private int column;
+        private Object value;
+
+        ValueEntry(RowFilter.Entry entry, int column, Object value) {
+            this.entry = entry;
+            this.column = column;
+            this.value = value;
+        }
+
+        @Override public Object getModel() {
+            return entry.getModel();
+        }
+
+        @Override public int getValueCount() {
+            return entry.getValueCount();
+        }
+
+        @Override public Object getValue(int index) {
+            return (index == column) ? value : entry.getValue(index);
+        }
+
+        @Override public Object getIdentifier() {
+            return entry.getIdentifier();
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.coderazzi.filters.gui.editor;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import javax.swing.RowFilter;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.IParser;
+
+
+/**
+ * Sorted index of the values on a column: the rows are kept sorted by their
+ * values, so that the filters including a contiguous run of values (see
+ * {@link IParser.OrderedFilter}) are resolved by binary search, instead of
+ * being evaluated on each row.<br>
+ * Only the values with the class of the first non null value are indexed;
+ * the rows with null values, or values of other classes, are evaluated as
+ * usual.<br>
+ * The index is updated on the event dispatch thread, following the table
+ * model events, while filters can be evaluated on other threads: each update
+ * invalidates the rows found for the current filter, and any search
+ * overlapping an update is discarded, the filter being then evaluated on
+ * each row.
+ */
+final class ColumnIndex {
+
+    /** Length of the runs sorted by insertion, before merging them. */
+    private static final int RUN = 32;
+
+    /** The indexed model. */
+    private TableModel model;
+
+    /** The model position of the indexed column. */
+    private int column;
+
+    /** The comparator sorting the values. */
+    private Comparator comparator;
+
+    /** The class of the indexed values, null until a value is found. */
+    private volatile Class<?> type;
+
+    /** The indexed values, sorted. */
+    private volatile Object values[];
+
+    /** The row of each indexed value. */
+    private volatile int sorted[];
+
+    /** The number of indexed values. */
+    private volatile int size;
+
+    /** The rows not indexed, in ascending order. */
+    private int others[];
+
+    /** The number of rows not indexed. */
+    private int rest;
+
+    /** The number of rows covered. */
+    private volatile int rows;
+
+    /** Incremented before and after each update: odd while updating. */
+    private volatile int updates;
+
+    /** The rows included by the last evaluated filter. */
+    private volatile Selection selection;
+
+    private ColumnIndex(TableModel model, int column, Comparator comparator) {
+        this.model = model;
+        this.column = column;
+        this.comparator = comparator;
+    }
+
+    /** Creates the index for the given column, sorted with the comparator. */
+    static ColumnIndex create(TableModel model,
+                              int        column,
+                              Comparator comparator) {
+        ColumnIndex ret = new ColumnIndex(model, column, comparator);
+        ret.build();
+
+        return ret;
+    }
+
+    /**
+     * Evaluates the filter on the entry, finding first the rows it includes,
+     * if not yet known.
+     *
+     * @return  1 if the filter includes the entry, 0 if not, and -1 if the
+     *          entry is not covered by this index
+     */
+    int include(IParser.OrderedFilter filter, RowFilter.Entry entry) {
+        Object id = entry.getIdentifier();
+        if (!(id instanceof Integer) || (entry.getModel() != model)) {
+            return -1;
+        }
+
+        Selection s = selection;
+        if ((s == null) || (s.filter != filter) || (s.updates != updates)) {
+            s = select(filter);
+        }
+
+        int row = (Integer) id;
+        long included[] = s.included;
+        if ((included == null) || (row < 0) || (row >= s.rows)) {
+            return -1;
+        }
+
+        int word = row >> 6;
+        long bit = 1L << row;
+        if ((s.others != null) && ((s.others[word] & bit) != 0)) {
+            return -1;
+        }
+
+        return ((included[word] & bit) != 0) ? 1 : 0;
+    }
+
+    /**
+     * Updates the index after a table model event.
+     *
+     * @return  false if the index could not be updated, and must be
+     *          discarded
+     */
+    boolean update(int eventType, int firstRow, int lastRow) {
+        int count = model.getRowCount();
+        if (firstRow > rows) {
+            return false;
+        }
+
+        if ((type == null)
+                || ((eventType == TableModelEvent.UPDATE) && (lastRow >= rows))) {
+            // nothing indexed yet, or all cells could have changed
+            build();
+
+            return true;
+        }
+
+        if (eventType == TableModelEvent.INSERT) {
+            lastRow = Math.min(lastRow, count - 1);
+            if (lastRow < firstRow) {
+                return false;
+            }
+        } else if (eventType == TableModelEvent.DELETE) {
+            lastRow = Math.min(lastRow, rows - 1);
+        }
+
+        updates++;
+        try {
+            int changed = lastRow - firstRow + 1;
+            if (eventType == TableModelEvent.INSERT) {
+                remove(firstRow, firstRow - 1, changed);
+                rows += changed;
+                insert(read(firstRow, lastRow));
+            } else if (eventType == TableModelEvent.DELETE) {
+                remove(firstRow, lastRow, -changed);
+                rows -= changed;
+            } else {
+                remove(firstRow, lastRow, 0);
+                insert(read(firstRow, lastRow));
+            }
+        } finally {
+            updates++;
+        }
+
+        return rows == count;
+    }
+
+    /** Indexes again the whole column. */
+    private void build() {
+        updates++;
+        try {
+            type = null;
+            rows = model.getRowCount();
+
+            Batch batch = read(0, rows - 1);
+            values = batch.values;
+            sorted = batch.sorted;
+            size = batch.values.length;
+            others = batch.others;
+            rest = batch.others.length;
+        } finally {
+            updates++;
+        }
+    }
+
+    /** Finds the rows included by the filter, on the current values. */
+    private synchronized Selection select(IParser.OrderedFilter filter) {
+        int u = updates;
+        Selection s = selection;
+        if ((s != null) && (s.filter == filter) && (s.updates == u)) {
+            return s;
+        }
+
+        int r = rows;
+        long included[] = null;
+        long excluded[] = null;
+        Class<?> t = type;
+        if (((u & 1) == 0) && (t != null) && filter.isOrdered(t, comparator)) {
+            try {
+                Object v[] = values;
+                int n = Math.min(size, v.length);
+                int to = search(v, n, filter, 1);
+                int sr[] = sorted;
+                included = new long[(r + 63) >> 6];
+                for (int i = search(v, n, filter, 0); i < to; i++) {
+                    int row = sr[i];
+                    included[row >> 6] |= 1L << row;
+                }
+
+                if (rest > 0) {
+                    excluded = new long[included.length];
+                    for (int i = 0; i < rest; i++) {
+                        int row = others[i];
+                        excluded[row >> 6] |= 1L << row;
+                    }
+                }
+            } catch (RuntimeException rex) {
+                // the index was updated meanwhile
+                included = null;
+            }
+
+            if (updates != u) {
+                included = null;
+            }
+        }
+
+        s = new Selection(filter, u, r, included, excluded);
+        selection = s;
+
+        return s;
+    }
+
+    /**
+     * Returns the position of the first value whose location, respect to
+     * the values included by the filter, is not below the given one.
+     */
+    private static int search(Object                values[],
+                              int                   size,
+                              IParser.OrderedFilter filter,
+                              int                   location) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (filter.locate(values[mid]) < location) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /** Reads and sorts the values on the given rows. */
+    private Batch read(int firstRow, int lastRow) {
+        int n = Math.max(0, lastRow - firstRow + 1);
+        Object v[] = new Object[n];
+        int s[] = new int[n];
+        int o[] = new int[n];
+        int indexed = 0;
+        int other = 0;
+        Class<?> t = type;
+        for (int row = firstRow; row <= lastRow; row++) {
+            Object value = model.getValueAt(row, column);
+            if ((value != null) && (t == null)) {
+                t = value.getClass();
+                type = t;
+            }
+
+            if ((value != null) && (value.getClass() == t)) {
+                v[indexed] = value;
+                s[indexed++] = row;
+            } else {
+                o[other++] = row;
+            }
+        }
+
+        if (indexed < n) {
+            v = Arrays.copyOf(v, indexed);
+            s = Arrays.copyOf(s, indexed);
+        }
+
+        sort(v, s);
+
+        return new Batch(v, s, Arrays.copyOf(o, other));
+    }
+
+    /** Removes the given rows, shifting the rows after them. */
+    private void remove(int firstRow, int lastRow, int shift) {
+        Object v[] = values;
+        int s[] = sorted;
+        int n = 0;
+        int start = 0;
+        for (int i = 0; i <= size; i++) {
+            if ((i == size) || ((s[i] >= firstRow) && (s[i] <= lastRow))) {
+                // moves the run of rows kept before this one
+                if (n != start) {
+                    System.arraycopy(v, start, v, n, i - start);
+                    System.arraycopy(s, start, s, n, i - start);
+                }
+
+                n += i - start;
+                start = i + 1;
+            }
+        }
+
+        Arrays.fill(v, n, size, null);
+        size = n;
+        if (shift != 0) {
+            for (int i = 0; i < n; i++) {
+                if (s[i] > lastRow) {
+                    s[i] += shift;
+                }
+            }
+        }
+
+        n = 0;
+        for (int i = 0; i < rest; i++) {
+            int row = others[i];
+            if (row > lastRow) {
+                others[n++] = row + shift;
+            } else if (row < firstRow) {
+                others[n++] = row;
+            }
+        }
+
+        rest = n;
+    }
+
+    /**
+     * Inserts the rows read after an update: each read value is placed after
+     * the equal values already indexed.
+     */
+    private void insert(Batch batch) {
+        int added = batch.values.length;
+        Object v[] = values;
+        int s[] = sorted;
+        if (size + added > v.length) {
+            int capacity = Math.max(size + added, size + (size >> 1));
+            v = Arrays.copyOf(v, capacity);
+            s = Arrays.copyOf(s, capacity);
+        }
+
+        // merged from the end, so each block of values is moved only once
+        int end = size;
+        int k = size + added;
+        for (int j = added - 1; j >= 0; j--) {
+            Object value = batch.values[j];
+            int low = 0;
+            int high = end;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(v[mid], value) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            k -= end - low;
+            System.arraycopy(v, low, v, k, end - low);
+            System.arraycopy(s, low, s, k, end - low);
+            v[--k] = value;
+            s[k] = batch.sorted[j];
+            end = low;
+        }
+
+        values = v;
+        sorted = s;
+        size += added;
+
+        int o[] = batch.others;
+        if (o.length > 0) {
+            int merged[] = new int[rest + o.length];
+            int i = 0;
+            int j = 0;
+            for (k = 0; k < merged.length; k++) {
+                if ((j == o.length) || ((i < rest) && (others[i] < o[j]))) {
+                    merged[k] = others[i++];
+                } else {
+                    merged[k] = o[j++];
+                }
+            }
+
+            others = merged;
+            rest = merged.length;
+        }
+    }
+
+    /**
+     * Sorts the values, and their rows, with a merge sort of runs sorted by
+     * insertion.
+     */
+    private void sort(Object values[], int rows[]) {
+        int n = values.length;
+        for (int low = 0; low < n; low += RUN) {
+            int high = Math.min(low + RUN, n);
+            for (int i = low + 1; i < high; i++) {
+                Object value = values[i];
+                int row = rows[i];
+                int j = i;
+                for (; (j > low) && (comparator.compare(values[j - 1], value)
+                            > 0); j--) {
+                    values[j] = values[j - 1];
+                    rows[j] = rows[j - 1];
+                }
+
+                values[j] = value;
+                rows[j] = row;
+            }
+        }
+
+        Object v[] = values;
+        int r[] = rows;
+        Object tv[] = new Object[n];
+        int tr[] = new int[n];
+        for (int width = RUN; width < n; width <<= 1) {
+            for (int low = 0; low < n; low += width << 1) {
+                int mid = Math.min(low + width, n);
+                int high = Math.min(mid + width, n);
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    if ((j == high)
+                            || ((i < mid)
+                                && (comparator.compare(v[i], v[j]) <= 0))) {
+                        tv[k] = v[i];
+                        tr[k] = r[i++];
+                    } else {
+                        tv[k] = v[j];
+                        tr[k] = r[j++];
+                    }
+                }
+            }
+
+            Object sv[] = v;
+            v = tv;
+            tv = sv;
+
+            int sr[] = r;
+            r = tr;
+            tr = sr;
+        }
+
+        if (v != values) {
+            System.arraycopy(v, 0, values, 0, n);
+            System.arraycopy(r, 0, rows, 0, n);
+        }
+    }
+
+
+    /** Values read from the model, sorted, and the rows not indexed. */
+    private static final class Batch {
+        final Object values[];
+        final int sorted[];
+        final int others[];
+
+        Batch(Object values[], int sorted[], int others[]) {
+            this.values = values;
+            this.sorted = sorted;
+            this.others = others;
+        }
+    }
+
+
+    /** The rows included by a filter, between two updates. */
+    private static final class Selection {
+
+        final IParser.OrderedFilter filter;
+        final int updates;
+        final int rows;
+
+        /** The included rows, or null if not found. */
+        final long included[];
+
+        /** The rows not indexed, or null if there are none. */
+        final long others[];
+
+        Selection(IParser.OrderedFilter filter,
+                  int                   updates,
+                  int                   rows,
+                  long                  included[],
+                  long                  others[]) {
+            this.filter = filter;
+            this.updates = updates;
+            this.rows = rows;
+            this.included = included;
+            this.others = others;
+        }
+    }
+}
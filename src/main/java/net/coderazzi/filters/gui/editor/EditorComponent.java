@@ -28,8 +28,11 @@ package net.coderazzi.filters.gui.editor;
 import java.awt.AWTEvent;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Cursor;
 import java.awt.EventQueue;
 import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -41,6 +44,7 @@ import java.util.regex.Pattern;
 import javax.swing.CellRendererPane;
 import javax.swing.JTextField;
 import javax.swing.RowFilter;
+import javax.swing.Timer;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
 import javax.swing.plaf.TextUI;
@@ -71,8 +75,10 @@ class EditorComponent extends JTextField {
     private Controller controller;
     private boolean focus;
     boolean instantFiltering;
+    int instantFilteringDelay;
     boolean autoCompletion;
     boolean warning;
+    Cursor idleCursor;
     FilterEditor filterEditor;
     PopupComponent popup;
     static final Pattern newLinePattern = Pattern.compile("[\n\r\t\f]");
@@ -157,6 +163,16 @@ class EditorComponent extends JTextField {
         return instantFiltering;
     }
 
+    /** Sets the delay, in milliseconds, to apply the instant filtering. */
+    public void setInstantFilteringDelay(int delay) {
+        this.instantFilteringDelay = delay;
+    }
+
+    /** Returns the delay, in milliseconds, to apply the instant filtering. */
+    public int getInstantFilteringDelay() {
+        return instantFilteringDelay;
+    }
+
     /** Sets the auto completion flag. */
     public void setAutoCompletion(boolean enable) {
         this.autoCompletion = enable;
@@ -238,6 +254,24 @@ class EditorComponent extends JTextField {
         }
     }
 
+    /** Reports that the filter is being applied (busy state). */
+    public void setFiltering(boolean filtering) {
+        if (filtering != (idleCursor != null)) {
+            if (filtering) {
+                idleCursor = getCursor();
+                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            } else {
+                setCursor(idleCursor);
+                idleCursor = null;
+            }
+        }
+    }
+
+    /** Returns true if the filter is being applied (busy state). */
+    public boolean isFiltering() {
+        return idleCursor != null;
+    }
+
     /** Returns true if the focus is on this editor. */
     public boolean isFocused() {
         return focus;
@@ -338,16 +372,8 @@ class EditorComponent extends JTextField {
                 if (cache instanceof CustomChoice) {
                     filter = ((CustomChoice) cache).getFilter(filterEditor);
                 } else {
-                    filter = new RowFilter() {
-                        @Override public boolean include(
-                                RowFilter.Entry entry) {
-                            Object val = entry.getValue(
-                                    filterEditor.getModelIndex());
-
-                            return (val == null) ? (cache == null)
-                                                 : val.equals(cache);
-                        }
-                    };
+                    filter = new ContentFilter(filterEditor.getModelIndex(),
+                            cache);
                 }
 
                 filterEditor.filterUpdated(filter);
@@ -372,6 +398,29 @@ class EditorComponent extends JTextField {
     }
 
 
+    /**
+     * Filter matching the content selected on an editor with rendered
+     * content; it depends only on the column's value.
+     */
+    private static final class ContentFilter extends RowFilter
+        implements IParser.ValueFilter {
+
+        private int column;
+        private Object content;
+
+        ContentFilter(int column, Object content) {
+            this.column = column;
+            this.content = content;
+        }
+
+        @Override public boolean include(RowFilter.Entry entry) {
+            Object val = entry.getValue(column);
+
+            return (val == null) ? (content == null) : val.equals(content);
+        }
+    }
+
+
     /** Parent class of controllers with text enabled edition. */
     private abstract class TextController 
     	implements Controller, CaretListener, IChoicesParser {
@@ -386,6 +435,10 @@ class EditorComponent extends JTextField {
         private RowFilter filter;
         private boolean error;
         private boolean decorate;
+        // instant filter update postponed, if there is instantFilteringDelay
+        private Timer instantTimer;
+        private String instantText;
+        private ChoiceMatch instantMatch;
 
         TextController() {
             setEditable(true);
@@ -416,6 +469,7 @@ class EditorComponent extends JTextField {
 
         @Override public void detach() {
             removeCaretListener(this);
+            cancelInstantFilter();
         }
 
         @Override public void setContent(Object content) {
@@ -444,7 +498,7 @@ class EditorComponent extends JTextField {
         }
 
         @Override public Object getContent() {
-            if (!instantFiltering) {
+            if (!instantFiltering || (instantText != null)) {
                 // in this case, the content is not always updated,
                 // try an update now, if needed
                 String ret = getText();
@@ -461,6 +515,8 @@ class EditorComponent extends JTextField {
         }
 
         @Override public void consolidateFilter() {
+            applyInstantFilter();
+
             String text = getText();
             String content = this.content.toString();
             if (!text.equals(content)) {
@@ -561,6 +617,49 @@ class EditorComponent extends JTextField {
             updateFilter(null, null, false);
         }
 
+        /**
+         * Updates the filter as the user enters text. If there is an instant
+         * filtering delay, the update is postponed until the user pauses
+         * typing, and only the last text is then parsed and applied.
+         */
+        protected void updateInstantFilter(String text, ChoiceMatch match) {
+            if (instantFilteringDelay <= 0) {
+                updateFilter(text, match, true);
+            } else {
+                instantText = text;
+                instantMatch = match;
+                if (instantTimer == null) {
+                    instantTimer = new Timer(0, new ActionListener() {
+                                @Override public void actionPerformed(
+                                        ActionEvent e) {
+                                    applyInstantFilter();
+                                }
+                            });
+                    instantTimer.setRepeats(false);
+                }
+
+                instantTimer.setInitialDelay(instantFilteringDelay);
+                instantTimer.restart();
+            }
+        }
+
+        /** Applies now any postponed instant filter update. */
+        private void applyInstantFilter() {
+            if (instantText != null) {
+                updateFilter(instantText, instantMatch, true);
+            }
+        }
+
+        /** Discards any postponed instant filter update. */
+        private void cancelInstantFilter() {
+            if (instantTimer != null) {
+                instantTimer.stop();
+            }
+
+            instantText = null;
+            instantMatch = null;
+        }
+
         /**
          * Updates the filter and content variables, propagating the filter.
          *
@@ -573,6 +672,9 @@ class EditorComponent extends JTextField {
         protected void updateFilter(String      text,
                                     ChoiceMatch match,
                                     boolean     userUpdate) {
+            // any postponed update is superseded by this one
+            cancelInstantFilter();
+
             RowFilter currentFilter = filter;
             boolean error = false;
             if (text == null) {
@@ -591,22 +693,22 @@ class EditorComponent extends JTextField {
                         CustomChoice cc = (CustomChoice) content;
                         filter = cc.getFilter(filterEditor);
                     } else {
-                        filter = textParser.parseText(parseEscape(text));
+                        filter = parseText(text);
                     }
                 } else if (instantFiltering && userUpdate) {
                 	// time to try the parseInstantText, if needed
-                    filter = textParser.parseText(parseEscape(text));
+                    filter = parseText(text);
                     if (filterEditor.attemptFilterUpdate(filter)) {
                         content = text;
                         setWarning(false);
                     } else {
-                        InstantFilter iFilter = textParser.parseInstantText(
-                                parseEscape(text));
+                        InstantFilter iFilter = filterEditor.filterCache
+                            .parseInstantText(textParser, parseEscape(text));
                         content = iFilter.expression;
                         filter = iFilter.filter;
                     }
                 } else {
-                    filter = textParser.parseText(parseEscape(text));
+                    filter = parseText(text);
                     content = text;
                 }
             } catch (ParseException pex) {
@@ -634,6 +736,15 @@ class EditorComponent extends JTextField {
             }
         }
 
+        /**
+         * Parses the text; the filters recently parsed are reused, together
+         * with their known outcomes on the model rows.
+         */
+        private RowFilter parseText(String text) throws ParseException {
+            return filterEditor.filterCache.parseText(textParser,
+                    parseEscape(text));
+        }
+
         /** Sets the editor text, as a programmed action (userUpdate=false). */
         protected void setEditorText(String text) {
             userUpdate = false;
@@ -764,7 +875,7 @@ class EditorComponent extends JTextField {
                     if (instantFiltering || popup.isVisible()) {
                         ChoiceMatch match = getBestMatch(text);
                         if (instantFiltering) {
-                            updateFilter(text, match, true);
+                            updateInstantFilter(text, match);
                         }
                     }
                 }
@@ -878,7 +989,7 @@ class EditorComponent extends JTextField {
 
                 if (instantFiltering) {
                     match.exact = true;
-                    updateFilter(proposal, match, true);
+                    updateInstantFilter(proposal, match);
                 }
             }
 
@@ -939,7 +1050,7 @@ class EditorComponent extends JTextField {
 
                 if (userUpdate && instantFiltering && (proposal != buffer)) {
                     match.exact = true;
-                    updateFilter(proposal, match, true);
+                    updateInstantFilter(proposal, match);
                 }
             }
         }
@@ -0,0 +1,288 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import java.text.ParseException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.swing.RowFilter;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.IParser.InstantFilter;
+
+
+/**
+ * Bounded LRU cache of the filters parsed on an editor, with their outcome on
+ * the model rows.<br>
+ * Entering again a recent expression -for example, selecting it from the
+ * history- returns then the same filter, which is not evaluated again on the
+ * rows whose outcome is already known.<br>
+ * The outcomes require two bits per row, so they are bounded by their total
+ * size, not by the number of expressions: the outcomes of the least recently
+ * used expressions are discarded first, and no outcomes are kept on models
+ * too big for the bound.<br>
+ * The cache is discarded when the parser changes, and the outcomes on any
+ * model update. It is only accessed from the event dispatch thread, but the
+ * outcomes can be read and recorded from any thread.
+ */
+final class FilterCache {
+
+    /** Maximum number of cached expressions. */
+    private static final int SIZE = 16;
+
+    /**
+     * Maximum number of bytes used by the outcomes: 16 outcomes on a model
+     * of one million rows, or a single one on a model of 16 million rows.
+     */
+    private static final long MAX_BYTES = 4L << 20;
+
+    /** The parser that created the cached filters. */
+    private IParser parser;
+
+    /** The number of bytes used by the cached outcomes. */
+    private long bytes;
+
+    /** The cached filters, by expression, in access order. */
+    private Map<String, Parsed> cache = new LinkedHashMap<String, Parsed>(
+            SIZE, 0.75f, true) {
+            private static final long serialVersionUID = 5370912457839528375L;
+
+            @Override protected boolean removeEldestEntry(
+                    Map.Entry<String, Parsed> eldest) {
+                if (size() > SIZE) {
+                    discardOutcomes(eldest.getValue(), false);
+                    discardOutcomes(eldest.getValue(), true);
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+
+    /** Returns the filter for the given expression, parsing it if needed. */
+    public RowFilter parseText(IParser parser, String expression)
+                        throws ParseException {
+        Parsed parsed = get(parser, expression);
+        if (parsed.filter == null) {
+            parsed.filter = parser.parseText(expression);
+        }
+
+        return parsed.filter;
+    }
+
+    /**
+     * Returns the instant filter for the given expression, parsing it if
+     * needed.
+     */
+    public InstantFilter parseInstantText(IParser parser, String expression)
+                                   throws ParseException {
+        Parsed parsed = get(parser, expression);
+        if (parsed.instant == null) {
+            parsed.instant = parser.parseInstantText(expression);
+        }
+
+        return parsed.instant;
+    }
+
+    /**
+     * Returns the outcomes of a cached filter on the given model, or null if
+     * the filter is not cached.
+     */
+    public Outcomes getOutcomes(RowFilter filter, TableModel model) {
+        for (Parsed parsed : cache.values()) {
+            if (parsed.filter == filter) {
+                Outcomes outcomes = parsed.outcomes;
+                if ((outcomes == null) || !outcomes.isValid(model)) {
+                    discardOutcomes(parsed, false);
+                    parsed.outcomes = createOutcomes(filter, model);
+                }
+
+                return parsed.outcomes;
+            }
+
+            if ((parsed.instant != null) && (parsed.instant.filter == filter)) {
+                Outcomes outcomes = parsed.instantOutcomes;
+                if ((outcomes == null) || !outcomes.isValid(model)) {
+                    discardOutcomes(parsed, true);
+                    parsed.instantOutcomes = createOutcomes(filter, model);
+                }
+
+                return parsed.instantOutcomes;
+            }
+        }
+
+        return null;
+    }
+
+    /** Discards the outcomes of all the cached filters. */
+    public void modelUpdated() {
+        for (Parsed parsed : cache.values()) {
+            parsed.outcomes = null;
+            parsed.instantOutcomes = null;
+        }
+
+        bytes = 0;
+    }
+
+    /**
+     * Creates the outcomes of the filter, discarding the outcomes of the least
+     * recently used entries if required, or returns null if the model is too
+     * big for the outcomes.
+     */
+    private Outcomes createOutcomes(RowFilter filter, TableModel model) {
+        long required = Outcomes.getBytes(model.getRowCount());
+        if (required > MAX_BYTES) {
+            return null;
+        }
+
+        // the values are iterated from the least recently used
+        Iterator<Parsed> it = cache.values().iterator();
+        while ((bytes + required) > MAX_BYTES) {
+            Parsed parsed = it.next();
+            discardOutcomes(parsed, false);
+            discardOutcomes(parsed, true);
+        }
+
+        bytes += required;
+
+        return new Outcomes(filter, model);
+    }
+
+    /** Discards the outcomes, or the instant outcomes, of the given entry. */
+    private void discardOutcomes(Parsed parsed, boolean instant) {
+        Outcomes outcomes = instant ? parsed.instantOutcomes : parsed.outcomes;
+        if (outcomes != null) {
+            bytes -= outcomes.getBytes();
+            if (instant) {
+                parsed.instantOutcomes = null;
+            } else {
+                parsed.outcomes = null;
+            }
+        }
+    }
+
+    /** Returns the cache entry for the expression, creating it if needed. */
+    private Parsed get(IParser parser, String expression) {
+        if (parser != this.parser) {
+            cache.clear();
+            bytes = 0;
+            this.parser = parser;
+        }
+
+        Parsed ret = cache.get(expression);
+        if (ret == null) {
+            ret = new Parsed();
+            cache.put(expression, ret);
+        }
+
+        return ret;
+    }
+
+    /** Filters parsed for a given expression, and their outcomes. */
+    private static final class Parsed {
+        RowFilter filter;
+        InstantFilter instant;
+        Outcomes outcomes;
+        Outcomes instantOutcomes;
+    }
+
+    /**
+     * Outcome of a filter on each model row, as two bits per row: whether the
+     * outcome is known, and whether the row is included.
+     */
+    static final class Outcomes {
+
+        final RowFilter filter;
+        private final TableModel model;
+        private final int rows;
+        private final AtomicLongArray bits;
+
+        private Outcomes(RowFilter filter, TableModel model) {
+            this.filter = filter;
+            this.model = model;
+            this.rows = model.getRowCount();
+            this.bits = new AtomicLongArray((rows + 31) >>> 5);
+        }
+
+        /** Returns the number of bytes required for the given rows. */
+        static long getBytes(int rows) {
+            return ((rows + 31L) >>> 5) << 3;
+        }
+
+        /** Returns the number of bytes used by these outcomes. */
+        long getBytes() {
+            return getBytes(rows);
+        }
+
+        /** Returns true if the outcomes still apply to the given model. */
+        boolean isValid(TableModel model) {
+            return (this.model == model) && (rows == model.getRowCount());
+        }
+
+        /**
+         * Returns the model row associated to the entry, or -1 if its outcome
+         * cannot be recorded.
+         */
+        int getRow(RowFilter.Entry entry) {
+            Object id = entry.getIdentifier();
+            if ((id instanceof Integer) && (entry.getModel() == model)) {
+                int row = (Integer) id;
+                if ((row >= 0) && (row < rows)) {
+                    return row;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Returns 1 if the row is known to be included, 0 if it is known to
+         * be excluded, or -1 if its outcome is not known yet.
+         */
+        int get(int row) {
+            long word = bits.get(row >>> 5) >>> ((row & 31) << 1);
+
+            return ((word & 1) == 0) ? -1 : (int) ((word >>> 1) & 1);
+        }
+
+        /** Records the outcome of the row. */
+        void set(int row, boolean include) {
+            int index = row >>> 5;
+            long mask = (include ? 3L : 1L) << ((row & 31) << 1);
+            long word;
+            do {
+                word = bits.get(index);
+            } while (((word & mask) != mask)
+                    && !bits.compareAndSet(index, word, word | mask));
+        }
+    }
+}
@@ -49,10 +49,13 @@ import java.util.Set;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JComponent;
+import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.RowFilter;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
+import javax.swing.event.TableModelEvent;
 
 import net.coderazzi.filters.Filter;
 import net.coderazzi.filters.IFilter;
@@ -95,9 +98,17 @@ public class FilterEditor extends JComponent implements IFilterEditor {
     private Class modelClass;
     private boolean ignoreCase;
     private boolean enabledUI=true;
+    private boolean dictionaryEncoding;
+    private boolean sortedIndex;
+    private boolean invertedIndex;
+    private boolean substringIndex;
+    private int maxChoices;
+    // the dictionary whose values are shared as choices
+    private ColumnDictionary choicesDictionary;
 
     FilterArrowButton downButton = new FilterArrowButton();
     EditorFilter filter = new EditorFilter();
+    FilterCache filterCache = new FilterCache();
     FiltersHandler filtersHandler;
     EditorComponent editor;
     PopupComponent popup;
@@ -281,6 +292,7 @@ public class FilterEditor extends JComponent implements IFilterEditor {
     	// comparison operations on the text parser
         if ((comparator != this.comparator) && (comparator != null)) {
             this.comparator = comparator;
+            filter.index = null;
         	formatOrComparatorUpdated();
         }
     }
@@ -321,6 +333,85 @@ public class FilterEditor extends JComponent implements IFilterEditor {
         return editor.isInstantFiltering();
     }
 
+    /** IFilterEditor method. */
+    @Override public void setInstantFilteringDelay(int delay) {
+        editor.setInstantFilteringDelay(delay);
+    }
+
+    /** IFilterEditor method. */
+    @Override public int getInstantFilteringDelay() {
+        return editor.getInstantFilteringDelay();
+    }
+
+    /** IFilterEditor method. */
+    @Override public void setDictionaryEncoding(boolean enable) {
+        if (dictionaryEncoding != enable) {
+            dictionaryEncoding = enable;
+            modelUpdated();
+        }
+    }
+
+    /** IFilterEditor method. */
+    @Override public boolean isDictionaryEncoding() {
+        return dictionaryEncoding;
+    }
+
+    /** IFilterEditor method. */
+    @Override public void setSortedIndex(boolean enable) {
+        if (sortedIndex != enable) {
+            sortedIndex = enable;
+            filter.index = null;
+        }
+    }
+
+    /** IFilterEditor method. */
+    @Override public boolean isSortedIndex() {
+        return sortedIndex;
+    }
+
+    /** IFilterEditor method. */
+    @Override public void setInvertedIndex(boolean enable) {
+        if (invertedIndex != enable) {
+            invertedIndex = enable;
+            filter.dictionary = null;
+            filter.dictionaryRejected = false;
+            // the choices are extracted again, to share the index
+            requestChoices();
+        }
+    }
+
+    /** IFilterEditor method. */
+    @Override public boolean isInvertedIndex() {
+        return invertedIndex;
+    }
+
+    /** IFilterEditor method. */
+    @Override public void setSubstringIndex(boolean enable) {
+        if (substringIndex != enable) {
+            substringIndex = enable;
+            filter.discardTrigrams();
+        }
+    }
+
+    /** IFilterEditor method. */
+    @Override public boolean isSubstringIndex() {
+        return substringIndex;
+    }
+
+    /** IFilterEditor method. */
+    @Override public void setMaxChoices(int max) {
+        max = Math.max(0, max);
+        if (maxChoices != max) {
+            maxChoices = max;
+            requestChoices();
+        }
+    }
+
+    /** IFilterEditor method. */
+    @Override public int getMaxChoices() {
+        return maxChoices;
+    }
+
     /** IFilterEditor method. */
     @Override public void setMaxHistory(int size) {
         popup.setMaxHistory(size);
@@ -388,8 +479,28 @@ public class FilterEditor extends JComponent implements IFilterEditor {
 
     /** Method invoked by the FiltersHandler to set the choices. */
     public void setChoices(Collection<?> choices) {
-        popup.clearChoices();
-        addChoices(choices);
+        popup.setChoices(choices, editor.getChoicesParser());
+    }
+
+    /**
+     * Method invoked by the FiltersHandler to load the choices on a
+     * background thread; they are set then with {@link
+     * #setChoices(ChoicesLoader)}.
+     */
+    public ChoicesLoader createChoicesLoader() {
+        return new ChoicesLoader(popup.createChoicesLoader(),
+                editor.getChoicesParser());
+    }
+
+    /**
+     * Method invoked by the FiltersHandler to set the choices loaded on a
+     * background thread.
+     *
+     * @return  false if the format or the comparators have changed since the
+     *          loader was created
+     */
+    public boolean setChoices(ChoicesLoader loader) {
+        return popup.setChoices(loader.model);
     }
 
     /** Method invoked by the FiltersHandler to setup the choices. */
@@ -402,11 +513,119 @@ public class FilterEditor extends JComponent implements IFilterEditor {
         popup.addChoices(choices, editor.getChoicesParser());
     }
 
+    /** Method invoked by the FiltersHandler to remove choices. */
+    public void removeChoices(Collection<?> choices) {
+        popup.removeChoices(choices, editor.getChoicesParser());
+    }
+
+    /**
+     * Method called by the FiltersHandler to obtain the distinct values on
+     * the column, if kept on an inverted index. The changes on these values
+     * are then published with {@link #publishIndexedValues()}.
+     *
+     * @return  null if there is no inverted index for the column
+     */
+    public Set<Object> getIndexedValues() {
+        ColumnDictionary d = filter.dictionary;
+        if ((d == null) && invertedIndex) {
+            d = filter.createDictionary();
+        }
+
+        choicesDictionary = ((d != null) && d.isInverted()) ? d : null;
+
+        return (choicesDictionary == null) ? null : d.getValues();
+    }
+
+    /**
+     * Method called by the FiltersHandler to update the choices with the
+     * changes on the values kept on the inverted index.
+     *
+     * @return  false if the index has been discarded, and the choices must
+     *          be extracted again
+     */
+    public boolean publishIndexedValues() {
+        ColumnDictionary d = filter.dictionary;
+        if ((d == null) || (d != choicesDictionary)) {
+            choicesDictionary = null;
+
+            return false;
+        }
+
+        d.publish(this);
+
+        return true;
+    }
+
     /** Method called by the FiltersHandler to notify if rows are visible. */
     public void setWarning(boolean warning) {
         editor.setWarning(warning);
     }
 
+    /**
+     * Method called by the FiltersHandler when the table model changes, to
+     * discard any information on the rows excluded by the current filter, or
+     * on the outcomes of the recently parsed filters.
+     */
+    public void modelUpdated(int eventType,
+                             int firstRow,
+                             int lastRow,
+                             int column) {
+        filter.narrowed = null;
+        filter.outcomes = null;
+        filterCache.modelUpdated();
+
+        ColumnDictionary dictionary = filter.dictionary;
+        if ((dictionary != null)
+                && ((column == TableModelEvent.ALL_COLUMNS)
+                    || (column == modelIndex))
+                && !dictionary.update(eventType, firstRow, lastRow)) {
+            filter.dictionary = null;
+        }
+
+        ColumnIndex index = filter.index;
+        if ((index != null)
+                && ((column == TableModelEvent.ALL_COLUMNS)
+                    || (column == modelIndex))
+                && !index.update(eventType, firstRow, lastRow)) {
+            filter.index = null;
+        }
+
+        TrigramIndex trigrams = filter.trigrams;
+        if ((trigrams != null)
+                && ((column == TableModelEvent.ALL_COLUMNS)
+                    || (column == modelIndex))
+                && !trigrams.update(eventType, firstRow, lastRow)) {
+            filter.discardTrigrams();
+        }
+    }
+
+    /**
+     * Method called by the FiltersHandler when the table model is replaced,
+     * or its changes are not followed, to discard any information on its rows.
+     */
+    public void modelUpdated() {
+        filter.narrowed = null;
+        filter.outcomes = null;
+        filterCache.modelUpdated();
+        filter.dictionary = null;
+        filter.dictionaryRejected = false;
+        filter.index = null;
+        filter.discardTrigrams();
+    }
+
+    /**
+     * Method called by the FiltersHandler to notify that the filter is being
+     * applied on the background.
+     */
+    public void setFiltering(boolean filtering) {
+        editor.setFiltering(filtering);
+    }
+
+    /** Returns true if the filter is being applied on the background. */
+    public boolean isFiltering() {
+        return editor.isFiltering();
+    }
+
     /** Enables / disables the editor, invoked from the filter itself. */
     void setFilterEnabled(boolean enabled) {
     	enabled = enabled && enabledUI;
@@ -431,6 +650,9 @@ public class FilterEditor extends JComponent implements IFilterEditor {
 
     /** Method invoked by the EditorComponent on request. */
     IParser createParser() {
+        // the indexed texts depend on the parser's format
+        filter.discardTrigrams();
+
         return getParserModel().createParser(this);
     }
 
@@ -852,6 +1074,25 @@ public class FilterEditor extends JComponent implements IFilterEditor {
             .put(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0), actionName);
     }
 
+    /**
+     * Choices formatted and sorted on a background thread, to be set on the
+     * editor once loaded.
+     */
+    public static final class ChoicesLoader {
+        ChoicesListModel model;
+        IChoicesParser parser;
+
+        ChoicesLoader(ChoicesListModel model, IChoicesParser parser) {
+            this.model = model;
+            this.parser = parser;
+        }
+
+        /** Loads the given choices, from any thread. */
+        public void load(Collection<?> choices) {
+            model.setContent(choices, parser);
+        }
+    }
+
     /**
      * Wrapper of the filter associated to the {@link EditorComponent}, ensuring
      * some added functionality (like auto-adding to the history list when the
@@ -861,24 +1102,196 @@ public class FilterEditor extends JComponent implements IFilterEditor {
         RowFilter delegate;
         boolean toBeConsolidated;
         boolean reportOnConsolidation;
+        // the delegate, keeping track of the rows it excludes
+        volatile NarrowedFilter narrowed;
+        // the column's values, if dictionary encoding is enabled
+        volatile ColumnDictionary dictionary;
+        // set if the column has too many values to be encoded
+        boolean dictionaryRejected;
+        // the column's values sorted, if the sorted index is enabled
+        volatile ColumnIndex index;
+        // the trigrams of the column's texts, if the substring index is
+        // enabled
+        volatile TrigramIndex trigrams;
+        // the known outcomes of the delegate, if recently parsed
+        volatile FilterCache.Outcomes outcomes;
 
         @Override public boolean include(RowFilter.Entry entry) {
-            return (delegate == null) ? true : delegate.include(entry);
+            RowFilter filter = delegate;
+            if (filter == null) {
+                return true;
+            }
+
+            FilterCache.Outcomes o = outcomes;
+            if ((o == null) || (o.filter != filter)) {
+                return evaluate(filter, entry);
+            }
+
+            int row = o.getRow(entry);
+            if (row < 0) {
+                return evaluate(filter, entry);
+            }
+
+            int known = o.get(row);
+            if (known >= 0) {
+                return known == 1;
+            }
+
+            boolean ret = evaluate(filter, entry);
+            o.set(row, ret);
+
+            return ret;
+        }
+
+        /** Evaluates the delegate, using any information on its rows. */
+        private boolean evaluate(RowFilter filter, RowFilter.Entry entry) {
+            if (filter instanceof IParser.SubstringFilter) {
+                TrigramIndex t = trigrams;
+                if (t != null) {
+                    int ret = t.include((IParser.SubstringFilter) filter,
+                            entry);
+                    if (ret >= 0) {
+                        return ret == 1;
+                    }
+                }
+            }
+
+            if (filter instanceof IParser.OrderedFilter) {
+                ColumnIndex i = index;
+                if ((i == null) && sortedIndex
+                        && SwingUtilities.isEventDispatchThread()) {
+                    i = createIndex();
+                }
+
+                if (i != null) {
+                    int ret = i.include((IParser.OrderedFilter) filter, entry);
+                    if (ret >= 0) {
+                        return ret == 1;
+                    }
+                }
+            }
+
+            if (filter instanceof IParser.ValueFilter) {
+                ColumnDictionary d = dictionary;
+                if ((d == null) && (dictionaryEncoding || invertedIndex)
+                        && SwingUtilities.isEventDispatchThread()) {
+                    d = createDictionary();
+                }
+
+                if (d != null) {
+                    int ret = d.include(filter, entry);
+                    if (ret >= 0) {
+                        return ret == 1;
+                    }
+                }
+            }
+
+            NarrowedFilter n = narrowed;
+
+            return ((n != null) && (n.filter == filter)) ? n.include(entry)
+                                                         : filter.include(entry);
         }
 
         @Override public void setEnabled(boolean enable) {
             if (enable != isEnabled()) {
                 setFilterEnabled(enable);
-                delegate = enable ? editor.getFilter() : null;
+                narrowed = null;
+                setDelegate(enable ? editor.getFilter() : null);
                 super.setEnabled(enable);
             }
         }
 
+        /**
+         * Sets the delegate; if it refines the previous one, it will be only
+         * evaluated on the rows not excluded by the previous one.
+         */
+        private void setDelegate(RowFilter filter) {
+            delegate = filter;
+            outcomes = null;
+            if ((filter != null) && filtersHandler.isTrackingModel()) {
+                outcomes = filterCache.getOutcomes(filter,
+                        filtersHandler.getTable().getModel());
+            }
+
+            if ((dictionaryEncoding || invertedIndex) && (dictionary == null)
+                    && (filter instanceof IParser.ValueFilter)) {
+                // created now, as the filter could be evaluated on the
+                // background
+                createDictionary();
+            }
+
+            if (sortedIndex && (index == null)
+                    && (filter instanceof IParser.OrderedFilter)) {
+                createIndex();
+            }
+
+            if (substringIndex && (trigrams == null)
+                    && (filter instanceof IParser.SubstringFilter)
+                    && filtersHandler.isTrackingModel()) {
+                trigrams = TrigramIndex.create(filtersHandler.getTable()
+                            .getModel(), modelIndex,
+                        (IParser.SubstringFilter) filter);
+            }
+
+            if (filter instanceof IParser.RefiningFilter) {
+                NarrowedFilter last = narrowed;
+                if ((last != null) && (last.filter == filter)) {
+                    return;
+                }
+
+                JTable table = filtersHandler.getTable();
+                if (table != null) {
+                    narrowed = NarrowedFilter.create(filter, last,
+                            table.getModel());
+
+                    return;
+                }
+            }
+
+            narrowed = null;
+        }
+
+        /**
+         * Creates the dictionary for the column, if the model updates are
+         * followed, and the column has not too many distinct values.
+         */
+        private ColumnDictionary createDictionary() {
+            if (!dictionaryRejected && filtersHandler.isTrackingModel()) {
+                dictionary = ColumnDictionary.create(filtersHandler.getTable()
+                            .getModel(), modelIndex, invertedIndex);
+                dictionaryRejected = (dictionary == null);
+            }
+
+            return dictionary;
+        }
+
+        /**
+         * Creates the sorted index for the column, if the model updates are
+         * followed.
+         */
+        private ColumnIndex createIndex() {
+            if (filtersHandler.isTrackingModel()) {
+                index = ColumnIndex.create(filtersHandler.getTable()
+                            .getModel(), modelIndex, comparator);
+            }
+
+            return index;
+        }
+
+        /** Discards the substring index, stopping any build in progress. */
+        void discardTrigrams() {
+            TrigramIndex t = trigrams;
+            if (t != null) {
+                trigrams = null;
+                t.dispose();
+            }
+        }
+
         /** Reports an update on the associated filter. */
         public void editorFilterUpdated(RowFilter filter) {
             if (isEnabled()) {
                 if (filter != delegate) {
-                    delegate = filter;
+                    setDelegate(filter);
                     reportFilterUpdatedToObservers();
                     reportOnConsolidation = false;
                     if (editor.isFocused()) {
@@ -895,7 +1308,7 @@ public class FilterEditor extends JComponent implements IFilterEditor {
          * filter let pass rows (does not filter all out)
          */
         public boolean attemptEditorFilterUpdate(RowFilter filter) {
-            delegate = filter;
+            setDelegate(filter);
 
             boolean ret = filtersHandler.applyEditorFilter(this);
             if (ret) {
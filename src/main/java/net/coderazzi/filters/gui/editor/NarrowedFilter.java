@@ -0,0 +1,129 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import java.util.Arrays;
+
+import javax.swing.RowFilter;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.IParser;
+
+
+/**
+ * RowFilter wrapper that remembers the rows excluded by its filter.<br>
+ * If the filter refines a previous one (see {@link
+ * IParser.RefiningFilter}), it inherits the rows excluded so far, which are
+ * then not evaluated again. This way, instant filtering becomes cheaper as
+ * the user types and the result set shrinks.<br>
+ * The rows excluded are only valid as long as the model is not modified.
+ */
+final class NarrowedFilter extends RowFilter {
+
+    /** The wrapped filter. */
+    final RowFilter filter;
+
+    /** The previous NarrowedFilter, that can still be refined. */
+    private NarrowedFilter previous;
+
+    /** The model whose rows are cached. */
+    private TableModel model;
+
+    /**
+     * The rows known to be excluded, as bits. Concurrent evaluations can
+     * lose updates, which only means that some rows are evaluated again.
+     */
+    private long excluded[];
+
+    /** The number of rows covered by the excluded array. */
+    private int rows;
+
+    private NarrowedFilter(RowFilter filter, TableModel model) {
+        this.filter = filter;
+        this.model = model;
+        this.rows = model.getRowCount();
+    }
+
+    /**
+     * Creates the wrapper for a new filter, reusing -if the filter refines
+     * it- the information on the last filter, or its predecessor. The
+     * predecessor is checked because the editor attempts first an exact
+     * filter ('lon'), and then the instant one ('lon*'), which refines the
+     * previous instant filter ('lo*'), but not the exact one.
+     */
+    static NarrowedFilter create(RowFilter      filter,
+                                 NarrowedFilter last,
+                                 TableModel     model) {
+        NarrowedFilter ret = new NarrowedFilter(filter, model);
+        NarrowedFilter base = ret.getBase(last);
+        if (base == null) {
+            base = ret.getBase((last == null) ? null : last.previous);
+        }
+
+        int size = (ret.rows + 63) >>> 6;
+        ret.excluded = (base == null) ? new long[size]
+                                      : Arrays.copyOf(base.excluded, size);
+        if (last != null) {
+            last.previous = null;
+        }
+
+        ret.previous = last;
+
+        return ret;
+    }
+
+    /** Returns the given filter, if this filter refines it. */
+    private NarrowedFilter getBase(NarrowedFilter last) {
+        return ((last != null) && (last.model == model)
+                    && (last.rows == rows)
+                    && ((IParser.RefiningFilter) filter).refines(last.filter))
+            ? last : null;
+    }
+
+    @Override public boolean include(Entry entry) {
+        Object id = entry.getIdentifier();
+        if ((id instanceof Integer) && (entry.getModel() == model)) {
+            int row = (Integer) id;
+            if ((row >= 0) && (row < rows)) {
+                int word = row >>> 6;
+                long bit = 1L << row;
+                if ((excluded[word] & bit) != 0) {
+                    return false;
+                }
+
+                if (filter.include(entry)) {
+                    return true;
+                }
+
+                excluded[word] |= bit;
+
+                return false;
+            }
+        }
+
+        return filter.include(entry);
+    }
+}
@@ -121,6 +121,43 @@ abstract class PopupComponent implements PopupMenuListener {
         }
     }
 
+    /** Replaces the content of the choices list. */
+    public void setChoices(Collection<?> choices, IChoicesParser parser) {
+        choicesModel.setContent(choices, parser);
+        hide();
+    }
+
+    /**
+     * Returns an empty choices list, with the current settings, where the
+     * choices can be loaded on a background thread.
+     */
+    public ChoicesListModel createChoicesLoader() {
+        return choicesModel.createLoader();
+    }
+
+    /**
+     * Replaces the content of the choices list with the given one, created
+     * with {@link #createChoicesLoader()}.
+     *
+     * @return  false if the settings of the list have changed since
+     */
+    public boolean setChoices(ChoicesListModel loaded) {
+        if (!choicesModel.swapContent(loaded)) {
+            return false;
+        }
+
+        hide();
+
+        return true;
+    }
+
+    /** Removes content from the choices list. */
+    public void removeChoices(Collection<?> choices, IChoicesParser parser) {
+        if (choicesModel.removeContent(choices, parser)) {
+            hide();
+        }
+    }
+
     /** Adds content to the history list. */
     public void addHistory(Object st) {
         if (historyModel.add(st)) {
@@ -0,0 +1,566 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.RowFilter;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.RowSet;
+
+
+/**
+ * Substring index of the values on a column: it keeps the text of each row,
+ * and, for each sequence of three characters (trigram), the rows whose text
+ * contains it, case folded. The filters whose included texts must contain
+ * some fragments (see {@link IParser.SubstringFilter}) find then the rows
+ * holding all the trigrams of the fragments, and are only checked on those
+ * rows.<br>
+ * The index is built on a background thread, reading the model; any model
+ * event received meanwhile invalidates the outcome, and the index is built
+ * again. Once built, it is updated on the event dispatch thread: rows
+ * appended or updated are indexed in place, while inserting or deleting rows
+ * in the middle of the model, which would move the rows of every trigram,
+ * requires a new background build. Filters can be evaluated on other
+ * threads: each update invalidates the rows found for the current filter,
+ * and any search overlapping an update is discarded, the filter being then
+ * evaluated on each row.
+ */
+final class TrigramIndex {
+
+    /**
+     * Number of rows updated above which the index is built again, instead
+     * of updating each row.
+     */
+    private static final int MAX_UPDATES = 4096;
+
+    /** Executor shared by all the indexes, building them in turn. */
+    private static ExecutorService executor;
+
+    /** The indexed model. */
+    private TableModel model;
+
+    /** The model position of the indexed column. */
+    private int column;
+
+    /** Filter providing the text of the values. */
+    private IParser.SubstringFilter converter;
+
+    /** The text of each row. */
+    private volatile String texts[];
+
+    /** The rows of each trigram. */
+    private volatile Trigrams trigrams;
+
+    /** The number of rows covered, only meaningful once built. */
+    private volatile int rows;
+
+    /** True once the index is built and followed the model events. */
+    private volatile boolean built;
+
+    /** True once discarded: any build in progress is abandoned. */
+    private volatile boolean disposed;
+
+    /** Incremented before and after each update: odd while updating. */
+    private volatile int updates;
+
+    /** Number of model events received, on the event dispatch thread. */
+    private int events;
+
+    /** The rows included by the last evaluated filter. */
+    private volatile Selection selection;
+
+    private TrigramIndex(TableModel              model,
+                         int                     column,
+                         IParser.SubstringFilter converter) {
+        this.model = model;
+        this.column = column;
+        this.converter = converter;
+    }
+
+    /**
+     * Creates the index for the given column, built on the background, using
+     * the given filter to obtain the text of the values.
+     */
+    static TrigramIndex create(TableModel              model,
+                               int                     column,
+                               IParser.SubstringFilter converter) {
+        TrigramIndex ret = new TrigramIndex(model, column, converter);
+        ret.build();
+
+        return ret;
+    }
+
+    /** Abandons the index, stopping any build in progress. */
+    void dispose() {
+        disposed = true;
+        built = false;
+    }
+
+    /**
+     * Evaluates the filter on the entry, finding first the rows it includes,
+     * if not yet known.
+     *
+     * @return  1 if the filter includes the entry, 0 if not, and -1 if the
+     *          entry is not covered by this index
+     */
+    int include(IParser.SubstringFilter filter, RowFilter.Entry entry) {
+        Object id = entry.getIdentifier();
+        if (!(id instanceof Integer) || (entry.getModel() != model)) {
+            return -1;
+        }
+
+        Selection s = selection;
+        if ((s == null) || (s.filter != filter) || (s.updates != updates)) {
+            s = select(filter);
+        }
+
+        int row = (Integer) id;
+        RowSet included = s.included;
+        if ((included == null) || (row < 0) || (row >= s.rows)) {
+            return -1;
+        }
+
+        return included.contains(row) ? 1 : 0;
+    }
+
+    /**
+     * Updates the index after a table model event.
+     *
+     * @return  false if the index could not be updated, and must be
+     *          discarded
+     */
+    boolean update(int eventType, int firstRow, int lastRow) {
+        ++events;
+        if (!built) {
+            // the build in progress will be discarded
+            return !disposed;
+        }
+
+        int count = model.getRowCount();
+        if (firstRow > rows) {
+            return false;
+        }
+
+        if ((firstRow < 0)
+                || ((eventType == TableModelEvent.UPDATE) && (lastRow >= rows))) {
+            // all cells could have changed
+            build();
+
+            return true;
+        }
+
+        if (eventType == TableModelEvent.INSERT) {
+            lastRow = Math.min(lastRow, count - 1);
+            if (lastRow < firstRow) {
+                return false;
+            }
+        } else {
+            lastRow = Math.min(lastRow, rows - 1);
+        }
+
+        boolean append = (eventType == TableModelEvent.INSERT)
+                && (firstRow == rows);
+        boolean truncate = (eventType == TableModelEvent.DELETE)
+                && (lastRow == (rows - 1));
+        boolean update = (eventType == TableModelEvent.UPDATE)
+                && ((lastRow - firstRow) < MAX_UPDATES);
+        if (!(append || truncate || update)) {
+            build();
+
+            return true;
+        }
+
+        updates++;
+        try {
+            Trigrams t = trigrams;
+            String s[] = texts;
+            if (append) {
+                if (lastRow >= s.length) {
+                    s = Arrays.copyOf(s,
+                            Math.max(lastRow + 1, count + (count >> 1)));
+                    texts = s;
+                }
+
+                for (int row = firstRow; row <= lastRow; row++) {
+                    s[row] = read(row);
+                    t.add(s[row], row);
+                }
+
+                rows = lastRow + 1;
+            } else {
+                for (int row = firstRow; row <= lastRow; row++) {
+                    t.remove(s[row], row);
+                    s[row] = null;
+                }
+
+                if (truncate) {
+                    rows = firstRow;
+                } else {
+                    for (int row = firstRow; row <= lastRow; row++) {
+                        s[row] = read(row);
+                        t.add(s[row], row);
+                    }
+                }
+            }
+        } finally {
+            updates++;
+        }
+
+        return rows == count;
+    }
+
+    /** Builds the whole index on the background. */
+    private void build() {
+        updates++;
+        built = false;
+        updates++;
+        final int start = events;
+        getExecutor().submit(new Runnable() {
+                @Override public void run() {
+                    final Trigrams t = new Trigrams();
+                    final String s[] = read(t);
+                    SwingUtilities.invokeLater(new Runnable() {
+                            @Override public void run() {
+                                publish(start, t, s);
+                            }
+                        });
+                }
+            });
+    }
+
+    /**
+     * Reads, on the background, the text of all the rows, indexing their
+     * trigrams.
+     *
+     * @return  the texts, or null if the model is modified meanwhile, or if
+     *          the index is disposed
+     */
+    private String[] read(Trigrams t) {
+        try {
+            int count = model.getRowCount();
+            String ret[] = new String[count];
+            for (int row = 0; row < count; row++) {
+                if (disposed) {
+                    return null;
+                }
+
+                ret[row] = read(row);
+                t.add(ret[row], row);
+            }
+
+            t.optimize();
+
+            return ret;
+        } catch (RuntimeException rex) {
+            // the model has been probably modified while being read
+            return null;
+        }
+    }
+
+    /** Installs, on the event dispatch thread, the outcome of a build. */
+    private void publish(int start, Trigrams t, String s[]) {
+        if (disposed) {
+            return;
+        }
+
+        if ((s == null) || (start != events)
+                || (s.length != model.getRowCount())) {
+            build();
+
+            return;
+        }
+
+        updates++;
+        trigrams = t;
+        texts = s;
+        rows = s.length;
+        built = true;
+        updates++;
+    }
+
+    /** Returns the text of the value on the given row. */
+    private String read(int row) {
+        return converter.getText(model.getValueAt(row, column));
+    }
+
+    /** Finds the rows included by the filter, on the current values. */
+    private synchronized Selection select(IParser.SubstringFilter filter) {
+        int u = updates;
+        Selection s = selection;
+        if ((s != null) && (s.filter == filter) && (s.updates == u)) {
+            return s;
+        }
+
+        int r = rows;
+        RowSet included = null;
+        if (((u & 1) == 0) && built) {
+            try {
+                included = search(filter, trigrams, texts, r);
+            } catch (RuntimeException rex) {
+                // the index was updated meanwhile
+                included = null;
+            }
+
+            if (updates != u) {
+                included = null;
+            }
+        }
+
+        s = new Selection(filter, u, r, included);
+        selection = s;
+
+        return s;
+    }
+
+    /**
+     * Finds the rows holding all the trigrams of the filter's fragments,
+     * and checks the filter on their texts.
+     *
+     * @return  the included rows, or null if the filter has no trigrams
+     */
+    private static RowSet search(IParser.SubstringFilter filter,
+                                 Trigrams                t,
+                                 String                  s[],
+                                 int                     rows) {
+        String fragments[] = filter.getFragments();
+        if (fragments == null) {
+            return null;
+        }
+
+        int count = 0;
+        for (String fragment : fragments) {
+            count += Math.max(0, fragment.length() - 2);
+        }
+
+        if (count == 0) {
+            return null;
+        }
+
+        // the row sets are intersected from the smallest one
+        RowSet lists[] = new RowSet[count];
+        int sizes[] = new int[count];
+        count = 0;
+        for (String fragment : fragments) {
+            for (int i = 2; i < fragment.length(); i++) {
+                RowSet list = t.get(key(fragment.charAt(i - 2),
+                            fragment.charAt(i - 1), fragment.charAt(i)));
+                if (list == null) {
+                    return new RowSet();
+                }
+
+                int size = list.cardinality();
+                int j = count++;
+                for (; (j > 0) && (sizes[j - 1] > size); j--) {
+                    lists[j] = lists[j - 1];
+                    sizes[j] = sizes[j - 1];
+                }
+
+                lists[j] = list;
+                sizes[j] = size;
+            }
+        }
+
+        RowSet candidates = new RowSet(lists[0]);
+        for (int i = 1; (i < count) && !candidates.isEmpty(); i++) {
+            if (lists[i] != lists[i - 1]) {
+                candidates.and(lists[i]);
+            }
+        }
+
+        RowSet ret = new RowSet();
+        for (int row = candidates.next(0); (row >= 0) && (row < rows);
+                row = candidates.next(row + 1)) {
+            if (filter.matches(s[row])) {
+                ret.add(row);
+            }
+        }
+
+        ret.optimize();
+
+        return ret;
+    }
+
+    /** Returns the key of the trigram, case folded. */
+    static long key(char a, char b, char c) {
+        // the top bit ensures that no key is 0
+        return (1L << 48) | ((long) fold(a) << 32) | ((long) fold(b) << 16)
+                | fold(c);
+    }
+
+    /**
+     * Returns the case folding of a character, as {@link
+     * java.util.regex.Pattern} does with the flags CASE_INSENSITIVE and
+     * UNICODE_CASE.
+     */
+    static char fold(char c) {
+        if (c < 128) {
+            return ((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override public Thread newThread(Runnable r) {
+                            Thread ret = new Thread(r, "TableFilter-index");
+                            ret.setDaemon(true);
+
+                            return ret;
+                        }
+                    });
+        }
+
+        return executor;
+    }
+
+
+    /**
+     * The rows of each trigram, as an open addressing hash table of the
+     * trigrams' keys.
+     */
+    private static final class Trigrams {
+        private long keys[] = new long[1024];
+        private RowSet rows[] = new RowSet[1024];
+        private int size;
+
+        /** Returns the rows of the trigram, or null if not found. */
+        RowSet get(long key) {
+            long k[] = keys;
+            int mask = k.length - 1;
+            for (int i = hash(key, mask); k[i] != 0; i = (i + 1) & mask) {
+                if (k[i] == key) {
+                    return rows[i];
+                }
+            }
+
+            return null;
+        }
+
+        /** Indexes the trigrams of the text on the given row. */
+        void add(String text, int row) {
+            for (int i = 2; i < text.length(); i++) {
+                long key = key(text.charAt(i - 2), text.charAt(i - 1),
+                        text.charAt(i));
+                int mask = keys.length - 1;
+                int j = hash(key, mask);
+                while ((keys[j] != 0) && (keys[j] != key)) {
+                    j = (j + 1) & mask;
+                }
+
+                if (keys[j] == 0) {
+                    keys[j] = key;
+                    rows[j] = new RowSet();
+                    if (++size > (keys.length >> 1)) {
+                        grow();
+                        j = -1;
+                    }
+                }
+
+                if (j >= 0) {
+                    rows[j].add(row);
+                } else {
+                    get(key).add(row);
+                }
+            }
+        }
+
+        /** Removes the row from the trigrams of the text. */
+        void remove(String text, int row) {
+            for (int i = 2; i < text.length(); i++) {
+                RowSet list = get(key(text.charAt(i - 2), text.charAt(i - 1),
+                            text.charAt(i)));
+                if (list != null) {
+                    list.remove(row);
+                }
+            }
+        }
+
+        /** Converts each row set to its most compact representation. */
+        void optimize() {
+            for (RowSet list : rows) {
+                if (list != null) {
+                    list.optimize();
+                }
+            }
+        }
+
+        private void grow() {
+            long oldKeys[] = keys;
+            RowSet oldRows[] = rows;
+            int mask = (oldKeys.length << 1) - 1;
+            keys = new long[mask + 1];
+            rows = new RowSet[mask + 1];
+            for (int i = 0; i < oldKeys.length; i++) {
+                long key = oldKeys[i];
+                if (key != 0) {
+                    int j = hash(key, mask);
+                    while (keys[j] != 0) {
+                        j = (j + 1) & mask;
+                    }
+
+                    keys[j] = key;
+                    rows[j] = oldRows[i];
+                }
+            }
+        }
+
+        private static int hash(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+
+
+    /** The rows included by a filter, between two updates. */
+    private static final class Selection {
+
+        final IParser.SubstringFilter filter;
+        final int updates;
+        final int rows;
+
+        /** The included rows, or null if not found. */
+        final RowSet included;
+
+        Selection(IParser.SubstringFilter filter,
+                  int                     updates,
+                  int                     rows,
+                  RowSet                  included) {
+            this.filter = filter;
+            this.updates = updates;
+            this.rows = rows;
+            this.included = included;
+        }
+    }
+}
@@ -30,6 +30,8 @@ import java.text.Format;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 
 /**
@@ -37,6 +39,17 @@ import java.util.Date;
  */
 abstract public class DateComparator implements Comparator<Date> {
 
+    /** Comparator of the full dates, as their natural order. */
+    static final KeyComparator MILLISECONDS = new KeyComparator() {
+        @Override public long diff(Date o1, Date o2) {
+            return o1.compareTo(o2);
+        }
+
+        @Override long key(Date date) {
+            return date.getTime();
+        }
+    };
+
     /**
      * Factory constructor, returning an instance suitable for the given format.
      */
@@ -50,11 +63,7 @@ abstract public class DateComparator implements Comparator<Date> {
         calendar.setTimeInMillis(new Date().getTime());
         if (change(calendar, dateFormat, Calendar.MILLISECOND)) {
             // Milliseconds affect the output, full comparison
-            return new DateComparator() {
-                @Override public long diff(Date o1, Date o2) {
-                    return o1.compareTo(o2);
-                }
-            };
+            return MILLISECONDS;
         }
 
         int divisor = 0;
@@ -72,8 +81,8 @@ abstract public class DateComparator implements Comparator<Date> {
             return new YearComparator(calendar);
         } else {
             // nothing affects the output, great formatter!
-            return new DateComparator() {
-                @Override public long diff(Date o1, Date o2) {
+            return new KeyComparator() {
+                @Override long key(Date date) {
                     return 0;
                 }
             };
@@ -107,41 +116,63 @@ abstract public class DateComparator implements Comparator<Date> {
 
     public abstract long diff(Date o1, Date o2);
 
+    /**
+     * DateComparator that reduces each date to a long key, with the
+     * granularity deduced from the format, and compares the keys. The parser
+     * compares then directly the keys of the dates, see
+     * {@link UnboxedComparator}.
+     */
+    abstract static class KeyComparator extends DateComparator {
+
+        /** Returns the key of the date, compared to obtain the difference. */
+        abstract long key(Date date);
+
+        @Override public long diff(Date o1, Date o2) {
+            return key(o1) - key(o2);
+        }
+    }
+
     /**
      * DateComparator when the difference relies on time fields (seconds,
      * minutes, hours).<br>
      * We divide the time to set out the unneeded information, before comparing
      */
-    static class TimeComparator extends DateComparator {
+    static class TimeComparator extends KeyComparator {
         int divisor;
 
         public TimeComparator(int divisor) {
             this.divisor = divisor;
         }
 
-        @Override public long diff(Date o1, Date o2) {
-            return (o1.getTime() / divisor) - (o2.getTime() / divisor);
+        @Override long key(Date date) {
+            return date.getTime() / divisor;
         }
     }
 
-    /** DateComparator that simply compares the year's fields. */
-    static class YearComparator extends DateComparator {
-        Calendar calendar;
-
-        public YearComparator(Calendar calendar) {
-            this.calendar = calendar;
+    /**
+     * DateComparator that simply compares the year's fields.<br>
+     * Each thread uses its own copy of the calendar, so that the comparator
+     * can be used concurrently.
+     */
+    static class YearComparator extends KeyComparator {
+        ThreadLocal<Calendar> calendars;
+
+        public YearComparator(final Calendar calendar) {
+            this.calendars = new ThreadLocal<Calendar>() {
+                    @Override protected Calendar initialValue() {
+                        return (Calendar) calendar.clone();
+                    }
+                };
         }
 
-        @Override public long diff(Date o1, Date o2) {
-            calendar.setTime(o1);
-
-            long base = time();
-            calendar.setTime(o2);
+        @Override long key(Date date) {
+            Calendar calendar = calendars.get();
+            calendar.setTime(date);
 
-            return base - time();
+            return time(calendar);
         }
 
-        long time() {
+        long time(Calendar calendar) {
             return calendar.get(Calendar.YEAR);
         }
     }
@@ -152,19 +183,42 @@ abstract public class DateComparator implements Comparator<Date> {
             super(calendar);
         }
 
-        @Override long time() {
+        @Override long time(Calendar calendar) {
             return (calendar.get(Calendar.YEAR) * 12)
                     + calendar.get(Calendar.MONTH);
         }
     }
 
-    /** DateComparator that simply compares the year/month/day's fields. */
+    /**
+     * DateComparator that simply compares the year/month/day's fields.<br>
+     * For gregorian calendars, the days are obtained directly from the time
+     * and the offset of the calendar's time zone, without calendar fields.
+     */
     static class DayMonthYearComparator extends YearComparator {
+        private static final long DAY = 24 * 60 * 60 * 1000;
+
+        private TimeZone zone;
+
         public DayMonthYearComparator(Calendar calendar) {
             super(calendar);
+            if (calendar instanceof GregorianCalendar) {
+                zone = calendar.getTimeZone();
+            }
+        }
+
+        @Override long key(Date date) {
+            if (zone == null) {
+                return super.key(date);
+            }
+
+            long time = date.getTime();
+            time += zone.getOffset(time);
+
+            // floor division, as the time can be negative
+            return (time >= 0) ? (time / DAY) : (((time + 1) / DAY) - 1);
         }
 
-        @Override long time() {
+        @Override long time(Calendar calendar) {
             return (calendar.get(Calendar.YEAR) * 400)
                     + calendar.get(Calendar.DAY_OF_YEAR);
         }
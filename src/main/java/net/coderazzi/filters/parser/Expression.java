@@ -32,6 +32,7 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -937,6 +938,326 @@ public class Expression {
 		return stack.pop().stripTrailingZeros();
 	}
 
+	/**
+	 * Operators and functions supported by the long evaluation of a
+	 * {@link Program}; the position on the array is used as code.
+	 */
+	private static final String[] LONG_OPERATORS = { "+", "-", "*", "/", "%",
+			"&&", "||", ">", ">=", "<", "<=", "=", "==", "!=", "!", "<>" };
+	private static final String[] LONG_FUNCTIONS = { "NOT", "IF", "MIN",
+			"MAX", "ABS" };
+
+	/**
+	 * Marker of a value that cannot be obtained by the long evaluation.
+	 */
+	private static final long NO_LONG = Long.MIN_VALUE;
+
+	/**
+	 * Compiles the expression, to be evaluated repeatedly for different values
+	 * of the given variable. The expression is tokenized and converted to RPN
+	 * just once, and its operators, functions and constants are resolved into
+	 * a tree of nodes.
+	 * 
+	 * @param variable
+	 *            The variable whose value is given on each evaluation.
+	 * @return The compiled expression.
+	 * @throws ParseException
+	 *             If the expression is not valid.
+	 */
+	public Program compile(String variable) throws ParseException {
+		Stack<Node> stack = new Stack<Node>();
+		setVariable(variable, BigDecimal.ZERO);
+		try {
+			for (String token : getRPN()) {
+				if (operators.containsKey(token)) {
+					Node right = stack.pop();
+					Node left = stack.pop();
+					stack.push(new OperatorNode(operators.get(token), left,
+							right));
+				} else if (variable.equals(token)) {
+					stack.push(new VariableNode());
+				} else if (variables.containsKey(token)) {
+					stack.push(new ConstantNode(variables.get(token).round(mc)));
+				} else if (functions.containsKey(token.toUpperCase())) {
+					Function f = functions.get(token.toUpperCase());
+					Node[] parameters = new Node[f.getNumParams()];
+					for (int i = parameters.length - 1; i >= 0; i--) {
+						parameters[i] = stack.pop();
+					}
+					stack.push(new FunctionNode(f, parameters));
+				} else {
+					stack.push(new ConstantNode(new BigDecimal(token, mc)));
+				}
+			}
+			return new Program(stack.pop());
+		} catch (EmptyStackException e) {
+			throw new ParseException("", 0);
+		} catch (RuntimeException e) {
+			// unknown operators, mismatched parentheses, invalid numbers
+			throw new ParseException("", 0);
+		}
+	}
+
+	/**
+	 * Expression compiled for repeated evaluations, see
+	 * {@link Expression#compile(String)}. It can be evaluated concurrently
+	 * from several threads.
+	 * <br>
+	 * Integral values are evaluated with primitive longs, as long as the
+	 * operands and the intermediate results have no more digits than the
+	 * precision: in that range, the long arithmetic produces exactly the same
+	 * results as the BigDecimal one. Otherwise, or if the expression includes
+	 * other operators or functions, the evaluation uses BigDecimal values.
+	 */
+	public final class Program {
+
+		private Node root;
+
+		/**
+		 * Exclusive bound of the magnitude of the values on the long
+		 * evaluation.
+		 */
+		private long limit;
+
+		Program(Node root) {
+			this.root = root;
+			int precision = mc.getPrecision();
+			limit = 1000000000L;
+			if (precision > 0 && precision < 9) {
+				limit = 1;
+				while (precision-- > 0) {
+					limit *= 10;
+				}
+			}
+		}
+
+		/**
+		 * Evaluates the expression for the given value of the variable.
+		 * 
+		 * @return The result of the expression.
+		 */
+		public BigDecimal eval(BigDecimal value) {
+			return root.eval(value.round(mc)).stripTrailingZeros();
+		}
+
+		/**
+		 * Returns true if the expression evaluates to one (true) for the given
+		 * value of the variable.
+		 */
+		public boolean isTrue(long value) {
+			if (value > -limit && value < limit) {
+				long ret = root.evalLong(value, limit);
+				if (ret != NO_LONG) {
+					return ret == 1;
+				}
+			}
+			return eval(new BigDecimal(value)).equals(BigDecimal.ONE);
+		}
+
+		/**
+		 * Returns true if the expression evaluates to one (true) for the given
+		 * value of the variable.
+		 */
+		public boolean isTrue(double value) {
+			if (value == Math.rint(value) && Math.abs(value) < limit) {
+				return isTrue((long) value);
+			}
+			return eval(new BigDecimal(value)).equals(BigDecimal.ONE);
+		}
+	}
+
+	/**
+	 * Node of a compiled expression.
+	 */
+	private abstract class Node {
+
+		/**
+		 * Evaluates the node, given the (rounded) value of the variable.
+		 */
+		abstract BigDecimal eval(BigDecimal value);
+
+		/**
+		 * Evaluates the node with primitive longs, returning {@link #NO_LONG}
+		 * if any operand or result falls outside (-limit, limit), or the
+		 * operation is not supported.
+		 */
+		abstract long evalLong(long value, long limit);
+	}
+
+	/**
+	 * The variable of a compiled expression.
+	 */
+	private class VariableNode extends Node {
+
+		@Override
+		BigDecimal eval(BigDecimal value) {
+			return value;
+		}
+
+		@Override
+		long evalLong(long value, long limit) {
+			return value;
+		}
+	}
+
+	/**
+	 * A number or a constant variable on a compiled expression.
+	 */
+	private class ConstantNode extends Node {
+		private BigDecimal value;
+		private long longValue = NO_LONG;
+
+		ConstantNode(BigDecimal value) {
+			this.value = value;
+			if (value.scale() == 0 && value.precision() < 19) {
+				longValue = value.longValue();
+			}
+		}
+
+		@Override
+		BigDecimal eval(BigDecimal variable) {
+			return value;
+		}
+
+		@Override
+		long evalLong(long variable, long limit) {
+			return (longValue > -limit && longValue < limit) ? longValue
+					: NO_LONG;
+		}
+	}
+
+	/**
+	 * An operator on a compiled expression.
+	 */
+	private class OperatorNode extends Node {
+		private Operator operator;
+		private Node left;
+		private Node right;
+		private int code;
+
+		OperatorNode(Operator operator, Node left, Node right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+			this.code = Arrays.asList(LONG_OPERATORS).indexOf(
+					operator.getOper());
+		}
+
+		@Override
+		BigDecimal eval(BigDecimal value) {
+			return operator.eval(left.eval(value), right.eval(value));
+		}
+
+		@Override
+		long evalLong(long value, long limit) {
+			if (code == -1) {
+				return NO_LONG;
+			}
+			long v1 = left.evalLong(value, limit);
+			if (v1 == NO_LONG) {
+				return NO_LONG;
+			}
+			long v2 = right.evalLong(value, limit);
+			if (v2 == NO_LONG) {
+				return NO_LONG;
+			}
+			long ret;
+			switch (code) {
+			case 0:
+				ret = v1 + v2;
+				break;
+			case 1:
+				ret = v1 - v2;
+				break;
+			case 2:
+				ret = v1 * v2;
+				break;
+			case 3:
+				// only exact divisions, the BigDecimal rounding otherwise
+				if (v2 == 0 || v1 % v2 != 0) {
+					return NO_LONG;
+				}
+				ret = v1 / v2;
+				break;
+			case 4:
+				if (v2 == 0) {
+					return NO_LONG;
+				}
+				ret = v1 % v2;
+				break;
+			case 5:
+				return (v1 != 0 && v2 != 0) ? 1 : 0;
+			case 6:
+				return (v1 != 0 || v2 != 0) ? 1 : 0;
+			case 7:
+				return v1 > v2 ? 1 : 0;
+			case 8:
+				return v1 >= v2 ? 1 : 0;
+			case 9:
+				return v1 < v2 ? 1 : 0;
+			case 10:
+				return v1 <= v2 ? 1 : 0;
+			case 11:
+			case 12:
+				return v1 == v2 ? 1 : 0;
+			default:
+				return v1 != v2 ? 1 : 0;
+			}
+			return (ret > -limit && ret < limit) ? ret : NO_LONG;
+		}
+	}
+
+	/**
+	 * A function on a compiled expression.
+	 */
+	private class FunctionNode extends Node {
+		private Function function;
+		private Node[] parameters;
+		private int code;
+
+		FunctionNode(Function function, Node[] parameters) {
+			this.function = function;
+			this.parameters = parameters;
+			this.code = Arrays.asList(LONG_FUNCTIONS).indexOf(
+					function.getName());
+		}
+
+		@Override
+		BigDecimal eval(BigDecimal value) {
+			List<BigDecimal> p = new ArrayList<BigDecimal>(parameters.length);
+			for (Node node : parameters) {
+				p.add(node.eval(value));
+			}
+			return function.eval(p);
+		}
+
+		@Override
+		long evalLong(long value, long limit) {
+			if (code == -1) {
+				return NO_LONG;
+			}
+			long[] p = new long[parameters.length];
+			for (int i = 0; i < p.length; i++) {
+				p[i] = parameters[i].evalLong(value, limit);
+				if (p[i] == NO_LONG) {
+					return NO_LONG;
+				}
+			}
+			switch (code) {
+			case 0:
+				return p[0] == 0 ? 1 : 0;
+			case 1:
+				return p[0] != 0 ? p[1] : p[2];
+			case 2:
+				return Math.min(p[0], p[1]);
+			case 3:
+				return Math.max(p[0], p[1]);
+			default:
+				return Math.abs(p[0]);
+			}
+		}
+	}
+
 	/**
 	 * Sets the precision for expression evaluation.
 	 * 
@@ -0,0 +1,447 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.parser;
+
+/**
+ * Matcher of wildcard expressions, where '*' stands for any sequence of
+ * characters, and '?' for any single character; both can be escaped with a
+ * backslash, which escapes as well itself.<br>
+ * Expressions reduced to a literal, prefix ("abc*"), suffix ("*abc") or
+ * contained ("*abc*") string are matched by direct comparison; any other is
+ * simulated as a non deterministic automaton, one bit per state, in linear
+ * time. No regular expressions are involved, and matching requires no
+ * allocation, so the same matcher can be used concurrently.<br>
+ * Ignoring case follows the rules of {@link java.util.regex.Pattern} with
+ * the flags CASE_INSENSITIVE and UNICODE_CASE: two characters are equal if
+ * their lower case of their upper case is equal.
+ */
+abstract class GlobMatcher {
+
+    /** Case folding of the ascii characters. */
+    private static final char ASCII_FOLD[] = new char[128];
+
+    /** Returns true if the given string matches the wildcard expression. */
+    public abstract boolean matches(String s);
+
+    /**
+     * Creates the matcher for the wildcard expression.
+     *
+     * @param  expression  the wildcard expression
+     * @param  instant     true to consider a final '*', if missing
+     * @param  ignoreCase  true to ignore case differences
+     */
+    public static GlobMatcher create(String  expression,
+                                     boolean instant,
+                                     boolean ignoreCase) {
+        // tokens: code points, or -1 for '?', or -2 for '*'
+        int tokens[] = new int[expression.length() + 1];
+        int size = 0;
+        int stars = 0;
+        int anys = 0;
+        boolean surrogates = false;
+        boolean escaped = false;
+        for (int i = 0; i < expression.length();) {
+            int c = expression.codePointAt(i);
+            i += Character.charCount(c);
+            if ((c == '\\') && !escaped) {
+                escaped = true;
+            } else {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '*') {
+                    c = -2;
+                } else if (c == '?') {
+                    c = -1;
+                }
+
+                if (c == -2) {
+                    if ((size > 0) && (tokens[size - 1] == -2)) {
+                        continue;
+                    }
+
+                    stars++;
+                } else if (c == -1) {
+                    anys++;
+                } else {
+                    // literals are compared as chars, if all in the BMP
+                    surrogates |= (c >= Character.MIN_SURROGATE)
+                        && ((c <= Character.MAX_SURROGATE) || (c > 0xffff));
+                    c = ignoreCase ? fold(c) : c;
+                }
+
+                tokens[size++] = c;
+            }
+        }
+
+        if (instant && ((size == 0) || (tokens[size - 1] != -2))) {
+            tokens[size++] = -2;
+            stars++;
+        }
+
+        if ((anys == 0) && !surrogates) {
+            boolean lead = (size > 0) && (tokens[0] == -2);
+            boolean trail = (size > 0) && (tokens[size - 1] == -2);
+            int from = lead ? 1 : 0;
+            int to = trail ? (size - 1) : size;
+            if (stars == ((lead ? 1 : 0) + ((trail && (to >= from)) ? 1 : 0))) {
+                char literal[] = new char[Math.max(0, to - from)];
+                for (int i = from; i < to; i++) {
+                    literal[i - from] = (char) tokens[i];
+                }
+
+                if (stars == 0) {
+                    return new Exact(literal, ignoreCase);
+                }
+
+                if (literal.length == 0) {
+                    return new All();
+                }
+
+                if (lead && trail) {
+                    return new Contains(literal, ignoreCase);
+                }
+
+                return lead ? new Suffix(literal, ignoreCase)
+                            : new Prefix(literal, ignoreCase);
+            }
+        }
+
+        if ((size - stars) < 64) {
+            return new Automaton(tokens, size, ignoreCase);
+        }
+
+        return new Backtracking(tokens, size, ignoreCase);
+    }
+
+    /** Returns the case folding of a code point. */
+    static int fold(int c) {
+        return (c < 128) ? ASCII_FOLD[c]
+                         : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /** Returns the case folding of a character. */
+    static char fold(char c) {
+        return (c < 128) ? ASCII_FOLD[c]
+                         : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Returns true if the region of the string starting at offset matches
+     * the literal, which is already folded if ignoring case.
+     */
+    static boolean regionMatches(String  s,
+                                 int     offset,
+                                 char    literal[],
+                                 boolean ignoreCase) {
+        int length = literal.length;
+        if (ignoreCase) {
+            for (int i = 0; i < length; i++) {
+                if (fold(s.charAt(offset + i)) != literal[i]) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(offset + i) != literal[i]) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /** Matcher for expressions containing only '*'. */
+    static final class All extends GlobMatcher {
+        @Override public boolean matches(String s) {
+            return true;
+        }
+    }
+
+    /** Matcher for expressions without wildcards. */
+    static final class Exact extends GlobMatcher {
+        private final char literal[];
+        private final boolean ignoreCase;
+
+        Exact(char literal[], boolean ignoreCase) {
+            this.literal = literal;
+            this.ignoreCase = ignoreCase;
+        }
+
+        @Override public boolean matches(String s) {
+            return (s.length() == literal.length)
+                    && regionMatches(s, 0, literal, ignoreCase);
+        }
+    }
+
+    /** Matcher for expressions like 'abc*'. */
+    static final class Prefix extends GlobMatcher {
+        private final char literal[];
+        private final boolean ignoreCase;
+
+        Prefix(char literal[], boolean ignoreCase) {
+            this.literal = literal;
+            this.ignoreCase = ignoreCase;
+        }
+
+        @Override public boolean matches(String s) {
+            return (s.length() >= literal.length)
+                    && regionMatches(s, 0, literal, ignoreCase);
+        }
+    }
+
+    /** Matcher for expressions like '*abc'. */
+    static final class Suffix extends GlobMatcher {
+        private final char literal[];
+        private final boolean ignoreCase;
+
+        Suffix(char literal[], boolean ignoreCase) {
+            this.literal = literal;
+            this.ignoreCase = ignoreCase;
+        }
+
+        @Override public boolean matches(String s) {
+            int offset = s.length() - literal.length;
+
+            return (offset >= 0)
+                    && regionMatches(s, offset, literal, ignoreCase);
+        }
+    }
+
+    /**
+     * Matcher for expressions like '*abc*', using the Boyer-Moore-Horspool
+     * search.
+     */
+    static final class Contains extends GlobMatcher {
+        private final char literal[];
+        private final boolean ignoreCase;
+        /** Shifts, by the low byte of the character, for mismatches. */
+        private final int shifts[] = new int[256];
+
+        Contains(char literal[], boolean ignoreCase) {
+            this.literal = literal;
+            this.ignoreCase = ignoreCase;
+
+            int last = literal.length - 1;
+            for (int i = 0; i < 256; i++) {
+                shifts[i] = literal.length;
+            }
+
+            // characters sharing the low byte keep the smallest shift
+            for (int i = 0; i < last; i++) {
+                shifts[literal[i] & 0xff] = last - i;
+            }
+        }
+
+        @Override public boolean matches(String s) {
+            int last = literal.length - 1;
+            int end = s.length() - last;
+            char tail = literal[last];
+            for (int i = 0; i < end;) {
+                char c = s.charAt(i + last);
+                if (ignoreCase) {
+                    c = fold(c);
+                }
+
+                if ((c == tail) && regionMatches(s, i, literal, ignoreCase)) {
+                    return true;
+                }
+
+                i += shifts[c & 0xff];
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Simulation of the automaton recognizing the expression: the state i is
+     * reached when the first i non '*' tokens are matched, and a '*' is a
+     * loop on the state preceding it. The active states are kept as bits.
+     */
+    static final class Automaton extends GlobMatcher {
+        private final boolean ignoreCase;
+        /** The states consumed by each ascii character. */
+        private final long ascii[] = new long[128];
+        /** Any other character in the expression, and its states. */
+        private final int others[];
+        private final long otherStates[];
+        /** States consumed by any character, for the '?' tokens. */
+        private final long anyStates;
+        /** States with a loop, for the '*' tokens. */
+        private final long loops;
+        private final long accept;
+
+        Automaton(int tokens[], int size, boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+
+            long any = 0;
+            long loop = 0;
+            int state = 0;
+            int otherCount = 0;
+            int otherChars[] = new int[size];
+            long otherMasks[] = new long[size];
+            for (int i = 0; i < size; i++) {
+                int token = tokens[i];
+                if (token == -2) {
+                    loop |= 1L << state;
+                } else {
+                    long bit = 1L << ++state;
+                    if (token == -1) {
+                        any |= bit;
+                    } else if (token < 128) {
+                        ascii[token] |= bit;
+                    } else {
+                        int j = 0;
+                        while ((j < otherCount) && (otherChars[j] != token)) {
+                            j++;
+                        }
+
+                        if (j == otherCount) {
+                            otherChars[otherCount++] = token;
+                        }
+
+                        otherMasks[j] |= bit;
+                    }
+                }
+            }
+
+            for (int i = 0; i < 128; i++) {
+                ascii[i] |= any;
+            }
+
+            others = new int[otherCount];
+            otherStates = new long[otherCount];
+            for (int i = 0; i < otherCount; i++) {
+                others[i] = otherChars[i];
+                otherStates[i] = otherMasks[i] | any;
+            }
+
+            anyStates = any;
+            loops = loop;
+            accept = 1L << state;
+        }
+
+        @Override public boolean matches(String s) {
+            long active = 1;
+            int length = s.length();
+            for (int i = 0; (i < length) && (active != 0);) {
+                int c = s.charAt(i++);
+                if (Character.isHighSurrogate((char) c) && (i < length)
+                        && Character.isLowSurrogate(s.charAt(i))) {
+                    c = Character.toCodePoint((char) c, s.charAt(i++));
+                }
+
+                active = ((active << 1) & states(c)) | (active & loops);
+            }
+
+            return (active & accept) != 0;
+        }
+
+        /** Returns the states consumed by the given code point. */
+        private long states(int c) {
+            if (ignoreCase) {
+                c = fold(c);
+            }
+
+            if (c < 128) {
+                return ascii[c];
+            }
+
+            for (int i = 0; i < others.length; i++) {
+                if (others[i] == c) {
+                    return otherStates[i];
+                }
+            }
+
+            return anyStates;
+        }
+    }
+
+    /**
+     * Matcher for expressions too long for the automaton, backtracking to the
+     * last '*' on mismatches.
+     */
+    static final class Backtracking extends GlobMatcher {
+        private final int tokens[];
+        private final boolean ignoreCase;
+
+        Backtracking(int tokens[], int size, boolean ignoreCase) {
+            this.tokens = new int[size];
+            this.ignoreCase = ignoreCase;
+            System.arraycopy(tokens, 0, this.tokens, 0, size);
+        }
+
+        @Override public boolean matches(String s) {
+            int length = s.length();
+            int t = 0;
+            int i = 0;
+            int starToken = -1;
+            int starPosition = 0;
+            while (i < length) {
+                int c = s.codePointAt(i);
+                if (t < tokens.length) {
+                    int token = tokens[t];
+                    if (token == -2) {
+                        starToken = t++;
+                        starPosition = i;
+
+                        continue;
+                    }
+
+                    if ((token == -1)
+                            || (token == (ignoreCase ? fold(c) : c))) {
+                        t++;
+                        i += Character.charCount(c);
+
+                        continue;
+                    }
+                }
+
+                if (starToken < 0) {
+                    return false;
+                }
+
+                t = starToken + 1;
+                starPosition += Character.charCount(s.codePointAt(
+                            starPosition));
+                i = starPosition;
+            }
+
+            while ((t < tokens.length) && (tokens[t] == -2)) {
+                t++;
+            }
+
+            return t == tokens.length;
+        }
+    }
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            ASCII_FOLD[c] = Character.toLowerCase(Character.toUpperCase(c));
+        }
+    }
+}
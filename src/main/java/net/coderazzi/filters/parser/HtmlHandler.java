@@ -27,12 +27,11 @@ package net.coderazzi.filters.parser;
 
 /**
  * Class to handle HTML content, required to remove HTML tags and to convert
- * HTML special characters (like &amp;) to Java characters
+ * HTML special characters (like &amp;) to Java characters.<br>
+ * It keeps no state, so that a single instance can be used concurrently.
  */
 class HtmlHandler {
 
-	private StringBuffer buffer = new StringBuffer();
-
 	/**
 	 * Converts an String to the corresponding string without HTML 
 	 * information.
@@ -50,7 +49,7 @@ class HtmlHandler {
 		char quoteChar = '"';
 		int entityPos = -1;
 
-		buffer.delete(0, buffer.length());
+		StringBuilder buffer = new StringBuilder(inner.length());
 		for (char c : inner.toCharArray()) {
 			if (c == '<') {
 				inTag = true;
@@ -74,7 +73,7 @@ class HtmlHandler {
 				} else if (c == ';' && entityPos != -1) {
 					int len = buffer.length();
 					if (len > entityPos + 2) {
-						int entityValue = getEntityValue(entityPos + 1);
+						int entityValue = getEntityValue(buffer, entityPos + 1);
 						if (entityValue > 0 && entityValue < 65536) {
 							buffer.delete(entityPos, len);
 							c = (char) entityValue;
@@ -88,11 +87,11 @@ class HtmlHandler {
 	}
 
 	/**
-	 * Returns the integer associated to the entity stored in the StringBuffer,
+	 * Returns the integer associated to the entity stored in the buffer,
 	 * starting at the passed position (until the end of the buffer).
 	 * @return -1 if it is not a valid html entity
 	 */
-	private int getEntityValue(int start) {
+	private int getEntityValue(StringBuilder buffer, int start) {
 		if (buffer.charAt(start) == '#') {
 			char hex = buffer.charAt(start);
 			try {
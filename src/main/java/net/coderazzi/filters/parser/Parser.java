@@ -25,12 +25,13 @@
 
 package net.coderazzi.filters.parser;
 
-import java.math.BigDecimal;
 import java.text.Format;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -78,9 +79,25 @@ import net.coderazzi.filters.IParser;
  * </ul>
  *
  * <p>In addition, providing no operator will behave as the operator ~</p>
+ *
+ * <p>The parser and the filters it creates can be used concurrently from
+ * several threads, provided that the given {@link Comparator} instances are
+ * thread safe: formats are copied for each thread.</p>
  */
 public class Parser implements IParser {
 
+    /**
+     * Comparator following the natural order of {@link Comparable} instances.
+     * Filters on numeric columns using this comparator compare the values
+     * unboxed.
+     */
+    public static final Comparator NATURAL_ORDER =
+        new Comparator<Comparable>() {
+            @Override public int compare(Comparable o1, Comparable o2) {
+                return o1.compareTo(o2);
+            }
+        };
+
     FormatWrapper format;
     Comparator comparator;
     boolean ignoreCase;
@@ -91,7 +108,6 @@ public class Parser implements IParser {
     private static IOperand wildcardOperand;
     private static WildcardOperand instantOperand;
     private static Pattern expressionMatcher;
-    private static StringBuilder escapeBuffer = new StringBuilder();
     private static Pattern rangePattern;
     private static Pattern mathPattern;
     public Parser(Format             format,
@@ -114,12 +130,9 @@ public class Parser implements IParser {
 			
 			@Override
 			public RowFilter<TableModel, Integer> eval(Object v1, Object v2) throws ParseException {
-				ArrayList<RowFilter<TableModel, Integer>> filterList = new ArrayList<RowFilter<TableModel, Integer>>();
 				v1 = v1 instanceof String ? parseSubtext((String)v1) : v1;
 				v2 = v2 instanceof String ? parseSubtext((String)v2) : v2;
-				filterList.add((RowFilter<TableModel, Integer>)v1);
-				filterList.add((RowFilter<TableModel, Integer>)v2);
-				return RowFilter.andFilter(filterList);
+				return LogicalFilter.create(true, (RowFilter) v1, (RowFilter) v2);
 			}
 		});
     	
@@ -127,12 +140,9 @@ public class Parser implements IParser {
 			
 			@Override
 			public RowFilter<TableModel, Integer> eval(Object v1, Object v2) throws ParseException {
-				ArrayList<RowFilter<TableModel, Integer>> filterList = new ArrayList<RowFilter<TableModel, Integer>>();
 				v1 = v1 instanceof String ? parseSubtext((String)v1) : v1;
 				v2 = v2 instanceof String ? parseSubtext((String)v2) : v2;
-				filterList.add((RowFilter<TableModel, Integer>)v1);
-				filterList.add((RowFilter<TableModel, Integer>)v2);
-				return RowFilter.orFilter(filterList);
+				return LogicalFilter.create(false, (RowFilter) v1, (RowFilter) v2);
 			}
 		});
     	
@@ -153,6 +163,11 @@ public class Parser implements IParser {
     		try{
     			return new RangeFilter(Double.parseDouble(rangeMatcher.group(1)), Double.parseDouble(rangeMatcher.group(2)), modelIndex);
     		}catch(NumberFormatException nfe){
+    			RowFilter dates = createDateRange(rangeMatcher.group(1).trim(),
+    					rangeMatcher.group(2).trim());
+    			if (dates != null) {
+    				return dates;
+    			}
     			throw new ParseException("operand missing", Math.max(expression.indexOf(rangeMatcher.group(1)), expression.indexOf(rangeMatcher.group(2))));
     		}
     	}
@@ -176,6 +191,29 @@ public class Parser implements IParser {
         throw new ParseException("", 0);
     }
 
+    /**
+     * Creates a range of dates, with the granularity of the comparator, or
+     * returns null if the column or the operands are not dates.
+     */
+    private RowFilter createDateRange(String min, String max) {
+        DateComparator.KeyComparator dates = UnboxedComparator.getDateKeys(
+                comparator);
+        if (dates != null) {
+            try {
+                Object from = format.parseObject(min);
+                Object to = format.parseObject(max);
+                if ((from instanceof Date) && (to instanceof Date)) {
+                    return new RangeFilter((Date) from, (Date) to, dates,
+                            modelIndex);
+                }
+            } catch (ParseException pex) {
+                // not a range of dates
+            }
+        }
+
+        return null;
+    }
+
     /** {@link IParser} interface. */
     @Override public InstantFilter parseInstantText(String expression)
                                              throws ParseException {
@@ -208,8 +246,13 @@ public class Parser implements IParser {
     /** {@link IParser} interface. */
     @Override public String escape(String expression) {
     	expression = expression.trim();
+        if (!requiresEscape(expression)) {
+            return expression;
+        }
+
         Matcher matcher = expressionMatcher.matcher(expression);
         if (matcher.matches()) {
+            StringBuilder escapeBuffer = new StringBuilder();
             String operator = matcher.group(1);
             int lastAdded = 0;
             if (operator != null) {
@@ -230,62 +273,186 @@ public class Parser implements IParser {
             if (escapeBuffer.length() > 0) {
                 escapeBuffer.append(expression.substring(lastAdded, total));
                 expression = escapeBuffer.toString();
-                escapeBuffer.delete(0, escapeBuffer.length());
             }
         }
 
         return expression;
     }
 
+    /**
+     * Returns true if the trimmed expression starts with an operator, or
+     * contains wildcards or backslashes.
+     */
+    private static boolean requiresEscape(String expression) {
+        int total = expression.length();
+        if ((total > 0) && ("<>=!~".indexOf(expression.charAt(0)) >= 0)) {
+            return true;
+        }
+
+        for (int i = 0; i < total; i++) {
+            char ch = expression.charAt(i);
+            if ((ch == '*') || (ch == '?') || (ch == '\\')) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /** Internal interface, to be implemented by all operands. */
     interface IOperand {
         RowFilter create(Parser self, String right) throws ParseException;
     }
 
-    /** IOperand for comparison operations. */
+    /**
+     * IOperand for arithmetic expressions on the column value ($). The
+     * expression is compiled once, when the filter is created.
+     */
     static class MathOperand implements IOperand {
 
         /** {@link IOperand} interface. */
         @Override public RowFilter create(final Parser self, final String right)
                                    throws ParseException {
-        	
-        	return new RowFilter() {
+            final Expression.Program program = new Expression(right).compile(
+                    "$");
+
+        	return new ColumnFilter() {
                 @Override public boolean include(Entry entry){
                     Object left = entry.getValue(self.modelIndex);
                     if(left == null){
                     	return false;
                     }
-                    BigDecimal b = left instanceof Integer ? new BigDecimal((Integer)left):new BigDecimal((Double)left);
-                    Expression e = new Expression(right).with("$", b);
-                    try {
-						return e.eval().equals(BigDecimal.ONE);
-					} catch (ParseException e1) {
-						System.out.println("operand missing");
-					}
-                    return false;
+                    return left instanceof Integer
+                        ? program.isTrue(((Integer) left).longValue())
+                        : program.isTrue(((Double) left).doubleValue());
                 }
             };
         }
     }
 
 
+    /**
+     * Filter for the && and || operators. Chains of the same operator are
+     * fused into a single filter, evaluating its operands in order, and
+     * stopping as soon as the outcome is known.
+     */
+    static class LogicalFilter extends RowFilter {
+        private RowFilter filters[];
+        private boolean and;
+
+        LogicalFilter(boolean and, RowFilter filters[]) {
+            this.and = and;
+            this.filters = filters;
+        }
+
+        /**
+         * Creates the filter for the given operator; it depends only on the
+         * column's value if both operands do.
+         */
+        static LogicalFilter create(boolean   and,
+                                    RowFilter left,
+                                    RowFilter right) {
+            RowFilter l[] = operands(and, left);
+            RowFilter r[] = operands(and, right);
+            RowFilter filters[] = new RowFilter[l.length + r.length];
+            System.arraycopy(l, 0, filters, 0, l.length);
+            System.arraycopy(r, 0, filters, l.length, r.length);
+            if ((left instanceof ValueFilter) && (right instanceof ValueFilter)) {
+                return new ValueLogicalFilter(and, filters);
+            }
+
+            return new LogicalFilter(and, filters);
+        }
+
+        /** Returns the operands of the filter, if fused with the operator. */
+        private static RowFilter[] operands(boolean and, RowFilter filter) {
+            if ((filter instanceof LogicalFilter)
+                    && (((LogicalFilter) filter).and == and)) {
+                return ((LogicalFilter) filter).filters;
+            }
+
+            return new RowFilter[] { filter };
+        }
+
+        @Override public boolean include(Entry entry) {
+            for (int i = 0; i < filters.length; i++) {
+                if (filters[i].include(entry) != and) {
+                    return !and;
+                }
+            }
+
+            return and;
+        }
+    }
+
+    /** LogicalFilter whose operands depend only on the column's value. */
+    static class ValueLogicalFilter extends LogicalFilter
+        implements ValueFilter {
+
+        ValueLogicalFilter(boolean and, RowFilter filters[]) {
+            super(and, filters);
+        }
+    }
+
+    /**
+     * Filter depending only on the value of the parser's column, see
+     * {@link ValueFilter}.
+     */
+    abstract static class ColumnFilter extends RowFilter
+        implements ValueFilter {
+    }
+
+    /**
+     * Filter created by an operand. Filters created by the same parser can
+     * detect refinements, see {@link RefiningFilter}.
+     */
+    abstract static class OperandFilter extends ColumnFilter
+        implements RefiningFilter {
+
+        private Parser parser;
+
+        OperandFilter(Parser parser) {
+            this.parser = parser;
+        }
+
+        /** {@link RefiningFilter} interface. */
+        @Override public boolean refines(RowFilter filter) {
+            return (filter instanceof OperandFilter)
+                    && (((OperandFilter) filter).parser == parser)
+                    && narrows((OperandFilter) filter);
+        }
+
+        /**
+         * Returns true if this filter includes only rows included by the
+         * given filter, created by the same parser.
+         */
+        abstract boolean narrows(OperandFilter filter);
+    }
+
     /** IOperand for comparison operations. */
     abstract static class ComparisonOperand implements IOperand {
         abstract boolean matches(int comparison);
 
+        /**
+         * Returns true if a filter created by this operand refines a previous
+         * one, given the comparison between their right operands.
+         */
+        abstract boolean refines(int comparison);
+
         /** {@link IOperand} interface. */
         @Override public RowFilter create(Parser self, String right)
                                    throws ParseException {
 
             if (right != null) {
                 if (self.comparator == null) {
-                    return createStringOperator(right, self.modelIndex,
+                    return createStringOperator(self, right, self.modelIndex,
                             self.format, self.stringComparator);
                 }
 
                 Object o = self.format.parseObject(right);
                 if (o != null) {
-                    return createOperator(o, self.modelIndex, self.comparator);
+                    return createOperator(self, o, self.modelIndex,
+                            self.comparator);
                 }
             }
 
@@ -293,28 +460,22 @@ public class Parser implements IParser {
         }
 
         /** Operator fine for given type, apply it. */
-        private RowFilter createOperator(final Object     right,
-                                         final int        modelIndex,
-                                         final Comparator comparator) {
-            return new RowFilter() {
-                @Override public boolean include(Entry entry) {
-                    Object left = entry.getValue(modelIndex);
-                    if (left instanceof String){
-                    	left = htmlHandler.stripHtml((String)left);
-                    }
-                    return (left != null)
-                            && matches(comparator.compare(left, right));
-                }
-            };
+        private RowFilter createOperator(Parser     self,
+                                         Object     right,
+                                         int        modelIndex,
+                                         Comparator comparator) {
+            return new TypedComparisonFilter(self, right, modelIndex,
+                    comparator);
         }
 
         /** Operator invalid for given type, filter by string representation. */
         private RowFilter createStringOperator(
+                final Parser        self,
                 final String        right,
                 final int           modelIndex,
                 final FormatWrapper format,
                 final Comparator    stringComparator) {
-            return new RowFilter() {
+            return new ComparisonFilter(self, right, stringComparator) {
                 @Override public boolean include(Entry entry) {
                     Object left = entry.getValue(modelIndex);
                     if (left == null) {
@@ -328,6 +489,96 @@ public class Parser implements IParser {
                 }
             };
         }
+
+        /**
+         * Filter created by this operand: it refines previous filters with
+         * the same operator and a looser bound.
+         */
+        abstract class ComparisonFilter extends OperandFilter {
+            Object right;
+            Comparator comparator;
+
+            ComparisonFilter(Parser self, Object right, Comparator comparator) {
+                super(self);
+                this.right = right;
+                this.comparator = comparator;
+            }
+
+            /** {@link OperandFilter} interface. */
+            @Override boolean narrows(OperandFilter filter) {
+                if (filter instanceof ComparisonFilter) {
+                    ComparisonFilter cf = (ComparisonFilter) filter;
+
+                    return (cf.getOperand() == getOperand())
+                            && (cf.comparator == comparator)
+                            && getOperand().refines(
+                                    comparator.compare(right, cf.right));
+                }
+
+                return false;
+            }
+
+            private ComparisonOperand getOperand() {
+                return ComparisonOperand.this;
+            }
+        }
+
+        /**
+         * ComparisonFilter on the column's type. Numbers and dates are
+         * compared unboxed, if possible.
+         */
+        final class TypedComparisonFilter extends ComparisonFilter
+            implements OrderedFilter {
+            private int modelIndex;
+            private UnboxedComparator unboxed;
+            private int outcomes;
+
+            TypedComparisonFilter(Parser     self,
+                                  Object     right,
+                                  int        modelIndex,
+                                  Comparator comparator) {
+                super(self, right, comparator);
+                this.modelIndex = modelIndex;
+                this.unboxed = UnboxedComparator.create(right, comparator);
+                this.outcomes = UnboxedComparator.outcomes(matches(-1),
+                        matches(0), matches(1));
+            }
+
+            @Override public boolean include(Entry entry) {
+                Object left = entry.getValue(modelIndex);
+                if (unboxed != null) {
+                    int c = unboxed.compare(left);
+                    if (c != UnboxedComparator.NONE) {
+                        return ((outcomes >> (c + 1)) & 1) != 0;
+                    }
+                }
+
+                if (left instanceof String){
+                	left = htmlHandler.stripHtml((String)left);
+                }
+                return (left != null)
+                        && matches(comparator.compare(left, right));
+            }
+
+            /** {@link OrderedFilter} interface. */
+            @Override public boolean isOrdered(Class<?>   type,
+                                               Comparator comparator) {
+                return (comparator == this.comparator)
+                        && (type == right.getClass()) && (type != String.class)
+                        && UnboxedComparator.isContiguous(outcomes);
+            }
+
+            /** {@link OrderedFilter} interface. */
+            @Override public int locate(Object value) {
+                int c = (unboxed == null) ? UnboxedComparator.NONE
+                                          : unboxed.compare(value);
+                if (c == UnboxedComparator.NONE) {
+                    c = Integer.signum(comparator.compare(value, right));
+                }
+
+                return UnboxedComparator.locate(outcomes, c);
+            }
+        }
     }
 
     /** IOperand for equal/unequal operations. */
@@ -366,25 +617,15 @@ public class Parser implements IParser {
         }
 
         /** Operator fine for given type, apply it. */
-        private RowFilter createOperator(final Object     right,
-                                         final int        modelIndex,
-                                         final Comparator comparator) {
-            return new RowFilter() {
-                @Override public boolean include(Entry entry) {
-                    Object left = entry.getValue(modelIndex);
-                    if (left instanceof String){
-                    	left = htmlHandler.stripHtml((String)left);
-                    }
-                    boolean value = (left != null)
-                            && (0 == comparator.compare(left, right));
-                    return value == expected;
-                }
-            };
+        private RowFilter createOperator(Object     right,
+                                         int        modelIndex,
+                                         Comparator comparator) {
+            return new TypedEqualFilter(right, modelIndex, comparator);
         }
 
         /** No right operand give, comparing against 'null'. */
         private RowFilter createNullOperator(final int modelIndex) {
-            return new RowFilter() {
+            return new ColumnFilter() {
                 @Override public boolean include(Entry entry) {
                     Object left = entry.getValue(modelIndex);
 
@@ -399,16 +640,72 @@ public class Parser implements IParser {
                 final int           modelIndex,
                 final FormatWrapper format,
                 final Comparator    stringComparator) {
-            return new RowFilter() {
+            return new ColumnFilter() {
                 @Override public boolean include(Entry entry) {
                     Object left = entry.getValue(modelIndex);
                     String value = format.format(left);
 
-                    return expected = (stringComparator.compare(value, right)
+                    return expected == (stringComparator.compare(value, right)
                                     == 0);
                 }
             };
         }
+
+        /**
+         * Filter comparing the values on the column's type. Numbers and dates
+         * are compared unboxed, if possible.
+         */
+        final class TypedEqualFilter extends ColumnFilter
+            implements OrderedFilter {
+            private Object right;
+            private int modelIndex;
+            private Comparator comparator;
+            private UnboxedComparator unboxed;
+
+            TypedEqualFilter(Object right, int modelIndex,
+                             Comparator comparator) {
+                this.right = right;
+                this.modelIndex = modelIndex;
+                this.comparator = comparator;
+                this.unboxed = UnboxedComparator.create(right, comparator);
+            }
+
+            @Override public boolean include(Entry entry) {
+                Object left = entry.getValue(modelIndex);
+                if (unboxed != null) {
+                    int c = unboxed.compare(left);
+                    if (c != UnboxedComparator.NONE) {
+                        return (c == 0) == expected;
+                    }
+                }
+
+                if (left instanceof String){
+                	left = htmlHandler.stripHtml((String)left);
+                }
+                boolean value = (left != null)
+                        && (0 == comparator.compare(left, right));
+                return value == expected;
+            }
+
+            /**
+             * {@link OrderedFilter} interface; only the equal operation
+             * includes contiguous values.
+             */
+            @Override public boolean isOrdered(Class<?>   type,
+                                               Comparator comparator) {
+                return expected && (comparator == this.comparator)
+                        && (type == right.getClass()) && (type != String.class);
+            }
+
+            /** {@link OrderedFilter} interface. */
+            @Override public int locate(Object value) {
+                int c = (unboxed == null) ? UnboxedComparator.NONE
+                                          : unboxed.compare(value);
+
+                return (c == UnboxedComparator.NONE)
+                    ? Integer.signum(comparator.compare(value, right)) : c;
+            }
+        }
     }
 
     /** Operand for regular expressions. */
@@ -431,7 +728,7 @@ public class Parser implements IParser {
             final Pattern pattern = getPattern(right, self.ignoreCase);
             final int modelIndex = self.modelIndex;
             final FormatWrapper format = self.format;
-            return new RowFilter() {
+            return new PatternFilter(self, pattern.pattern(), equals, null) {
 
                 @Override public boolean include(Entry entry) {
                     Object o = entry.getValue(modelIndex);
@@ -459,11 +756,14 @@ public class Parser implements IParser {
         }
     }
 
-    /** Operand for wildcard expressions. */
+    /**
+     * Operand for wildcard expressions.<br>
+     * Operands are shared by all the parsers, so they keep no state
+     * associated to the last converted expression.
+     */
     static class WildcardOperand extends REOperand {
 
         private boolean instant;
-        private boolean instantApplied;
 
         /** Constructor for instant operand. */
         public WildcardOperand() {
@@ -476,30 +776,100 @@ public class Parser implements IParser {
             super(equals);
         }
 
+        /**
+         * {@link IOperand} interface; the filter uses a {@link GlobMatcher},
+         * not a regular expression.
+         */
+        @Override public RowFilter create(Parser self, String right) {
+            String re = convertToRE(right);
+            if (appliesInstant(re)) {
+                re += ".*";
+            }
+
+            return new WildcardFilter(self, re, equals,
+                    getAppliedExpression(right),
+                    GlobMatcher.create(right, instant, self.ignoreCase),
+                    equals ? getFragments(right) : null);
+        }
+
+        /**
+         * Returns the literal fragments of the wildcard expression, split by
+         * the wildcards, and by any surrogate character.
+         */
+        static String[] getFragments(String expression) {
+            List<String> ret = new ArrayList<String>();
+            StringBuilder fragment = new StringBuilder();
+            boolean escaped = false;
+            for (char c : expression.toCharArray()) {
+                if ((c == '\\') && !escaped) {
+                    escaped = true;
+
+                    continue;
+                }
+
+                if ((!escaped && ((c == '*') || (c == '?')))
+                        || ((c >= Character.MIN_SURROGATE)
+                            && (c <= Character.MAX_SURROGATE))) {
+                    if (fragment.length() > 0) {
+                        ret.add(fragment.toString());
+                        fragment.setLength(0);
+                    }
+                } else {
+                    fragment.append(c);
+                }
+
+                escaped = false;
+            }
+
+            if (fragment.length() > 0) {
+                ret.add(fragment.toString());
+            }
+
+            return ret.toArray(new String[ret.size()]);
+        }
+
+        /**
+         * Returns true if the wildcard expression can only match strings also
+         * matched by the base expression, for being a longer version of the
+         * base expression, when this ends with '*'.
+         */
+        static boolean narrows(String expression, String base) {
+            int prefix = base.length() - 1;
+
+            // the prefix cannot include escape sequences, so that both
+            // expressions are equally converted up to the prefix's end
+            return (prefix >= 0) && (base.charAt(prefix) == '*')
+                    && (base.lastIndexOf('\\', prefix) == -1)
+                    && expression.regionMatches(0, base, 0, prefix);
+        }
+
         /**
          * After the operand is used, this method returns the expression that
          * has been really applied to obtain the filter.
          */
         public String getAppliedExpression(String baseExpression) {
-            if (instantApplied) {
+            if (appliesInstant(convertToRE(baseExpression))) {
                 return baseExpression + "*";
             }
 
             return baseExpression;
         }
 
-        /** {@link REOperand} interface. */
-        @Override protected Pattern getPattern(String  right,
-                                               boolean ignoreCase)
-                                        throws ParseException {
-            return super.getPattern(convertToRE(right), ignoreCase);
+        /**
+         * Returns true if the instant mode appends a final '*' to the
+         * wildcard expression converted into the given regular expression.
+         */
+        private boolean appliesInstant(String re) {
+            return instant && !re.endsWith(".*");
         }
 
-        /** Converts a wildcard expression into a regular expression. */
+        /**
+         * Converts a wildcard expression into a regular expression, used to
+         * compare the filters created by the wildcard operands.
+         */
         protected String convertToRE(String s) {
             StringBuilder sb = new StringBuilder();
             boolean escaped = false;
-            instantApplied = false;
 
             for (char c : s.toCharArray()) {
 
@@ -561,17 +931,98 @@ public class Parser implements IParser {
                 }
             }
 
-            if (instant) {
-                int l = sb.length();
-                if ((l < 2) || !sb.substring(l - 2).equals(".*")) {
-                    instantApplied = true;
-                    sb.append(".*");
+            return sb.toString();
+        }
+
+    }
+
+    /**
+     * Filter created by regular expression and wildcard operands. Wildcard
+     * filters refine those whose expression is a prefix plus '*' (or the
+     * opposite, for negated operands).<br>
+     * The pattern is the regular expression, or its equivalent for wildcard
+     * filters, used only to compare filters.
+     */
+    abstract static class PatternFilter extends OperandFilter {
+        private String pattern;
+        private boolean equals;
+        private String wildcard;
+
+        PatternFilter(Parser  self,
+                      String  pattern,
+                      boolean equals,
+                      String  wildcard) {
+            super(self);
+            this.pattern = pattern;
+            this.equals = equals;
+            this.wildcard = wildcard;
+        }
+
+        /** {@link OperandFilter} interface. */
+        @Override boolean narrows(OperandFilter filter) {
+            if (filter instanceof PatternFilter) {
+                PatternFilter pf = (PatternFilter) filter;
+                if (pf.equals == equals) {
+                    if (pf.pattern.equals(pattern)) {
+                        return true;
+                    }
+
+                    if ((wildcard != null) && (pf.wildcard != null)) {
+                        return equals
+                            ? WildcardOperand.narrows(wildcard, pf.wildcard)
+                            : WildcardOperand.narrows(pf.wildcard, wildcard);
+                    }
                 }
             }
 
-            return sb.toString();
+            return false;
+        }
+    }
+
+    /**
+     * Filter created by the wildcard operands, whose literal fragments can be
+     * searched on a substring index, see {@link SubstringFilter}.
+     */
+    static final class WildcardFilter extends PatternFilter
+        implements SubstringFilter {
+        private int modelIndex;
+        private FormatWrapper format;
+        private GlobMatcher matcher;
+        private boolean included;
+        private String fragments[];
+
+        WildcardFilter(Parser      self,
+                       String      pattern,
+                       boolean     equals,
+                       String      wildcard,
+                       GlobMatcher matcher,
+                       String      fragments[]) {
+            super(self, pattern, equals, wildcard);
+            this.modelIndex = self.modelIndex;
+            this.format = self.format;
+            this.matcher = matcher;
+            this.included = equals;
+            this.fragments = fragments;
+        }
+
+        @Override public boolean include(Entry entry) {
+            return matches(format.format(entry.getValue(modelIndex)));
+        }
+
+        /** {@link SubstringFilter} interface. */
+        @Override public String[] getFragments() {
+            return fragments;
+        }
+
+        /** {@link SubstringFilter} interface. */
+        @Override public String getText(Object value) {
+            return format.format(value);
         }
 
+        /** {@link SubstringFilter} interface. */
+        @Override public boolean matches(String text) {
+            return included == matcher.matches(text);
+        }
     }
 
     static {
@@ -587,49 +1038,91 @@ public class Parser implements IParser {
                 @Override boolean matches(int comparison) {
                     return comparison >= 0;
                 }
+
+                @Override boolean refines(int comparison) {
+                    return comparison >= 0;
+                }
             });
         operands.put(">", new ComparisonOperand() {
                 @Override boolean matches(int comparison) {
                     return comparison > 0;
                 }
+
+                @Override boolean refines(int comparison) {
+                    return comparison >= 0;
+                }
             });
         operands.put("<=", new ComparisonOperand() {
                 @Override boolean matches(int comparison) {
                     return comparison <= 0;
                 }
+
+                @Override boolean refines(int comparison) {
+                    return comparison <= 0;
+                }
             });
         operands.put("<", new ComparisonOperand() {
                 @Override boolean matches(int comparison) {
                     return comparison < 0;
                 }
+
+                @Override boolean refines(int comparison) {
+                    return comparison <= 0;
+                }
             });
         operands.put("<>", new ComparisonOperand() {
                 @Override boolean matches(int comparison) {
                     return comparison != 0;
                 }
+
+                @Override boolean refines(int comparison) {
+                    return comparison == 0;
+                }
             });
         operands.put("~", wildcardOperand = new WildcardOperand(true));
         operands.put("=", new EqualOperand(true));
         instantOperand = new WildcardOperand();
     }
 
-    /** Helper class to deal with null formats. It also trims the output. */
+    /**
+     * Helper class to deal with null formats. It also trims the output.<br>
+     * Each thread uses its own copy of the format, as formats are usually
+     * not thread safe.
+     */
     static class FormatWrapper {
         Format format;
+        // the strings for non string values, whose formatting is expensive
+        StringCache cache;
 
         FormatWrapper(Format format) {
             this.format = format;
+            this.cache = new StringCache(format);
         }
 
         public String format(Object o) {
+            if ((o == null) || (o instanceof String)) {
+                return doFormat(o);
+            }
+
+            String ret = cache.get(o);
+            if (ret == null) {
+                ret = doFormat(o);
+                cache.put(o, ret);
+            }
+
+            return ret;
+        }
+
+        private String doFormat(Object o) {
         	if (format==null){
        			return (o == null) ? "" : htmlHandler.stripHtml(o.toString());
         	}
-        	return format.format(o).trim();
+        	return cache.getLocalFormat().format(o).trim();
         }
 
         public Object parseObject(String content) throws ParseException {
-            return (format == null) ? null : format.parseObject(content);
+            return (format == null)
+                ? null : cache.getLocalFormat().parseObject(content);
         }
     }
 
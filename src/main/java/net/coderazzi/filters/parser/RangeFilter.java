@@ -1,11 +1,19 @@
 package net.coderazzi.filters.parser;
 
+import java.util.Comparator;
+import java.util.Date;
+
 import javax.swing.RowFilter;
 
-public class RangeFilter extends RowFilter{
+import net.coderazzi.filters.IParser;
+
+public class RangeFilter extends RowFilter
+	implements IParser.RefiningFilter, IParser.OrderedFilter{
 	
 	private double min,max;
 	private int modelIndex;
+	/** Comparator providing the keys of a date range, null for numbers. */
+	private DateComparator.KeyComparator dates;
 	public RangeFilter(double min, double max,int modelIndex) {
 		super();
 		this.min = min;
@@ -13,20 +21,71 @@ public class RangeFilter extends RowFilter{
 		this.modelIndex = modelIndex;
 	}
 
+	/** Range of dates, compared with the granularity of the comparator. */
+	RangeFilter(Date min, Date max, DateComparator.KeyComparator dates,
+			int modelIndex) {
+		this(dates.key(min), dates.key(max), modelIndex);
+		this.dates = dates;
+	}
+
 
 
 	@Override
 	public boolean include(
 			Entry entry) {
-		Number value  = (Number)entry.getValue(modelIndex);
-		if(value == null){
+		Object value = entry.getValue(modelIndex);
+		double d;
+		if(dates != null){
+			if(!(value instanceof Date)){
+				return false;
+			}
+			d = dates.key((Date)value);
+		} else if(value instanceof Number){
+			d = ((Number)value).doubleValue();
+		} else {
 			return false;
 		}
-		if(value instanceof Double){
-			double d = value.doubleValue();
-			return (d >= min)&&(d < max);
+		return (d >= min)&&(d < max);
+	}
+
+	/**
+	 * {@link IParser.OrderedFilter} interface: numbers in natural order,
+	 * or dates with the same granularity.
+	 */
+	@Override
+	public boolean isOrdered(Class<?> type, Comparator comparator) {
+		if(dates != null){
+			return (type == Date.class)
+					&& (UnboxedComparator.getDateKeys(comparator) == dates);
+		}
+		return (comparator == Parser.NATURAL_ORDER)
+				&& ((type == Integer.class) || (type == Long.class)
+					|| (type == Short.class) || (type == Byte.class)
+					|| (type == Double.class) || (type == Float.class));
+	}
+
+	/** {@link IParser.OrderedFilter} interface. */
+	@Override
+	public int locate(Object value) {
+		double d = (dates != null) ? dates.key((Date)value)
+				: ((Number)value).doubleValue();
+		if((d != d) || (min != min)){
+			// NaN follows any other value, and nothing precedes a NaN min
+			return 1;
+		}
+		if(d < min){
+			return -1;
+		}
+		return (d < max) ? 0 : 1;
+	}
+
+	/** A range refines any other range on the same column containing it. */
+	@Override
+	public boolean refines(RowFilter filter) {
+		if(filter instanceof RangeFilter){
+			RangeFilter rf = (RangeFilter)filter;
+			return (rf.modelIndex == modelIndex)&&(rf.dates == dates)&&(min >= rf.min)&&(max <= rf.max);
 		}
-		int i = value.intValue();
-		return (i >= min)&&(i < max);
+		return false;
 	}
 }
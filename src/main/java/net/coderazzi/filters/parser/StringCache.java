@@ -0,0 +1,128 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.parser;
+
+import java.text.Format;
+
+
+/**
+ * Bounded cache of the string representation of values, obtained with a
+ * given {@link Format}.<br>
+ * Filters working on the string representation of non string columns (dates,
+ * enumerations...) format each value on every evaluation; as the user types,
+ * the same values are formatted once and again.<br>
+ * The cache is direct mapped: each value can only be stored on one slot,
+ * replacing any previous value with the same slot. It can be used from
+ * several threads without synchronization, as each slot holds an immutable
+ * pair of value and string; each thread can also obtain its own copy of the
+ * format, which is usually not thread safe.<br>
+ * If most lookups fail (columns with too many distinct values), the cache
+ * is bypassed, checking again from time to time.<br>
+ * Values are expected to be immutable: a value modified after its string is
+ * cached keeps returning the old string.
+ */
+public final class StringCache {
+
+    /** The number of slots, a power of two. */
+    private static final int SIZE = 4096;
+
+    /** The number of lookups to decide whether to store new strings. */
+    private static final int WINDOW = 4096;
+
+    private final Format format;
+    private final Slot slots[] = new Slot[SIZE];
+    private final ThreadLocal<Format> localFormat = new ThreadLocal<Format>() {
+        @Override protected Format initialValue() {
+            return (Format) format.clone();
+        }
+    };
+
+    // statistics on the current window, kept without synchronization
+    private int lookups;
+    private int hits;
+    private int windows;
+    private boolean storing = true;
+
+    /** Creates a cache for the strings obtained with the given format. */
+    public StringCache(Format format) {
+        this.format = format;
+    }
+
+    /** Returns the format used to obtain the cached strings. */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns a copy of the format, for exclusive use of the current thread,
+     * or null if the cache has no format.
+     */
+    public Format getLocalFormat() {
+        return (format == null) ? null : localFormat.get();
+    }
+
+    /** Returns the string cached for the given value, or null if unknown. */
+    public String get(Object value) {
+        String ret = null;
+        if (storing) {
+            Slot slot = slots[index(value)];
+            if ((slot != null) && slot.value.equals(value)) {
+                ret = slot.string;
+                ++hits;
+            }
+        }
+
+        if (++lookups >= WINDOW) {
+            storing = (hits >= (WINDOW >> 2)) || ((++windows & 15) == 0);
+            lookups = hits = 0;
+        }
+
+        return ret;
+    }
+
+    /** Caches the string associated to the given value, not null. */
+    public void put(Object value, String string) {
+        if (storing) {
+            slots[index(value)] = new Slot(value, string);
+        }
+    }
+
+    private static int index(Object value) {
+        int h = value.hashCode();
+
+        return (h ^ (h >>> 16)) & (SIZE - 1);
+    }
+
+    private static final class Slot {
+        final Object value;
+        final String string;
+
+        Slot(Object value, String string) {
+            this.value = value;
+            this.string = string;
+        }
+    }
+}
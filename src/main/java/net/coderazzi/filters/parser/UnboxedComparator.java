@@ -0,0 +1,170 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.parser;
+
+import java.util.Comparator;
+import java.util.Date;
+
+
+/**
+ * Comparison of the column values against a constant -the right operand of
+ * an expression- without boxing or comparator calls.<br>
+ * It is only available for the wrapper classes of the numeric primitive
+ * types, if compared in their natural order, and for dates compared in their
+ * natural order or with the {@link DateComparator} built for their format. The constant is then
+ * converted once into a long or a double; values of any other class, than
+ * the constant's one, must be compared with the comparator.
+ */
+final class UnboxedComparator {
+
+    /** Comparison outcome for values that cannot be unboxed. */
+    static final int NONE = 2;
+
+    private static final int LONG = 0;
+    private static final int DOUBLE = 1;
+    private static final int DATE = 2;
+
+    private final int kind;
+    private final Class<?> type;
+    private final long longValue;
+    private final double doubleValue;
+    private final DateComparator.KeyComparator dates;
+
+    private UnboxedComparator(int                          kind,
+                              Object                       value,
+                              long                         longValue,
+                              double                       doubleValue,
+                              DateComparator.KeyComparator dates) {
+        this.kind = kind;
+        this.type = value.getClass();
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+        this.dates = dates;
+    }
+
+    /**
+     * Creates the comparator for the given constant, or returns null if its
+     * class and comparator have no unboxed comparison.
+     */
+    static UnboxedComparator create(Object value, Comparator comparator) {
+        Class<?> cl = value.getClass();
+        if (comparator == Parser.NATURAL_ORDER) {
+            if ((cl == Integer.class) || (cl == Long.class)
+                    || (cl == Short.class) || (cl == Byte.class)) {
+                return new UnboxedComparator(LONG, value,
+                        ((Number) value).longValue(), 0, null);
+            }
+
+            if ((cl == Double.class) || (cl == Float.class)) {
+                return new UnboxedComparator(DOUBLE, value, 0,
+                        ((Number) value).doubleValue(), null);
+            }
+        }
+
+        if (cl == Date.class) {
+            DateComparator.KeyComparator dates = getDateKeys(comparator);
+            if (dates != null) {
+                return new UnboxedComparator(DATE, value,
+                        dates.key((Date) value), 0, dates);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the {@link DateComparator} providing the keys of the dates
+     * compared with the given comparator, or null if there is none.
+     */
+    static DateComparator.KeyComparator getDateKeys(Comparator comparator) {
+        if (comparator == Parser.NATURAL_ORDER) {
+            return DateComparator.MILLISECONDS;
+        }
+
+        if (comparator instanceof DateComparator.KeyComparator) {
+            return (DateComparator.KeyComparator) comparator;
+        }
+
+        return null;
+    }
+
+    /**
+     * Compares the value against the constant, returning -1, 0 or 1 as the
+     * comparator would, or {@link #NONE} if the value is null or of another
+     * class.
+     */
+    int compare(Object value) {
+        if ((value == null) || (value.getClass() != type)) {
+            return NONE;
+        }
+
+        switch (kind) {
+
+        case LONG:
+            return compare(((Number) value).longValue(), longValue);
+
+        case DOUBLE:
+
+            // as Double.compareTo: NaN is the greatest, and -0.0 < 0.0
+            return Double.compare(((Number) value).doubleValue(), doubleValue);
+
+        default:
+            return compare(dates.key((Date) value), longValue);
+        }
+    }
+
+    private static int compare(long a, long b) {
+        return (a < b) ? -1 : ((a == b) ? 0 : 1);
+    }
+
+    /**
+     * Returns a mask with the bit (comparison + 1) set for each comparison
+     * outcome (-1, 0, 1) accepted by the given operand.
+     */
+    static int outcomes(boolean less, boolean equal, boolean greater) {
+        return (less ? 1 : 0) | (equal ? 2 : 0) | (greater ? 4 : 0);
+    }
+
+    /**
+     * Returns true if the comparison outcomes accepted, as returned by
+     * {@link #outcomes(boolean, boolean, boolean)}, are contiguous.
+     */
+    static boolean isContiguous(int outcomes) {
+        return (outcomes != 0) && (outcomes != 5);
+    }
+
+    /**
+     * Locates a comparison outcome respect to the contiguous outcomes
+     * accepted: -1 if it precedes them, 0 if accepted, 1 if it follows them.
+     */
+    static int locate(int outcomes, int comparison) {
+        if (((outcomes >> (comparison + 1)) & 1) != 0) {
+            return 0;
+        }
+
+        return ((1 << (comparison + 1)) < outcomes) ? -1 : 1;
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * Applies random operations on {@link RowSet} instances, and on equivalent
+ * {@link BitSet} instances, comparing their contents after each one.
+ */
+public class RowSetTest {
+
+    /** Rows used by the tests, covering several chunks. */
+    private static final int ROWS = 4 * RowSet.CHUNK + 1000;
+
+    private Random random = new Random(1);
+
+    @Test public void testSingleRows() {
+        RowSet set = new RowSet();
+        BitSet bits = new BitSet();
+        for (int i = 0; i < 20000; i++) {
+            // rows mostly on the first chunk, so it becomes a bitmap
+            int row = random.nextInt(random.nextBoolean()
+                    ? RowSet.CHUNK : ROWS);
+            if (random.nextInt(3) == 0) {
+                assertEquals(bits.get(row), set.remove(row));
+                bits.clear(row);
+            } else {
+                assertEquals(!bits.get(row), set.add(row));
+                bits.set(row);
+            }
+        }
+
+        check(bits, set);
+        set.optimize();
+        check(bits, set);
+    }
+
+    @Test public void testOperations() {
+        RowSet set = new RowSet();
+        BitSet bits = new BitSet();
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(ROWS);
+            int to = Math.min(ROWS, from + random.nextInt(3 * RowSet.CHUNK));
+            int count = random.nextInt(100000);
+            RowSet otherSet = new RowSet();
+            BitSet otherBits = new BitSet();
+            fill(otherBits, otherSet);
+            switch (random.nextInt(11)) {
+
+            case 0:
+                set.add(from, to);
+                bits.set(from, to);
+
+                break;
+
+            case 1:
+                set.remove(from, to);
+                bits.clear(from, to);
+
+                break;
+
+            case 2:
+                set.and(otherSet);
+                bits.and(otherBits);
+
+                break;
+
+            case 3:
+                set.or(otherSet);
+                bits.or(otherBits);
+
+                break;
+
+            case 4:
+                set.andNot(otherSet);
+                bits.andNot(otherBits);
+
+                break;
+
+            case 5:
+                set.insert(from, count);
+
+                BitSet tail = bits.get(from, Math.max(from, bits.length()));
+                bits.clear(from, Math.max(from, bits.length()));
+                for (int r = tail.nextSetBit(0); r >= 0;
+                        r = tail.nextSetBit(r + 1)) {
+                    bits.set(from + count + r);
+                }
+
+                break;
+
+            case 6:
+                set.delete(from, count);
+
+                tail = bits.get(from + count, Math.max(from + count,
+                            bits.length()));
+                bits.clear(from, Math.max(from, bits.length()));
+                for (int r = tail.nextSetBit(0); r >= 0;
+                        r = tail.nextSetBit(r + 1)) {
+                    bits.set(from + r);
+                }
+
+                break;
+
+            case 7:
+                set = set.get(from, to);
+
+                BitSet range = new BitSet();
+                range.set(from, to);
+                bits.and(range);
+
+                break;
+
+            case 8:
+                set.optimize();
+
+                break;
+
+            case 9:
+                set = new RowSet(otherSet);
+                bits = otherBits;
+
+                break;
+
+            default:
+                set = RowSet.range(from, to);
+                bits = new BitSet();
+                bits.set(from, to);
+            }
+
+            check(bits, set);
+        }
+    }
+
+    /** Fills the sets with sparse, dense or consecutive rows. */
+    private void fill(BitSet bits, RowSet set) {
+        for (int chunk = 0; chunk < 5; chunk++) {
+            int base = chunk * RowSet.CHUNK;
+            switch (random.nextInt(4)) {
+
+            case 0:
+                // sparse
+                for (int i = random.nextInt(RowSet.ARRAY_MAX); i > 0; i--) {
+                    int row = base + random.nextInt(RowSet.CHUNK);
+                    bits.set(row);
+                    set.add(row);
+                }
+
+                break;
+
+            case 1:
+                // dense
+                for (int i = 0; i < RowSet.CHUNK; i++) {
+                    if (random.nextBoolean()) {
+                        bits.set(base + i);
+                        set.add(base + i);
+                    }
+                }
+
+                break;
+
+            case 2:
+                // runs
+                for (int i = random.nextInt(20); i > 0; i--) {
+                    int from = base + random.nextInt(RowSet.CHUNK);
+                    int to = from + random.nextInt(5000);
+                    bits.set(from, to);
+                    set.add(from, to);
+                }
+
+                break;
+            }
+        }
+
+        if (random.nextBoolean()) {
+            set.optimize();
+        }
+    }
+
+    /** Checks that the set and the bits have the same content. */
+    private void check(BitSet bits, RowSet set) {
+        assertEquals(bits.cardinality(), set.cardinality());
+        assertEquals(bits.isEmpty(), set.isEmpty());
+
+        int row = set.next(0);
+        for (int b = bits.nextSetBit(0); b >= 0; b = bits.nextSetBit(b + 1)) {
+            assertEquals(b, row);
+            row = set.next(row + 1);
+        }
+
+        assertEquals(-1, row);
+
+        for (int i = 0; i < 1000; i++) {
+            int r = random.nextInt(bits.length() + 100);
+            assertEquals(bits.get(r), set.contains(r));
+            assertEquals(bits.nextClearBit(r), set.nextAbsent(r));
+            assertEquals(bits.nextSetBit(r), set.next(r));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters;
+
+import java.text.Format;
+import java.text.SimpleDateFormat;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+import javax.swing.RowFilter;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+
+import net.coderazzi.filters.gui.ParserModel;
+import net.coderazzi.filters.parser.Parser;
+
+
+/**
+ * Table model with generated, deterministic content, used by the tests: a
+ * names column with up to 1.000 distinct strings, an age column with 26
+ * distinct integers, a boolean column, an enumeration column, and a date
+ * column with up to 2.000 distinct dates.
+ */
+public class TestModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = -3311428129463517204L;
+
+    public static final int NAME = 0;
+    public static final int AGE = 1;
+    public static final int MALE = 2;
+    public static final int CLUB = 3;
+    public static final int DATE = 4;
+
+    /** Format of the dates, as used by the parsers. */
+    public static final String DATE_FORMAT = "dd/MM/yyyy";
+
+    /** Enumeration used for the clubs column. */
+    public static enum Club {
+        Alpha, Geeks, Phi, Kappa, Lions
+    }
+
+    private static final String columnNames[] = {
+            "Name", "Age", "Male", "Club", "Date"
+        };
+    private static final Class<?> columnTypes[] = {
+            String.class, Integer.class, Boolean.class, Club.class, Date.class
+        };
+    private static final String syllables[] = {
+            "al", "ber", "ca", "den", "el", "fa", "gor", "ha", "in", "jo",
+            "ka", "lo", "mar", "ne", "os", "pe", "ri", "sa", "tun", "va"
+        };
+
+    private static final int DISTINCT_NAMES = 1000;
+    private static final int DISTINCT_DATES = 2000;
+
+    private static String names[];
+    private static Date dates[];
+
+    private Object values[][];
+
+    public TestModel(int rows) {
+        this(rows, rows);
+    }
+
+    /** Creates the model, the seed deciding its content. */
+    public TestModel(int rows, long seed) {
+        Random random = new Random(seed);
+        Club clubs[] = Club.values();
+        values = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            values[i] = new Object[] {
+                    names[random.nextInt(DISTINCT_NAMES)],
+                    Integer.valueOf(18 + random.nextInt(26)),
+                    Boolean.valueOf(random.nextBoolean()),
+                    clubs[random.nextInt(clubs.length)],
+                    dates[random.nextInt(DISTINCT_DATES)]
+                };
+        }
+    }
+
+    /** Creates a parser for the given column, as the ParserModel does. */
+    public IParser createParser(int column) {
+        ParserModel parserModel = new ParserModel();
+        parserModel.setFormat(Date.class, new SimpleDateFormat(DATE_FORMAT));
+
+        Class<?> cl = getColumnClass(column);
+        Format fmt = (cl == String.class)
+            ? null : parserModel.getFormat(cl);
+        boolean ignoreCase = parserModel.isIgnoreCase();
+
+        return new Parser(fmt,
+                (fmt == null) ? null : parserModel.getComparator(cl),
+                parserModel.getStringComparator(ignoreCase), ignoreCase,
+                column);
+    }
+
+    /** Returns the rows included by the filter, evaluated row by row. */
+    public boolean[] evaluate(RowFilter filter) {
+        Entry entry = new Entry(this);
+        boolean ret[] = new boolean[values.length];
+        for (entry.row = 0; entry.row < ret.length; entry.row++) {
+            ret[entry.row] = filter.include(entry);
+        }
+
+        return ret;
+    }
+
+    @Override public int getRowCount() {
+        return values.length;
+    }
+
+    @Override public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override public Class<?> getColumnClass(int column) {
+        return columnTypes[column];
+    }
+
+    @Override public Object getValueAt(int row, int column) {
+        return values[row][column];
+    }
+
+    @Override public void setValueAt(Object value, int row, int column) {
+        values[row][column] = value;
+        fireTableCellUpdated(row, column);
+    }
+
+    /** {@link RowFilter.Entry} over a {@link TableModel}. */
+    public static class Entry extends RowFilter.Entry<TableModel, Integer> {
+
+        private TableModel model;
+        public int row;
+
+        public Entry(TableModel model) {
+            this.model = model;
+        }
+
+        @Override public TableModel getModel() {
+            return model;
+        }
+
+        @Override public int getValueCount() {
+            return model.getColumnCount();
+        }
+
+        @Override public Object getValue(int index) {
+            return model.getValueAt(row, index);
+        }
+
+        @Override public Integer getIdentifier() {
+            return row;
+        }
+    }
+
+    static {
+        names = new String[DISTINCT_NAMES];
+        int base = syllables.length;
+        for (int i = 0; i < DISTINCT_NAMES; i++) {
+            int n = i;
+            StringBuilder sb = new StringBuilder();
+            for (int s = 0; s < 3; s++) {
+                String syllable = syllables[n % base];
+                n /= base;
+                if (s == 0) {
+                    sb.append(Character.toUpperCase(syllable.charAt(0)));
+                    sb.append(syllable.substring(1));
+                } else {
+                    sb.append(syllable);
+                }
+            }
+
+            names[i] = sb.toString();
+        }
+
+        dates = new Date[DISTINCT_DATES];
+        Calendar calendar = new GregorianCalendar(1985, Calendar.JANUARY, 1);
+        for (int i = 0; i < DISTINCT_DATES; i++) {
+            dates[i] = calendar.getTime();
+            calendar.add(Calendar.DAY_OF_YEAR, 3);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+
+import net.coderazzi.filters.gui.editor.FilterEditor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Drives the asynchronous choices extraction through the filter header,
+ * updating the model while an extraction is in flight, and checks that only
+ * the choices of the latest extraction reach the editor. It also checks that
+ * a failed extraction is done again on the event dispatch thread.
+ */
+public class BackgroundChoicesTest {
+
+    private static final int ROWS = 1000;
+    private static final long TIMEOUT = 10000;
+
+    private BlockingModel model;
+    private TableFilterHeader header;
+    private FilterEditor editor;
+
+    /** Choices on the editor besides the values on the model. */
+    private int extra;
+
+    @Before public void setUp() throws Exception {
+        edt(new Runnable() {
+                @Override public void run() {
+                    model = new BlockingModel();
+                    for (int i = 0; i < ROWS; i++) {
+                        model.addRow(new Object[] { "v" + i });
+                    }
+
+                    header = new TableFilterHeader(new JTable(model),
+                            AutoChoices.ENABLED);
+                    header.setAdaptiveChoices(false);
+                    header.setAsyncChoices(true);
+                    editor = header.filtersHandler.getEditor(0);
+                    extra = editor.getChoicesSize() - ROWS;
+                }
+            });
+    }
+
+    @After public void tearDown() throws Exception {
+        model.release();
+        edt(new Runnable() {
+                @Override public void run() {
+                    header.setTable(null);
+                }
+            });
+    }
+
+    /**
+     * A model update cancels the in-flight extraction and starts a new one;
+     * the cancelled extraction completes, but its choices are discarded.
+     */
+    @Test public void testModelUpdatedWhileExtracting() throws Exception {
+        CountDownLatch first = model.block();
+        // the first extraction finds a repeated value: ROWS - 1 choices
+        edt(new Runnable() {
+                @Override public void run() {
+                    model.setSilently(5, "v4");
+                    model.fireTableDataChanged();
+                }
+            });
+        model.awaitBlocked();
+
+        CountDownLatch second = model.block();
+        // the second extraction finds another one: ROWS - 2 choices
+        edt(new Runnable() {
+                @Override public void run() {
+                    model.setValueAt("v1", 0, 0);
+                }
+            });
+        checkChoices(ROWS);
+
+        // the second extraction starts once the first is published
+        first.countDown();
+        model.awaitBlocked();
+        checkChoices(ROWS);
+
+        second.countDown();
+        awaitChoices(ROWS - 2);
+        assertEquals(0, model.failures.get());
+    }
+
+    /** A new extraction on the same editor discards the in-flight one. */
+    @Test public void testStartedWhileExtracting() throws Exception {
+        final BackgroundChoices choices = new BackgroundChoices();
+        final Extraction first = new Extraction("a", "b", "c");
+        final Extraction second = new Extraction("d", "e");
+        first.gate = new CountDownLatch(1);
+        edt(new Runnable() {
+                @Override public void run() {
+                    choices.start(editor, first);
+                }
+            });
+        assertTrue(first.blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        edt(new Runnable() {
+                @Override public void run() {
+                    choices.start(editor, second);
+                }
+            });
+        first.gate.countDown();
+        assertTrue(second.done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        checkChoices(2);
+        assertEquals(1, second.completions);
+        assertEquals(0, second.failures);
+        assertEquals(0, first.completions);
+        assertEquals(0, first.failures);
+    }
+
+    /** A cancelled extraction is never published. */
+    @Test public void testCancelledWhileExtracting() throws Exception {
+        final BackgroundChoices choices = new BackgroundChoices();
+        final Extraction first = new Extraction("a", "b", "c");
+        first.gate = new CountDownLatch(1);
+        edt(new Runnable() {
+                @Override public void run() {
+                    choices.start(editor, first);
+                }
+            });
+        assertTrue(first.blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        edt(new Runnable() {
+                @Override public void run() {
+                    choices.cancel(editor);
+                }
+            });
+        first.gate.countDown();
+
+        // once a later extraction is published, the first one was handled
+        final Extraction second = new Extraction("d", "e");
+        edt(new Runnable() {
+                @Override public void run() {
+                    choices.start(editor, second);
+                }
+            });
+        assertTrue(second.done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(0, first.completions);
+        assertEquals(0, first.failures);
+        checkChoices(2);
+    }
+
+    /**
+     * An extraction failing on the worker thread is done again on the event
+     * dispatch thread.
+     */
+    @Test public void testFailedExtraction() throws Exception {
+        model.fail = true;
+        edt(new Runnable() {
+                @Override public void run() {
+                    model.setSilently(5, "v4");
+                    model.fireTableDataChanged();
+                }
+            });
+        awaitChoices(ROWS - 1);
+        assertTrue(model.failures.get() > 0);
+    }
+
+    /** Checks, after any pending event, the choices set on the editor. */
+    private void checkChoices(int values) throws Exception {
+        assertEquals(values + extra, choicesSize());
+    }
+
+    /** Waits until the editor holds the choices for the given values. */
+    private void awaitChoices(int values) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (true) {
+            if (choicesSize() == (values + extra)) {
+                return;
+            }
+
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    /** Returns, after any pending event, the size of the choices. */
+    private int choicesSize() throws Exception {
+        final int size[] = new int[1];
+        edt(new Runnable() {
+                @Override public void run() {
+                    size[0] = editor.getChoicesSize();
+                }
+            });
+
+        return size[0];
+    }
+
+    private static void edt(Runnable task) throws Exception {
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InvocationTargetException ite) {
+            Throwable cause = ite.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw (Exception) cause;
+        }
+    }
+
+    /**
+     * Model whose last row blocks the next reading on the worker thread; it
+     * can also fail any reading there.
+     */
+    static class BlockingModel extends DefaultTableModel {
+        private static final long serialVersionUID = 1L;
+
+        volatile boolean fail;
+        volatile CountDownLatch gate;
+        volatile CountDownLatch blocked;
+        AtomicInteger failures = new AtomicInteger();
+
+        BlockingModel() {
+            super(new Object[] { "Value" }, 0);
+        }
+
+        /** Blocks the next reading of the last row on the worker thread. */
+        CountDownLatch block() {
+            blocked = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+
+            return gate;
+        }
+
+        /** Waits until the reading is blocked. */
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+        /** Releases any blocked reading. */
+        void release() {
+            CountDownLatch latch = gate;
+            gate = null;
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+
+        /** Sets a value without notifying the listeners. */
+        @SuppressWarnings("unchecked")
+        void setSilently(int row, Object value) {
+            ((Vector) getDataVector().get(row)).set(0, value);
+        }
+
+        @Override public Object getValueAt(int row, int column) {
+            if (!SwingUtilities.isEventDispatchThread()) {
+                CountDownLatch latch = gate;
+                if ((latch != null) && (row == (getRowCount() - 1))) {
+                    gate = null;
+                    blocked.countDown();
+                    try {
+                        latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException iex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                if (fail) {
+                    failures.incrementAndGet();
+                    throw new IllegalStateException();
+                }
+            }
+
+            return super.getValueAt(row, column);
+        }
+    }
+
+    /** Extraction of fixed choices, which can be blocked. */
+    static class Extraction extends BackgroundChoices.Extraction {
+        private List<String> values;
+        volatile CountDownLatch gate;
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        int completions;
+        int failures;
+
+        Extraction(String... values) {
+            this.values = Arrays.asList(values);
+        }
+
+        @Override Collection<?> extract() {
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                blocked.countDown();
+                try {
+                    latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            return values;
+        }
+
+        @Override void completed() {
+            ++completions;
+            done.countDown();
+        }
+
+        @Override void failed() {
+            ++failures;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,490 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JTable;
+import javax.swing.RowFilter;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+import net.coderazzi.filters.Filter;
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.RowSet;
+import net.coderazzi.filters.TestModel;
+import net.coderazzi.filters.gui.editor.FilterEditor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Drives the asynchronous filtering through the filter header, changing the
+ * filter and the model while an evaluation is in flight, and checks that only
+ * the outcome of the latest generation reaches the sorter. It also evaluates
+ * parser filters on a worker thread while the same parsers are in use.
+ */
+public class BackgroundFilterTest {
+
+    private static final int ROWS = 10000;
+    private static final long TIMEOUT = 10000;
+    private static final int PARSER_ROWS = 20000;
+
+    /** Column and expression, separated by a colon. */
+    private static final String EXPRESSIONS[] = {
+            "0:Ka*", "0:*ar*", "0:~~.*ar.*", "0:!~ *o*", "0:> Ma",
+            "1:> 30", "1:20 to 30", "3:Alpha", "3:!~ *a*",
+            "4:> 15/06/1990", "4:*/05/*", "4:1?/0?/19*"
+        };
+
+    private DefaultTableModel model;
+    private RecordingSorter sorter;
+    private TableFilterHeader header;
+    private ModuloFilter filter = new ModuloFilter();
+
+    @Before public void setUp() throws Exception {
+        final int calls[] = new int[1];
+        edt(new Runnable() {
+                @Override public void run() {
+                    model = new DefaultTableModel(new Object[] { "Value" }, 0);
+                    for (int i = 0; i < ROWS; i++) {
+                        model.addRow(new Object[] { Integer.valueOf(i) });
+                    }
+
+                    JTable table = new JTable(model);
+                    sorter = new RecordingSorter(model);
+                    table.setRowSorter(sorter);
+                    header = new TableFilterHeader(table,
+                            AutoChoices.DISABLED);
+                    header.setAdaptiveChoices(false);
+                    header.setAsyncFiltering(true);
+                    calls[0] = sorter.filters.size();
+                    header.addFilter(filter);
+                }
+            });
+        awaitSnapshot(calls[0]);
+        checkView();
+    }
+
+    @After public void tearDown() throws Exception {
+        filter.release();
+        edt(new Runnable() {
+                @Override public void run() {
+                    header.setTable(null);
+                }
+            });
+    }
+
+    /** A new filter update stops the in-flight generation. */
+    @Test public void testFilterUpdatedWhileEvaluating() throws Exception {
+        checkFilterUpdatedWhileEvaluating();
+    }
+
+    /**
+     * A new filter update discards the outcome of the in-flight generation,
+     * even if it completes: it is shorter than the cancellation ranges.
+     */
+    @Test public void testFilterUpdatedOnShortEvaluation() throws Exception {
+        final int calls[] = new int[1];
+        edt(new Runnable() {
+                @Override public void run() {
+                    calls[0] = sorter.filters.size();
+                    model.setRowCount(1000);
+                }
+            });
+        awaitSnapshot(calls[0]);
+        checkFilterUpdatedWhileEvaluating();
+    }
+
+    private void checkFilterUpdatedWhileEvaluating() throws Exception {
+        int calls = block(3);
+        edt(new Runnable() {
+                @Override public void run() {
+                    filter.modulo = 5;
+                    filter.reportFilterUpdatedToObservers();
+                }
+            });
+        filter.release();
+        awaitSnapshot(calls);
+        checkView();
+        assertEquals(1, snapshotsSince(calls));
+    }
+
+    /** A model update discards the in-flight generation, and starts another. */
+    @Test public void testModelUpdatedWhileEvaluating() throws Exception {
+        int calls = block(3);
+        edt(new Runnable() {
+                @Override public void run() {
+                    model.setValueAt(Integer.valueOf(30), 1, 0);
+                    model.removeRow(3);
+                    model.addRow(new Object[] { Integer.valueOf(33) });
+                }
+            });
+        filter.release();
+        awaitSnapshot(calls);
+        checkView();
+        assertEquals(1, snapshotsSince(calls));
+    }
+
+    /**
+     * After a model update, the published outcome is stale, and the sorter
+     * evaluates the live filter until the new generation completes.
+     */
+    @Test public void testStaleSnapshot() throws Exception {
+        final int calls[] = new int[1];
+        filter.block();
+        edt(new Runnable() {
+                @Override public void run() {
+                    calls[0] = sorter.filters.size();
+                    model.addRow(new Object[] { Integer.valueOf(ROWS) });
+                    model.insertRow(0, new Object[] { Integer.valueOf(-2) });
+                    checkTable();
+                }
+            });
+        filter.release();
+        awaitSnapshot(calls[0]);
+        checkView();
+    }
+
+    /** A snapshot delegates on the filter if the number of rows changes. */
+    @Test public void testSnapshotOnOtherRowCount() throws Exception {
+        final BackgroundFilter.Snapshot snapshot =
+            new BackgroundFilter.Snapshot(filter, new RowSet(), ROWS - 1);
+        edt(new Runnable() {
+                @Override public void run() {
+                    assertTrue(snapshot.include(new Entry(model, 0)));
+                }
+            });
+    }
+
+    /** If the evaluation fails, the live filter is set on the sorter. */
+    @Test public void testFailedEvaluation() throws Exception {
+        final int calls[] = new int[1];
+        filter.fail = true;
+        try {
+            edt(new Runnable() {
+                    @Override public void run() {
+                        calls[0] = sorter.filters.size();
+                        filter.modulo = 3;
+                        filter.reportFilterUpdatedToObservers();
+                    }
+                });
+            assertSame(header.filtersHandler, awaitFilter(calls[0]));
+        } finally {
+            filter.fail = false;
+        }
+
+        checkView();
+    }
+
+    /**
+     * Evaluates parser filters on the background while the same parsers parse
+     * and evaluate new expressions on the calling thread, as the event
+     * dispatch thread does while the user types.
+     */
+    @Test public void testParserFiltersWhileParsing() throws Exception {
+        final BlockingQueue<BackgroundFilter.Snapshot> published =
+            new LinkedBlockingQueue<BackgroundFilter.Snapshot>();
+        final BackgroundFilter backgroundFilter = new BackgroundFilter(null) {
+            @Override void publish(int gen, Snapshot snapshot) {
+                published.add(snapshot);
+            }
+        };
+        final TestModel model = new TestModel(PARSER_ROWS);
+        IParser parsers[] = new IParser[model.getColumnCount()];
+        for (int i = 0; i < parsers.length; i++) {
+            parsers[i] = model.createParser(i);
+        }
+
+        final List<RowFilter> filters = new ArrayList<RowFilter>();
+        List<boolean[]> expected = new ArrayList<boolean[]>();
+        for (String expression : EXPRESSIONS) {
+            RowFilter rf = parse(parsers, expression);
+            filters.add(rf);
+            expected.add(model.evaluate(rf));
+        }
+
+        // a single worker, as the background filter's executor
+        Thread worker = new Thread() {
+            @Override public void run() {
+                for (RowFilter filter : filters) {
+                    backgroundFilter.evaluate(0, filter, model,
+                        new ChoicesHandler.RowEntry(model,
+                            new FilterEditor[0]));
+                }
+            }
+        };
+        worker.start();
+
+        TestModel.Entry entry = new TestModel.Entry(model);
+        while (worker.isAlive()) {
+            for (int i = 0; i < EXPRESSIONS.length; i++) {
+                RowFilter filter = parse(parsers, EXPRESSIONS[i]);
+                boolean outcome[] = expected.get(i);
+                for (entry.row = 0; entry.row < 256; entry.row++) {
+                    assertEquals(outcome[entry.row], filter.include(entry));
+                }
+            }
+        }
+
+        for (boolean outcome[] : expected) {
+            BackgroundFilter.Snapshot snapshot = published.poll(TIMEOUT,
+                    TimeUnit.MILLISECONDS);
+            assertNotNull(snapshot);
+            for (entry.row = 0; entry.row < PARSER_ROWS; entry.row++) {
+                assertEquals(outcome[entry.row], snapshot.include(entry));
+            }
+        }
+    }
+
+    private RowFilter parse(IParser parsers[], String expression)
+                     throws Exception {
+        int split = expression.indexOf(':');
+
+        return parsers[Integer.parseInt(expression.substring(0, split))]
+                .parseText(expression.substring(split + 1));
+    }
+
+    /**
+     * Sets a new modulo on the filter, returning once its evaluation is
+     * blocked on the worker thread.
+     *
+     * @return  the number of filters set on the sorter before the update
+     */
+    private int block(final int modulo) throws Exception {
+        final int calls[] = new int[1];
+        filter.block();
+        edt(new Runnable() {
+                @Override public void run() {
+                    calls[0] = sorter.filters.size();
+                    filter.modulo = modulo;
+                    filter.reportFilterUpdatedToObservers();
+                }
+            });
+        assertTrue(filter.blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        return calls[0];
+    }
+
+    /** Waits until a snapshot is set on the sorter after the given calls. */
+    private void awaitSnapshot(int calls) throws Exception {
+        assertTrue(awaitFilter(calls) instanceof BackgroundFilter.Snapshot);
+    }
+
+    /**
+     * Waits until a filter is set on the sorter after the given calls, and
+     * then for any further event.
+     */
+    private RowFilter awaitFilter(final int calls) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        final RowFilter ret[] = new RowFilter[1];
+        while (true) {
+            edt(new Runnable() {
+                    @Override public void run() {
+                        int size = sorter.filters.size();
+                        if (size > calls) {
+                            ret[0] = sorter.filters.get(size - 1);
+                        }
+                    }
+                });
+            if (ret[0] != null) {
+                Thread.sleep(100);
+                edt(new Runnable() {
+                        @Override public void run() {
+                        }
+                    });
+
+                return ret[0];
+            }
+
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    /** Returns the number of snapshots set on the sorter after the calls. */
+    private int snapshotsSince(final int calls) throws Exception {
+        final int ret[] = new int[1];
+        edt(new Runnable() {
+                @Override public void run() {
+                    for (RowFilter rf : sorter.filters.subList(calls,
+                                sorter.filters.size())) {
+                        if (rf instanceof BackgroundFilter.Snapshot) {
+                            ++ret[0];
+                        }
+                    }
+                }
+            });
+
+        return ret[0];
+    }
+
+    /** Checks the table view from the calling thread. */
+    private void checkView() throws Exception {
+        edt(new Runnable() {
+                @Override public void run() {
+                    checkTable();
+                }
+            });
+    }
+
+    /** Checks that the table shows exactly the rows passing the filter. */
+    private void checkTable() {
+        int expected = 0;
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (filter.include(model.getValueAt(row, 0))) {
+                ++expected;
+            }
+        }
+
+        assertEquals(expected, sorter.getViewRowCount());
+        for (int row = 0; row < expected; row++) {
+            assertTrue(filter.include(model.getValueAt(
+                        sorter.convertRowIndexToModel(row), 0)));
+        }
+    }
+
+    private static void edt(Runnable task) throws Exception {
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InvocationTargetException ite) {
+            Throwable cause = ite.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw (Exception) cause;
+        }
+    }
+
+    /**
+     * Filter including the multiples of a modulo. On the worker thread, its
+     * evaluation can be blocked, or fail.
+     */
+    static class ModuloFilter extends Filter {
+        volatile int modulo = 2;
+        volatile boolean fail;
+        volatile CountDownLatch gate;
+        volatile CountDownLatch blocked;
+
+        /** Blocks the next evaluations on the worker thread. */
+        void block() {
+            blocked = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+        }
+
+        /** Releases the blocked evaluations. */
+        void release() {
+            CountDownLatch latch = gate;
+            gate = null;
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+
+        boolean include(Object value) {
+            return (value instanceof Integer)
+                    && ((((Integer) value) % modulo) == 0);
+        }
+
+        @Override public boolean include(RowFilter.Entry entry) {
+            if (!SwingUtilities.isEventDispatchThread()) {
+                CountDownLatch latch = gate;
+                if (latch != null) {
+                    blocked.countDown();
+                    try {
+                        latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException iex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                if (fail) {
+                    throw new IllegalStateException();
+                }
+            }
+
+            return include(entry.getValue(0));
+        }
+    }
+
+    /** Sorter recording the filters set on it. */
+    static class RecordingSorter extends TableRowSorter {
+        List<RowFilter> filters = new ArrayList<RowFilter>();
+
+        RecordingSorter(TableModel model) {
+            super(model);
+        }
+
+        @Override public void setRowFilter(RowFilter filter) {
+            filters.add(filter);
+            super.setRowFilter(filter);
+        }
+    }
+
+    /** Entry on a model row. */
+    static class Entry extends RowFilter.Entry {
+        private TableModel model;
+        private int row;
+
+        Entry(TableModel model, int row) {
+            this.model = model;
+            this.row = row;
+        }
+
+        @Override public Object getModel() {
+            return model;
+        }
+
+        @Override public int getValueCount() {
+            return model.getColumnCount();
+        }
+
+        @Override public Object getValue(int index) {
+            return model.getValueAt(row, index);
+        }
+
+        @Override public Object getIdentifier() {
+            return Integer.valueOf(row);
+        }
+    }
+}
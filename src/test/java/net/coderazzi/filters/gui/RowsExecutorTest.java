@@ -0,0 +1,240 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import javax.swing.RowFilter;
+
+import net.coderazzi.filters.AndFilter;
+import net.coderazzi.filters.Filter;
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.TestModel;
+import net.coderazzi.filters.gui.ChoicesHandler.RowEntry;
+import net.coderazzi.filters.gui.editor.FilterEditor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Evaluates filters through the {@link RowsExecutor}, recording the outcomes
+ * on a word-packed bitset without synchronization, as the adaptive choices
+ * do, and compares them with a sequential evaluation.
+ */
+public class RowsExecutorTest {
+
+    private static final int ROWS = 50000;
+
+    /** Column and expression, separated by a colon. */
+    private static final String EXPRESSIONS[] = {
+            "0:Ka*", "0:*ar*", "0:~~.*ar.*", "0:> Ma", "1:20 to 30",
+            "3:!~ *a*", "4:> 15/06/1990", "4:*/05/*"
+        };
+
+    private boolean parallelFiltering;
+    private int parallelFilteringThreshold;
+    private int processors;
+
+    private TestModel model = new TestModel(ROWS);
+    private RowEntry entry = new RowEntry(model, new FilterEditor[0]);
+
+    @Before public void setUp() {
+        parallelFiltering = FilterSettings.parallelFiltering;
+        parallelFilteringThreshold = FilterSettings.parallelFilteringThreshold;
+        processors = RowsExecutor.processors;
+        FilterSettings.parallelFiltering = true;
+        FilterSettings.parallelFilteringThreshold = 0;
+    }
+
+    @After public void tearDown() {
+        FilterSettings.parallelFiltering = parallelFiltering;
+        FilterSettings.parallelFilteringThreshold = parallelFilteringThreshold;
+        RowsExecutor.processors = processors;
+    }
+
+    @Test public void testFilters() {
+        for (RowFilter filter : createFilters()) {
+            check(filter, 0, ROWS - 1);
+            check(filter, 1000, 1000 + 1031);
+        }
+    }
+
+    /** The filters created by the parser support concurrent evaluation. */
+    @Test public void testParserFilters() throws Exception {
+        for (RowFilter filter : createParserFilters()) {
+            check(filter, 0, ROWS - 1);
+            check(filter, 1000, 1000 + 1031);
+        }
+    }
+
+    @Test public void testComposedFilter() throws Exception {
+        List<RowFilter> filters = createFilters();
+        filters.addAll(createParserFilters());
+
+        AndFilter and = new AndFilter();
+        for (final RowFilter delegate : filters) {
+            and.addFilter(new Filter() {
+                    @Override public boolean include(RowFilter.Entry entry) {
+                        return delegate.include(entry);
+                    }
+                });
+        }
+
+        for (int i = 0; i < 4; i++) {
+            check(and, 0, ROWS - 1);
+        }
+    }
+
+    /** Ranges with less rows than processors are still split in chunks. */
+    @Test(timeout = 10000) public void testMoreProcessorsThanRows() {
+        RowsExecutor.processors = 200;
+        for (RowFilter filter : createFilters()) {
+            check(filter, 0, 149);
+            check(filter, 70, 70 + 129);
+        }
+    }
+
+    private void check(final RowFilter filter, int firstRow, int lastRow) {
+        final long bits[] = new long[(ROWS + 63) >>> 6];
+        final List<Integer> chunks = Collections.synchronizedList(
+                new ArrayList<Integer>());
+        int ret = RowsExecutor.execute(entry, firstRow, lastRow,
+                new RowsExecutor.Task() {
+                    @Override public int run(RowEntry entry,
+                                             int      firstRow,
+                                             int      lastRow) {
+                        int ret = 0;
+                        chunks.add(firstRow);
+                        for (entry.row = firstRow; entry.row <= lastRow;
+                                entry.row++) {
+                            if (filter.include(entry)) {
+                                bits[entry.row >>> 6] |= 1L << entry.row;
+                                ret = 1;
+                            }
+                        }
+
+                        return ret;
+                    }
+                });
+
+        boolean expected[] = model.evaluate(filter);
+        int included = 0;
+        for (int row = 0; row < ROWS; row++) {
+            boolean in = (row >= firstRow) && (row <= lastRow)
+                    && expected[row];
+            assertEquals(in, (bits[row >>> 6] & (1L << row)) != 0);
+            if (in) {
+                included = 1;
+            }
+        }
+
+        assertEquals(included, ret);
+
+        // the range is split, and the chunks never share a word of the bitset
+        assertTrue(chunks.size() > 1);
+        for (int chunk : chunks) {
+            assertTrue((chunk == firstRow) || ((chunk & 63) == 0));
+        }
+    }
+
+    private List<RowFilter> createParserFilters() throws Exception {
+        List<RowFilter> ret = new ArrayList<RowFilter>();
+        for (String expression : EXPRESSIONS) {
+            int split = expression.indexOf(':');
+            IParser parser = model.createParser(Integer.parseInt(
+                        expression.substring(0, split)));
+            ret.add(parser.parseText(expression.substring(split + 1)));
+        }
+
+        return ret;
+    }
+
+    /** Creates filters on each column that support concurrent evaluation. */
+    private List<RowFilter> createFilters() {
+        final Date date = new GregorianCalendar(1990, Calendar.JUNE, 15)
+                .getTime();
+        List<RowFilter> ret = new ArrayList<RowFilter>();
+        ret.add(new ColumnFilter(TestModel.NAME) {
+                @Override boolean include(Object value) {
+                    return ((String) value).startsWith("Ka");
+                }
+            });
+        ret.add(new ColumnFilter(TestModel.NAME) {
+                @Override boolean include(Object value) {
+                    return ((String) value).indexOf("ar") >= 0;
+                }
+            });
+        ret.add(new ColumnFilter(TestModel.AGE) {
+                @Override boolean include(Object value) {
+                    int age = (Integer) value;
+
+                    return (age >= 20) && (age <= 30);
+                }
+            });
+        ret.add(new ColumnFilter(TestModel.MALE) {
+                @Override boolean include(Object value) {
+                    return (Boolean) value;
+                }
+            });
+        ret.add(new ColumnFilter(TestModel.CLUB) {
+                @Override boolean include(Object value) {
+                    return value != TestModel.Club.Alpha;
+                }
+            });
+        ret.add(new ColumnFilter(TestModel.DATE) {
+                @Override boolean include(Object value) {
+                    return ((Date) value).after(date);
+                }
+            });
+
+        return ret;
+    }
+
+    /** Filter on the value of a single column. */
+    abstract static class ColumnFilter extends RowFilter {
+        private int column;
+
+        ColumnFilter(int column) {
+            this.column = column;
+        }
+
+        abstract boolean include(Object value);
+
+        @Override public boolean include(RowFilter.Entry entry) {
+            return include(entry.getValue(column));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+
+/**
+ * Compares the values reported by {@link TopChoices} with the exact counts
+ * of the added values.
+ */
+public class TopChoicesTest {
+
+    private Random random = new Random(1);
+
+    /** Fewer distinct values than choices: all are reported. */
+    @Test public void testFewValues() {
+        TopChoices top = new TopChoices(10);
+        Map<Object, Integer> counts = add(top, 1000, 10, 0);
+        Set reported = top.addTo(new HashSet());
+        assertFalse(top.isTruncated());
+        assertEquals(counts.keySet(), reported);
+        assertEquals(1000, top.getRows());
+    }
+
+    /** Values fitting on the counters: the counts are exact. */
+    @Test public void testExactCounts() {
+        TopChoices top = new TopChoices(10);
+        Map<Object, Integer> counts = add(top, 5000, 40, 0);
+        Set reported = top.addTo(new HashSet());
+        assertTrue(top.isTruncated());
+        assertTrue(reported.remove(CustomChoice.MORE_CHOICES));
+        assertEquals(10, reported.size());
+
+        int lowest = Integer.MAX_VALUE;
+        for (Object value : reported) {
+            lowest = Math.min(lowest, counts.get(value));
+        }
+
+        for (Map.Entry<Object, Integer> entry : counts.entrySet()) {
+            if (!reported.contains(entry.getKey())) {
+                assertTrue(entry.getValue() <= lowest);
+            }
+        }
+    }
+
+    /**
+     * Skewed values exceeding the counters: the values whose count exceeds
+     * that of the first value left out by more than the counting error are
+     * always reported.
+     */
+    @Test public void testFrequentValues() {
+        for (int i = 0; i < 20; i++) {
+            TopChoices top = new TopChoices(10);
+            int rows = 50000;
+            Map<Object, Integer> counts = add(top, rows, 5000, 1.1);
+            Set reported = top.addTo(new HashSet());
+            assertTrue(top.isTruncated());
+            assertTrue(reported.remove(CustomChoice.MORE_CHOICES));
+            assertEquals(10, reported.size());
+
+            List<Integer> sorted = new ArrayList<Integer>(counts.values());
+            Collections.sort(sorted, Collections.reverseOrder());
+
+            int threshold = sorted.get(10) + (rows / (10 * 4));
+            int guaranteed = 0;
+            for (Map.Entry<Object, Integer> entry : counts.entrySet()) {
+                if (entry.getValue() > threshold) {
+                    assertTrue(reported.contains(entry.getKey()));
+                    guaranteed++;
+                }
+            }
+
+            assertTrue(guaranteed > 0);
+        }
+    }
+
+    /**
+     * Ten values on half the rows, and thousands of others on the rest: the
+     * ten values are always reported.
+     */
+    @Test public void testHeavyHitters() {
+        TopChoices top = new TopChoices(10);
+        for (int i = 0; i < 50000; i++) {
+            top.add(random.nextBoolean() ? ("h" + random.nextInt(10))
+                                         : ("v" + random.nextInt(5000)));
+        }
+
+        Set reported = top.addTo(new HashSet());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(reported.contains("h" + i));
+        }
+    }
+
+    @Test public void testClear() {
+        TopChoices top = new TopChoices(5);
+        add(top, 1000, 100, 0);
+        top.clear();
+        assertEquals(0, top.getRows());
+        assertFalse(top.isTruncated());
+
+        Map<Object, Integer> counts = add(top, 100, 3, 0);
+        assertEquals(counts.keySet(), top.addTo(new HashSet()));
+    }
+
+    /**
+     * Adds the given number of rows, with values between 0 and distinct,
+     * uniformly or following a zipf distribution with the given exponent.
+     *
+     * @return  the exact count of each value
+     */
+    private Map<Object, Integer> add(TopChoices top,
+                                     int        rows,
+                                     int        distinct,
+                                     double     exponent) {
+        double weights[] = new double[distinct];
+        double total = 0;
+        for (int i = 0; i < distinct; i++) {
+            total += (exponent == 0) ? 1 : (1 / Math.pow(i + 1, exponent));
+            weights[i] = total;
+        }
+
+        Map<Object, Integer> ret = new HashMap<Object, Integer>();
+        for (int i = 0; i < rows; i++) {
+            double w = random.nextDouble() * total;
+            int low = 0;
+            int high = distinct - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (weights[mid] < w) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            Object value = "v" + low;
+            top.add(value);
+
+            Integer count = ret.get(value);
+            ret.put(value, (count == null) ? 1 : (count + 1));
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import net.coderazzi.filters.gui.CustomChoice;
+import net.coderazzi.filters.gui.ParserModel;
+
+import org.junit.Test;
+
+
+/**
+ * Checks the {@link ChoicesListModel} against a plain sorted map of the
+ * choices, and the matches and completions against a linear search on it.
+ */
+public class ChoicesListModelTest {
+
+    private static final IChoicesParser PARSER = new IChoicesParser() {
+            @Override public String escapeChoice(String s) {
+                return s;
+            }
+        };
+
+    @Test public void testBestMatchAfterMergingExistingChoices() {
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            values.add("v" + (1000 + i));
+        }
+
+        ChoicesListModel model = new ChoicesListModel(null, null,
+                String.CASE_INSENSITIVE_ORDER);
+        model.addContent(values, PARSER);
+        assertEquals(1, model.getBestMatch("v1000").index);
+
+        // merging the same values keeps the size, but replaces the content
+        model.addContent(values, PARSER);
+        assertEquals(101, model.getSize());
+        assertEquals(71, model.getBestMatch("v1070").index);
+        assertEquals("v1070", model.getBestMatch("v1070").content);
+    }
+
+    @Test public void testRandomContentCaseSensitive() {
+        checkRandomContent(false);
+    }
+
+    @Test public void testRandomContentIgnoringCase() {
+        checkRandomContent(true);
+    }
+
+    /**
+     * Adds and removes random choices, small and large batches, comparing
+     * the model with a sorted map of the choices and their references.
+     */
+    private void checkRandomContent(boolean ignoreCase) {
+        Random random = new Random(ignoreCase ? 1 : 2);
+        Comparator<String> comparator = ParserModel.stringComparator(
+                ignoreCase);
+        ChoicesListModel model = new ChoicesListModel(null, null, comparator);
+        Map<String, Integer> expected = new TreeMap<String, Integer>(
+                comparator);
+        for (int i = 0; i < 300; i++) {
+            List<String> values = new ArrayList<String>();
+            for (int n = random.nextInt(random.nextBoolean() ? 64 : 300);
+                    n >= 0; n--) {
+                values.add(createValue(random));
+            }
+
+            switch (random.nextInt(10)) {
+
+            case 0:
+                model.setContent(values, PARSER);
+                expected.clear();
+                add(expected, values);
+
+                break;
+
+            case 1:
+            case 2:
+            case 3:
+                // only values already present are removed
+                List<String> removed = new ArrayList<String>();
+                for (String value : values) {
+                    if (remove(expected, value)) {
+                        removed.add(value);
+                    }
+                }
+
+                model.removeContent(removed, PARSER);
+
+                break;
+
+            default:
+                model.addContent(values, PARSER);
+                add(expected, values);
+            }
+
+            check(model, expected, comparator, random);
+        }
+    }
+
+    private void check(ChoicesListModel   model,
+                       Map<String, Integer> expected,
+                       Comparator<String> comparator,
+                       Random             random) {
+        List<String> choices = new ArrayList<String>(expected.keySet());
+        assertEquals(choices.size() + 1, model.getSize());
+        assertEquals(CustomChoice.MATCH_ALL, model.getElementAt(0));
+        for (int i = 0; i < choices.size(); i++) {
+            assertEquals(0, comparator.compare(choices.get(i),
+                    (String) model.getElementAt(i + 1)));
+        }
+
+        // with the match all choice, as it is alphabetically sorted
+        List<String> all = new ArrayList<String>(choices);
+        all.add(0, CustomChoice.MATCH_ALL.toString());
+
+        List<String> unsorted = Collections.singletonList(createValue(
+                    random));
+        for (int i = 0; i < 20; i++) {
+            String hint = createValue(random);
+            ChoiceMatch match = model.getBestMatch(hint);
+            int len = 0;
+            for (String choice : all) {
+                len = Math.max(len, ChoiceMatch.getMatchingLength(choice,
+                            hint, comparator));
+            }
+
+            assertEquals(len, match.len);
+            assertEquals(match.content, model.getElementAt(match.index));
+            assertEquals(len, ChoiceMatch.getMatchingLength(
+                    match.content.toString(), hint, comparator));
+
+            assertEquals(getCompletion(all, unsorted, hint, comparator),
+                model.getCompletion(hint, unsorted));
+        }
+    }
+
+    /**
+     * The completion, as the previous implementation obtained it: the
+     * longest text matching every choice that starts with the base.
+     */
+    private String getCompletion(List<String>       sorted,
+                                 List<String>       unsorted,
+                                 String             base,
+                                 Comparator<String> comparator) {
+        List<String> choices = new ArrayList<String>(sorted);
+        choices.addAll(unsorted);
+
+        int minLen = base.length();
+        int maxLen = Integer.MAX_VALUE;
+        String ret = null;
+        for (String s : choices) {
+            if (ChoiceMatch.getMatchingLength(base, s, comparator) == minLen) {
+                if (ret == null) {
+                    ret = s;
+                    maxLen = s.length();
+                } else {
+                    maxLen = Math.min(maxLen,
+                            ChoiceMatch.getMatchingLength(ret, s,
+                                comparator));
+                }
+            }
+        }
+
+        return (ret == null) ? "" : ret.substring(minLen, maxLen);
+    }
+
+    private void add(Map<String, Integer> map, List<String> values) {
+        for (String value : values) {
+            Integer refs = map.get(value);
+            map.put(value, (refs == null) ? 1 : (refs + 1));
+        }
+    }
+
+    private boolean remove(Map<String, Integer> map, String value) {
+        Integer refs = map.get(value);
+        if (refs == null) {
+            return false;
+        }
+
+        if (refs == 1) {
+            map.remove(value);
+        } else {
+            map.put(value, refs - 1);
+        }
+
+        return true;
+    }
+
+    /** Returns a short text, with many repetitions ignoring case. */
+    private String createValue(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            sb.append("aAbBc".charAt(random.nextInt(5)));
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import javax.swing.RowFilter;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableModel;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.TestModel;
+import net.coderazzi.filters.gui.ParserModel;
+import net.coderazzi.filters.parser.Parser;
+
+import org.junit.Test;
+
+
+/**
+ * Compares the filters resolved on the {@link ColumnIndex} with their
+ * evaluation on each row, while the model is updated.
+ */
+public class ColumnIndexTest {
+
+    private static final String EXPRESSIONS[] = {
+            "> 30", "< 25", "= 30", "20 to 30", "40 to 47"
+        };
+
+    private Random random = new Random(1);
+    private DefaultTableModel model = new DefaultTableModel(
+            new Object[] { "Age" }, 0);
+    private RowFilter filters[] = new RowFilter[EXPRESSIONS.length];
+    private Comparator comparator;
+
+    @Test public void testUpdates() throws Exception {
+        ParserModel parserModel = new ParserModel();
+        comparator = parserModel.getComparator(Integer.class);
+
+        IParser parser = new Parser(parserModel.getFormat(Integer.class),
+                comparator, parserModel.getStringComparator(false), false, 0);
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            filters[i] = parser.parseText(EXPRESSIONS[i]);
+            assertTrue(filters[i] instanceof IParser.OrderedFilter);
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            model.addRow(new Object[] { createValue() });
+        }
+
+        ColumnIndex index = ColumnIndex.create(model, 0, comparator);
+        check(index);
+        for (int i = 0; i < 200; i++) {
+            int rows = model.getRowCount();
+            int first = random.nextInt(rows + 1);
+            int last = Math.min(rows - 1, first + random.nextInt(8));
+            int type;
+            switch (random.nextInt(4)) {
+
+            case 0:
+                last = first + random.nextInt(8);
+                for (int row = first; row <= last; row++) {
+                    model.insertRow(row, new Object[] { createValue() });
+                }
+
+                type = TableModelEvent.INSERT;
+
+                break;
+
+            case 1:
+                for (int row = last; row >= first; row--) {
+                    model.removeRow(row);
+                }
+
+                type = TableModelEvent.DELETE;
+
+                break;
+
+            case 2:
+                for (int row = first; row <= last; row++) {
+                    model.setValueAt(createValue(), row, 0);
+                }
+
+                type = TableModelEvent.UPDATE;
+
+                break;
+
+            default:
+                if (random.nextInt(10) > 0) {
+                    continue;
+                }
+
+                // all the rows updated
+                for (int row = 0; row < rows; row++) {
+                    model.setValueAt(createValue(), row, 0);
+                }
+
+                first = 0;
+                last = Integer.MAX_VALUE;
+                type = TableModelEvent.UPDATE;
+            }
+
+            if ((first <= last) && !index.update(type, first, last)) {
+                index = ColumnIndex.create(model, 0, comparator);
+            }
+
+            check(index);
+        }
+    }
+
+    /** Checks every filter on every row. */
+    private void check(ColumnIndex index) {
+        TestModel.Entry entry = new TestModel.Entry(model);
+        int rows = model.getRowCount();
+        for (RowFilter filter : filters) {
+            for (entry.row = 0; entry.row < rows; entry.row++) {
+                int outcome = index.include((IParser.OrderedFilter) filter,
+                        entry);
+                Object value = model.getValueAt(entry.row, 0);
+                if (value instanceof Integer) {
+                    assertEquals(filter.include(entry) ? 1 : 0, outcome);
+                } else {
+                    assertEquals(-1, outcome);
+                }
+            }
+        }
+    }
+
+    /** Returns a value for the column, sometimes null or not an integer. */
+    private Object createValue() {
+        int n = random.nextInt(100);
+        if (n == 0) {
+            return null;
+        }
+
+        if (n == 1) {
+            return "none";
+        }
+
+        return Integer.valueOf(18 + random.nextInt(30));
+    }
+}
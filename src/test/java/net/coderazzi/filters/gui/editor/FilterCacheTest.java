@@ -0,0 +1,103 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import javax.swing.RowFilter;
+import javax.swing.table.AbstractTableModel;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.TestModel;
+
+import org.junit.Test;
+
+
+/** Checks that the outcomes on the {@link FilterCache} are bounded by size. */
+public class FilterCacheTest {
+
+    private FilterCache cache = new FilterCache();
+    private IParser parser = new TestModel(10).createParser(TestModel.NAME);
+    private Model model = new Model();
+
+    /** On 2M rows, only the outcomes of the last 8 filters are kept. */
+    @Test public void testLeastRecentlyUsedDiscarded() throws Exception {
+        model.rows = 2 << 20;
+
+        RowFilter filters[] = new RowFilter[16];
+        FilterCache.Outcomes outcomes[] = new FilterCache.Outcomes[16];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = cache.parseText(parser, "name" + i);
+            outcomes[i] = cache.getOutcomes(filters[i], model);
+            assertNotNull(outcomes[i]);
+        }
+
+        for (int i = 8; i < filters.length; i++) {
+            assertSame(outcomes[i], cache.getOutcomes(filters[i], model));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            assertNotSame(outcomes[i], cache.getOutcomes(filters[i], model));
+        }
+    }
+
+    /** No outcomes are kept on models too big for the bound. */
+    @Test public void testModelTooBig() throws Exception {
+        model.rows = 10000000;
+
+        RowFilter filter = cache.parseText(parser, "name");
+        assertNotNull(cache.getOutcomes(filter, model));
+
+        model.rows = 20000000;
+        assertNull(cache.getOutcomes(filter, model));
+
+        model.rows = 1000;
+        assertNotNull(cache.getOutcomes(filter, model));
+    }
+
+    /** Model providing only a number of rows. */
+    static class Model extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        int rows;
+
+        @Override public int getRowCount() {
+            return rows;
+        }
+
+        @Override public int getColumnCount() {
+            return 1;
+        }
+
+        @Override public Object getValueAt(int row, int column) {
+            return null;
+        }
+    }
+}
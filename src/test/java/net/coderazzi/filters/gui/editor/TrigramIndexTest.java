@@ -0,0 +1,214 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.gui.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import javax.swing.RowFilter;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableModel;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.TestModel;
+import net.coderazzi.filters.gui.ParserModel;
+import net.coderazzi.filters.parser.Parser;
+
+import org.junit.Test;
+
+
+/**
+ * Compares the filters resolved on the {@link TrigramIndex} with their
+ * evaluation on each row, while the model is updated.
+ */
+public class TrigramIndexTest {
+
+    private static final String SYLLABLES[] = {
+            "al", "Ber", "ber", "ca", "DEN", "den", "el", "Ka", "ka",
+            "\u00e9t\u00e9", "\u00c9T\u00c9", "lo", "mar", "ne"
+        };
+
+    /** Expressions with fragments of at least three characters. */
+    private static final String EXPRESSIONS[] = {
+            "*alb*", "Kaal*", "*alB?r*", "*ber*den*", "*\u00e9t\u00e9*",
+            "*mar"
+        };
+
+    private Random random = new Random(1);
+    private DefaultTableModel model = new DefaultTableModel(
+            new Object[] { "Name" }, 0);
+    private RowFilter filters[] = new RowFilter[2 * EXPRESSIONS.length];
+    private TrigramIndex index;
+
+    @Test public void testUpdates() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            boolean ignoreCase = i == 0;
+            IParser parser = new Parser(null, null,
+                    ParserModel.stringComparator(ignoreCase), ignoreCase, 0);
+            for (int j = 0; j < EXPRESSIONS.length; j++) {
+                RowFilter filter = parser.parseText(EXPRESSIONS[j]);
+                assertTrue(filter instanceof IParser.SubstringFilter);
+                filters[(i * EXPRESSIONS.length) + j] = filter;
+            }
+        }
+
+        for (int i = 0; i < 3000; i++) {
+            model.addRow(new Object[] { createValue() });
+        }
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+                @Override public void run() {
+                    index = TrigramIndex.create(model, 0,
+                            (IParser.SubstringFilter) filters[0]);
+                }
+            });
+        check();
+
+        // every filter includes some rows
+        TestModel.Entry entry = new TestModel.Entry(model);
+        for (RowFilter filter : filters) {
+            boolean included = false;
+            for (entry.row = 0; !included && (entry.row < 3000); entry.row++) {
+                included = filter.include(entry);
+            }
+
+            assertTrue(included);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                    @Override public void run() {
+                        update();
+                    }
+                });
+            check();
+        }
+
+        index.dispose();
+    }
+
+    /** Applies a random update on the model, on the event dispatch thread. */
+    private void update() {
+        int rows = model.getRowCount();
+        int first = random.nextInt(rows + 1);
+        int last = Math.min(rows - 1, first + random.nextInt(20));
+        int type;
+        switch (random.nextInt(5)) {
+
+        case 0:
+            // append
+            first = rows;
+            last = first + random.nextInt(20);
+            for (int row = first; row <= last; row++) {
+                model.addRow(new Object[] { createValue() });
+            }
+
+            type = TableModelEvent.INSERT;
+
+            break;
+
+        case 1:
+            // insert, which requires a new build
+            last = first + random.nextInt(20);
+            for (int row = first; row <= last; row++) {
+                model.insertRow(row, new Object[] { createValue() });
+            }
+
+            type = TableModelEvent.INSERT;
+
+            break;
+
+        case 2:
+            // truncate, or delete in the middle
+            if (random.nextBoolean()) {
+                last = rows - 1;
+            }
+
+            for (int row = last; row >= first; row--) {
+                model.removeRow(row);
+            }
+
+            type = TableModelEvent.DELETE;
+
+            break;
+
+        default:
+            for (int row = first; row <= last; row++) {
+                model.setValueAt(createValue(), row, 0);
+            }
+
+            type = TableModelEvent.UPDATE;
+        }
+
+        if ((first <= last) && !index.update(type, first, last)) {
+            index.dispose();
+            index = TrigramIndex.create(model, 0,
+                    (IParser.SubstringFilter) filters[0]);
+        }
+    }
+
+    /**
+     * Waits until the index is built, and checks every filter on every row.
+     */
+    private void check() throws Exception {
+        TestModel.Entry entry = new TestModel.Entry(model);
+        long limit = System.currentTimeMillis() + 10000;
+        while (index.include((IParser.SubstringFilter) filters[0], entry)
+                < 0) {
+            if (System.currentTimeMillis() > limit) {
+                fail("index not built");
+            }
+
+            Thread.sleep(5);
+        }
+
+        int rows = model.getRowCount();
+        for (RowFilter filter : filters) {
+            for (entry.row = 0; entry.row < rows; entry.row++) {
+                assertEquals(filter.include(entry) ? 1 : 0,
+                    index.include((IParser.SubstringFilter) filter, entry));
+            }
+        }
+    }
+
+    /** Returns a value for the column, sometimes null. */
+    private Object createValue() {
+        if (random.nextInt(50) == 0) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+
+/**
+ * Compares the {@link GlobMatcher} with the equivalent regular expressions,
+ * as the wildcard operands used before. The expressions are translated here
+ * literally: the operand's own translation emitted an escaped backslash as a
+ * single one, escaping then the next token of the regular expression.
+ */
+public class GlobMatcherTest {
+
+    /** Characters of the expressions, including wildcards and escapes. */
+    private static final String EXPRESSION_CHARS[] = {
+            "a", "A", "b", "\u00e9", "\u00c9", ".", "(", "*", "*", "?", "\\",
+            "\ud83d\ude00"
+        };
+
+    /** Characters of the matched strings. */
+    private static final String TEXT_CHARS[] = {
+            "a", "A", "b", "B", "\u00e9", "\u00c9", ".", "(", "*", "?", "\\",
+            "\n", "\ud83d\ude00"
+        };
+
+    @Test public void testKnownExpressions() {
+        check("", "", false, false);
+        check("", "a", false, false);
+        check("*", "", false, false);
+        check("a*", "ab", false, false);
+        check("*b", "ab", false, false);
+        check("*a*", "bab", false, false);
+        check("a?c", "abc", false, false);
+        check("a\\*c", "a*c", false, false);
+        check("a\\*c", "abc", false, false);
+        check("a\\\\*", "a\\bc", false, false);
+        check("a*b*c", "aXbYbc", false, false);
+        check("A*", "ab", false, true);
+        check("\u00c9*", "\u00e9t\u00e9", false, true);
+        check("?", "\ud83d\ude00", false, false);
+        check("a", "ab", true, false);
+        check("a*", "ab", true, false);
+    }
+
+    @Test public void testRandomExpressions() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            String expression = generate(random, EXPRESSION_CHARS, 6);
+            String text = generate(random, TEXT_CHARS, 8);
+            check(expression, text, random.nextBoolean(),
+                random.nextBoolean());
+        }
+    }
+
+    private void check(String  expression,
+                       String  text,
+                       boolean instant,
+                       boolean ignoreCase) {
+        Pattern pattern = Pattern.compile(convertToRE(expression, instant),
+                Pattern.DOTALL | (ignoreCase
+                    ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0));
+        assertEquals(expression + " on " + text + ", instant " + instant
+                + ", ignore case " + ignoreCase,
+            pattern.matcher(text).matches(),
+            GlobMatcher.create(expression, instant, ignoreCase).matches(text));
+    }
+
+    /** Converts the wildcard expression into a regular expression. */
+    private String convertToRE(String expression, boolean instant) {
+        StringBuilder sb = new StringBuilder();
+        boolean escaped = false;
+        for (int i = 0; i < expression.length();) {
+            int c = expression.codePointAt(i);
+            i += Character.charCount(c);
+            if (escaped || ((c != '\\') && (c != '*') && (c != '?'))) {
+                sb.append(Pattern.quote(new String(Character.toChars(c))));
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else {
+                sb.append((c == '*') ? ".*" : ".");
+            }
+        }
+
+        if (instant) {
+            sb.append(".*");
+        }
+
+        return sb.toString();
+    }
+
+    private String generate(Random random, String chars[], int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+            sb.append(chars[random.nextInt(chars.length)]);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.text.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.swing.RowFilter;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.TestModel;
+
+import org.junit.Test;
+
+
+/**
+ * Concurrency stress test of the default parser: the same parsers, sharing
+ * their formats and comparators, parse and evaluate a set of expressions from
+ * several threads at once; every outcome must match the one obtained before
+ * on a single thread.
+ */
+public class ParserStressTest {
+
+    private static final int ROWS = 20000;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 10;
+
+    /** Column and expression, separated by a colon. */
+    private static final String FILTERS[] = {
+            "0:Ka*", "0:*ar*", "0:~~.*ar.*", "0:!~ *o*", "0:> Ma",
+            "1:> 30", "1:= 30", "1:20 to 30", "3:Alpha", "3:!~ *a*",
+            "4:> 15/06/1990", "4:< 01/01/1988", "4:*/05/*", "4:1?/0?/19*"
+        };
+
+    /** Instant expressions on the names column. */
+    private static final String INSTANT[] = { "Ka", "*ar", "Ka*", "~ ar" };
+
+    /** Expressions to escape, or to strip from html. */
+    private static final String TEXTS[] = {
+            "= Ka*r?\\", "*a?", "<html><b>K&amp;a</b> &lt;</html>"
+        };
+
+    @Test public void testSharedParsers() throws Exception {
+        final TestModel model = new TestModel(ROWS);
+        final IParser parsers[] = new IParser[model.getColumnCount()];
+        for (int i = 0; i < parsers.length; i++) {
+            parsers[i] = model.createParser(i);
+        }
+
+        final int expected[] = evaluate(parsers, model);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<int[]>>> futures = new ArrayList<Future<List<int[]>>>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(new Callable<List<int[]>>() {
+                        @Override public List<int[]> call() throws Exception {
+                            List<int[]> ret = new ArrayList<int[]>();
+                            start.await();
+                            for (int r = 0; r < ROUNDS; r++) {
+                                ret.add(evaluate(parsers, model));
+                            }
+
+                            return ret;
+                        }
+                    }));
+        }
+
+        start.countDown();
+        try {
+            for (Future<List<int[]>> future : futures) {
+                for (int outcome[] : future.get()) {
+                    assertArrayEquals(expected, outcome);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses and evaluates every expression, returning the number of rows
+     * included by each filter, and the hash codes of the strings produced by
+     * the parser.
+     */
+    private static int[] evaluate(IParser parsers[], TestModel model)
+                           throws ParseException {
+        IParser names = parsers[TestModel.NAME];
+        int ret[] = new int[FILTERS.length + (2 * INSTANT.length)
+                + (2 * TEXTS.length)];
+        int n = 0;
+        for (String filter : FILTERS) {
+            int split = filter.indexOf(':');
+            IParser parser = parsers[Integer.parseInt(
+                        filter.substring(0, split))];
+            ret[n++] = count(model, parser.parseText(
+                        filter.substring(split + 1)));
+        }
+
+        for (String instant : INSTANT) {
+            IParser.InstantFilter filter = names.parseInstantText(instant);
+            ret[n++] = count(model, filter.filter);
+            ret[n++] = filter.expression.hashCode();
+        }
+
+        for (String text : TEXTS) {
+            ret[n++] = names.escape(text).hashCode();
+            ret[n++] = names.stripHtml(text).hashCode();
+        }
+
+        return ret;
+    }
+
+    /** Returns the number of rows included by the filter. */
+    private static int count(TestModel model, RowFilter filter) {
+        int ret = 0;
+        for (boolean included : model.evaluate(filter)) {
+            if (included) {
+                ret++;
+            }
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Author:  Luis M Pena  ( lu@coderazzi.net )
+ * License: MIT License
+ *
+ * Copyright (c) 2007 Luis M. Pena  -  lu@coderazzi.net
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coderazzi.filters.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.swing.RowFilter;
+
+import net.coderazzi.filters.IParser;
+import net.coderazzi.filters.TestModel;
+
+import org.junit.Test;
+
+
+public class ParserTest {
+
+    private static final int ROWS = 5000;
+
+    private TestModel model = new TestModel(ROWS);
+
+    /**
+     * The '=' and '!' operators on strings share their operands with every
+     * parser: evaluating one filter must not change the outcome of others.
+     */
+    @Test public void testStringEqualOperators() throws Exception {
+        IParser parser = model.createParser(TestModel.NAME);
+        String name = (String) model.getValueAt(0, TestModel.NAME);
+        RowFilter equal = parser.parseText("= " + name);
+        RowFilter unequal = parser.parseText("! " + name);
+
+        int matches = 0;
+        for (int i = 0; i < 2; i++) {
+            boolean equals[] = model.evaluate(equal);
+            boolean unequals[] = model.evaluate(unequal);
+            for (int row = 0; row < ROWS; row++) {
+                boolean same = name.equals(model.getValueAt(row,
+                            TestModel.NAME));
+                assertEquals(same, equals[row]);
+                assertEquals(!same, unequals[row]);
+                if (same) {
+                    matches++;
+                }
+            }
+        }
+
+        assertTrue(matches > 0);
+    }
+}